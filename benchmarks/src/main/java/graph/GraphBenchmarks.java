@@ -0,0 +1,271 @@
+package graph;
+
+/*
+ * JMH benchmarks of the main graph operations on synthetic graphs.
+ *
+ * Every benchmark runs on each generator (er for Erdos-Renyi, ba for
+ * Barabasi-Albert and pl for a power-law social graph) and each size of 10k,
+ * 100k and 1M persons, with an average of AVERAGE_DEGREE friends. Exact
+ * closeness and betweenness cost O(n * m) and only run on 10k persons; the
+ * sampled versions run on every size. The benchmarks ending in Impl run the
+ * same operation on a FriendGraphImpl holding the generated graph, so they
+ * include the compressed copy (and for the measures the BFS relabeling) that
+ * FriendGraphImpl makes of its friend nodes.
+ *
+ * Build and run from the repository root:
+ *
+ *   mvn -B package
+ *   java -jar benchmarks/target/benchmarks.jar -prof gc
+ *
+ * The throughput is reported in operations per second; -prof gc adds the
+ * allocation rate and the bytes allocated per operation. A single benchmark,
+ * generator or size is chosen with the usual JMH options, for example
+ * "GraphBenchmarks.betweenness -p generator=pl -p size=100000".
+ */
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GraphBenchmarks {
+
+    static final double AVERAGE_DEGREE = 10;
+    static final double POWER_LAW_EXPONENT = 2.5;
+    static final long SEED = 42;
+    // BFS sources sampled by the approximate measures
+    static final int SAMPLES = 64;
+
+    /*
+     * A generated graph shared by all benchmark threads.
+     */
+    @State(Scope.Benchmark)
+    public static class Graph {
+
+        @Param({ "er", "ba", "pl" })
+        public String generator;
+
+        @Param({ "10000", "100000", "1000000" })
+        public int size;
+
+        CsrFriendGraph graph;
+
+        @Setup(Level.Trial)
+        public void generate() {
+            graph = GraphBenchmarks.generate(generator, size);
+        }
+    }
+
+    /*
+     * A generated graph small enough for the exact O(n * m) measures.
+     */
+    @State(Scope.Benchmark)
+    public static class SmallGraph {
+
+        @Param({ "er", "ba", "pl" })
+        public String generator;
+
+        @Param({ "10000" })
+        public int size;
+
+        CsrFriendGraph graph;
+
+        @Setup(Level.Trial)
+        public void generate() {
+            graph = GraphBenchmarks.generate(generator, size);
+        }
+    }
+
+    /*
+     * The generated graph loaded into a FriendGraphImpl once per trial.
+     */
+    @State(Scope.Benchmark)
+    public static class ImplGraph {
+
+        @Param({ "er", "ba", "pl" })
+        public String generator;
+
+        @Param({ "10000", "100000", "1000000" })
+        public int size;
+
+        CsrFriendGraph graph;
+        FriendGraphImpl impl;
+
+        @Setup(Level.Trial)
+        public void generate() {
+            graph = GraphBenchmarks.generate(generator, size);
+            impl = GraphBenchmarks.load(graph);
+        }
+    }
+
+    /*
+     * A small generated graph in a FriendGraphImpl, for the exact measures.
+     */
+    @State(Scope.Benchmark)
+    public static class SmallImplGraph {
+
+        @Param({ "er", "ba", "pl" })
+        public String generator;
+
+        @Param({ "10000" })
+        public int size;
+
+        FriendGraphImpl impl;
+
+        @Setup(Level.Trial)
+        public void generate() {
+            impl = GraphBenchmarks.load(GraphBenchmarks.generate(generator, size));
+        }
+    }
+
+    /*
+     * The person the next query of a thread is about, stepping through the graph
+     * by a prime so the queries spread over persons of every degree.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        private int next;
+
+        int next(int n) {
+            next = (next + 7919) % n;
+            return next;
+        }
+    }
+
+    static CsrFriendGraph generate(String generator, int n) {
+        if (generator.equals("er"))
+            return GraphGenerator.erdosRenyi(n, AVERAGE_DEGREE, SEED);
+        if (generator.equals("ba"))
+            return GraphGenerator.barabasiAlbert(n, (int) (AVERAGE_DEGREE / 2), SEED);
+        if (generator.equals("pl"))
+            return GraphGenerator.powerLaw(n, AVERAGE_DEGREE, POWER_LAW_EXPONENT, SEED);
+        throw new IllegalArgumentException("Invalid generator " + generator);
+    }
+
+    /* Adds the vertices and edges of a generated graph to a new FriendGraphImpl. */
+    static FriendGraphImpl load(CsrFriendGraph graph) {
+        int n = graph.size();
+        int[] offsets = graph.offsets();
+        int[] neighbors = graph.neighbors();
+        FriendGraphImpl impl = new FriendGraphImpl();
+        for (int v = 0; v < n; v++) {
+            impl.addVertex(graph.idOf(v));
+        }
+        for (int v = 0; v < n; v++) {
+            for (int i = offsets[v]; i < offsets[v + 1]; i++) {
+                impl.addEdge(graph.idOf(v), graph.idOf(neighbors[i]));
+            }
+        }
+        return impl;
+    }
+
+    @Benchmark
+    public FriendGraph addEdgeIngestion(Graph state) {
+        return load(state.graph);
+    }
+
+    @Benchmark
+    public Object exportGraph(Graph state) {
+        return state.graph.exportGraph();
+    }
+
+    @Benchmark
+    public FriendGraph closeness(SmallGraph state) {
+        state.graph.measureAndSetClosenessCentrality();
+        return state.graph;
+    }
+
+    @Benchmark
+    public FriendGraph betweenness(SmallGraph state) {
+        state.graph.measureAndSetBetweennessCentrality();
+        return state.graph;
+    }
+
+    @Benchmark
+    public FriendGraph betweennessParallel(SmallGraph state) {
+        state.graph.measureAndSetBetweennessCentrality(ForkJoinPool.commonPool());
+        return state.graph;
+    }
+
+    @Benchmark
+    public FriendGraph approximateCloseness(Graph state) {
+        state.graph.measureAndSetApproximateClosenessCentrality(SAMPLES);
+        return state.graph;
+    }
+
+    @Benchmark
+    public double approximateBetweenness(Graph state) {
+        return state.graph.measureAndSetApproximateBetweennessCentrality(SAMPLES, 0.1);
+    }
+
+    @Benchmark
+    public List<FriendNode> returnTopCentralityFor(Graph state) {
+        return state.graph.returnTopCentralityFor(10, CentralityType.DEGREE);
+    }
+
+    @Benchmark
+    public Object suggestFriendsOfFriends(Graph state, Cursor cursor) {
+        CsrFriendGraph graph = state.graph;
+        return graph.suggestFriendsOfFriends(graph.nodeAt(cursor.next(graph.size())));
+    }
+
+    @Benchmark
+    public List<Recommendation> recommendFriends(Graph state, Cursor cursor) {
+        CsrFriendGraph graph = state.graph;
+        return graph.recommendFriends(graph.nodeAt(cursor.next(graph.size())), 10, RecommendationScore.ADAMIC_ADAR);
+    }
+
+    @Benchmark
+    public Object exportGraphImpl(ImplGraph state) {
+        return state.impl.exportGraph();
+    }
+
+    @Benchmark
+    public FriendGraph closenessImpl(SmallImplGraph state) {
+        state.impl.measureAndSetClosenessCentrality();
+        return state.impl;
+    }
+
+    @Benchmark
+    public FriendGraph betweennessImpl(SmallImplGraph state) {
+        state.impl.measureAndSetBetweennessCentrality();
+        return state.impl;
+    }
+
+    @Benchmark
+    public List<FriendNode> returnTopCentralityForImpl(ImplGraph state) {
+        return state.impl.returnTopCentralityFor(10, CentralityType.DEGREE);
+    }
+
+    @Benchmark
+    public Object suggestFriendsOfFriendsImpl(ImplGraph state, Cursor cursor) {
+        CsrFriendGraph graph = state.graph;
+        FriendNode person = state.impl.getFriends().get(graph.idOf(cursor.next(graph.size())));
+        return state.impl.suggestFriendsOfFriends(person);
+    }
+
+    @Benchmark
+    public List<Recommendation> recommendFriendsImpl(ImplGraph state, Cursor cursor) {
+        CsrFriendGraph graph = state.graph;
+        FriendNode person = state.impl.getFriends().get(graph.idOf(cursor.next(graph.size())));
+        return state.impl.recommendFriends(person, 10, RecommendationScore.ADAMIC_ADAR);
+    }
+
+}
@@ -0,0 +1,97 @@
+package graph;
+
+/*
+ * Approximate betweenness centrality by sampling BFS sources (pivots).
+ *
+ * Exact Brandes sums the dependencies of every source, which is O(V*E). Here k
+ * sources are drawn uniformly at random (with replacement) and the dependencies
+ * of each pivot are scaled by n/k, which gives an unbiased estimate of the
+ * exact betweenness at k/n of the cost. See "Centrality Estimation in Large
+ * Networks" by Brandes and Pich, and "Fast approximation of betweenness
+ * centrality through sampling" by Riondato and Kornaropoulos for the
+ * epsilon/delta style of choosing the sample size.
+ *
+ * The dependency of one source on a vertex is at most n - 2, so every scaled
+ * sample lies in [0, n(n - 2)]. Hoeffding's inequality with a union bound over
+ * the n vertices gives an absolute error bound that holds for all vertices at
+ * once with probability at least 1 - delta.
+ */
+import java.util.Random;
+
+final class ApproximateBetweenness {
+
+    private ApproximateBetweenness() {
+    }
+
+    /**
+     * Estimate the betweenness of every vertex from the given number of pivots.
+     * When samples is at least the number of vertices the exact values are
+     * returned instead.
+     *
+     * @param graph   The graph to measure.
+     * @param samples Number of BFS sources to sample.
+     * @param random  Source of the pivots.
+     * @return double[] The estimated betweenness value per dense index.
+     */
+    static double[] measure(CsrFriendGraph graph, int samples, Random random) {
+
+        if (samples <= 0)
+            throw new IllegalArgumentException("Samples must be greater than 0");
+
+        int n = graph.size();
+        if (samples >= n)
+            return BrandesBetweenness.measure(graph);
+
+        double[] betweenness = new double[n];
+        BrandesBetweenness brandes = new BrandesBetweenness(graph);
+        double scale = (double) n / samples;
+        for (int i = 0; i < samples; i++) {
+            brandes.accumulate(random.nextInt(n), betweenness, scale);
+        }
+        return betweenness;
+    }
+
+    /**
+     * Number of pivots needed so that every estimate is within epsilon of the
+     * exact value with probability at least 1 - delta. Epsilon is relative to
+     * the largest possible betweenness (n - 1)(n - 2).
+     *
+     * @param vertices Number of vertices in the graph.
+     * @param epsilon  Allowed error as a fraction of the largest betweenness.
+     * @param delta    Allowed probability of exceeding the error.
+     * @return int The number of pivots, capped at the number of vertices.
+     */
+    static int samplesFor(int vertices, double epsilon, double delta) {
+
+        if (epsilon <= 0 || delta <= 0 || delta >= 1)
+            throw new IllegalArgumentException("Epsilon must be greater than 0 and delta between 0 and 1");
+        if (vertices < 3)
+            return Math.max(vertices, 1);
+
+        double range = (double) vertices / (vertices - 1);
+        double samples = range * range * Math.log(2.0 * vertices / delta) / (2 * epsilon * epsilon);
+        return (int) Math.min(vertices, Math.ceil(samples));
+    }
+
+    /**
+     * Absolute error bound on the estimates of measure(graph, samples, random)
+     * that holds for all vertices with probability at least 1 - delta. It is 0
+     * when the exact values were computed.
+     *
+     * @param vertices Number of vertices in the graph.
+     * @param samples  Number of pivots sampled.
+     * @param delta    Allowed probability of exceeding the bound.
+     * @return double The error bound in the same unit as the betweenness values.
+     */
+    static double errorBound(int vertices, int samples, double delta) {
+
+        if (delta <= 0 || delta >= 1)
+            throw new IllegalArgumentException("Delta must be between 0 and 1");
+        if (samples >= vertices)
+            return 0.0;
+
+        double range = (double) vertices * (vertices - 2);
+        return range * Math.sqrt(Math.log(2.0 * vertices / delta) / (2.0 * samples));
+    }
+
+}
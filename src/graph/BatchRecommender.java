@@ -0,0 +1,77 @@
+package graph;
+
+/*
+ * Runs the friend recommendation for every person of a CsrFriendGraph on a
+ * ForkJoinPool and streams each person's result to a RecommendationSink.
+ *
+ * The persons are split recursively into ranges, so idle workers steal the
+ * remaining halves of busy workers' ranges; ranges of high degree persons do
+ * not hold up the rest of the job. Each range reuses the worker thread's
+ * FriendRecommender (see FriendRecommender.forThread()), which keeps no
+ * reference to the graph, and one pair of result arrays for all of its persons,
+ * so nothing is allocated per person, no result map is built, and the pool's
+ * threads hold nothing of the job once it is done.
+ */
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+final class BatchRecommender {
+
+    // persons handled by one task without splitting further
+    private static final int PERSONS_PER_TASK = 256;
+
+    private final CsrFriendGraph graph;
+    private final int number;
+    private final RecommendationScore score;
+    private final RecommendationSink sink;
+
+    BatchRecommender(CsrFriendGraph graph, int number, RecommendationScore score, RecommendationSink sink) {
+        if (number < 1)
+            throw new IllegalArgumentException("Number must be 1 or greater");
+        this.graph = graph;
+        this.number = number;
+        this.score = score;
+        this.sink = sink;
+    }
+
+    /*
+     * Recommends friends to every person and waits until all results were sent to
+     * the sink.
+     */
+    void run(ForkJoinPool pool) {
+        pool.invoke(new Range(0, graph.size()));
+    }
+
+    @SuppressWarnings("serial")
+    private class Range extends RecursiveAction {
+
+        private final int from;
+        private final int to;
+
+        Range(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PERSONS_PER_TASK) {
+                FriendRecommender recommender = FriendRecommender.forThread();
+                int[] candidates = new int[number];
+                double[] scores = new double[number];
+                for (int person = from; person < to; person++) {
+                    int count = recommender.recommend(graph, person, number, score);
+                    for (int k = 0; k < count; k++) {
+                        candidates[k] = graph.idOf(recommender.resultVertex(k));
+                        scores[k] = recommender.resultScore(k);
+                    }
+                    sink.accept(graph.idOf(person), candidates, scores, count);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new Range(from, middle), new Range(middle, to));
+        }
+    }
+
+}
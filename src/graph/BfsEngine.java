@@ -0,0 +1,108 @@
+package graph;
+
+/*
+ * A reusable breadth first search over the arrays of a CsrFriendGraph.
+ *
+ * The distance and queue arrays are allocated once per engine. Instead of
+ * clearing the visited marks before every search, each search gets a new epoch
+ * and a vertex counts as visited only when its stamp equals the current epoch.
+ * Running a BFS from every vertex therefore allocates nothing per source and
+ * does no per-source O(V) reset.
+ *
+ * An engine is not thread safe; use one engine per thread.
+ */
+import java.util.Arrays;
+
+final class BfsEngine implements BreadthFirstSearch {
+
+    private final int[] offsets;
+    private final int[] neighbors;
+
+    private final int[] distance;
+    private final int[] queue;
+    private final int[] visitedEpoch;
+    private int epoch;
+
+    private int reached;
+    private long distanceSum;
+    private long edgesInspected;
+
+    BfsEngine(CsrFriendGraph graph) {
+        this.offsets = graph.offsets();
+        this.neighbors = graph.neighbors();
+        int n = graph.size();
+        this.distance = new int[n];
+        this.queue = new int[n];
+        this.visitedEpoch = new int[n];
+    }
+
+    /**
+     * Run a BFS from the source and record the distance to every vertex it
+     * reaches.
+     *
+     * @param source Dense index of the start vertex.
+     * @return int The number of vertices reached, including the source.
+     */
+    @Override
+    public int run(int source) {
+
+        if (++epoch == Integer.MAX_VALUE) {
+            Arrays.fill(visitedEpoch, 0);
+            epoch = 1;
+        }
+
+        visitedEpoch[source] = epoch;
+        distance[source] = 0;
+        queue[0] = source;
+        int head = 0;
+        int tail = 1;
+        long sum = 0;
+        long inspected = 0;
+
+        while (head < tail) {
+            int curr = queue[head++];
+            int nextDistance = distance[curr] + 1;
+            inspected += offsets[curr + 1] - offsets[curr];
+            for (int i = offsets[curr]; i < offsets[curr + 1]; i++) {
+                int neighbor = neighbors[i];
+                if (visitedEpoch[neighbor] != epoch) {
+                    visitedEpoch[neighbor] = epoch;
+                    distance[neighbor] = nextDistance;
+                    sum += nextDistance;
+                    queue[tail++] = neighbor;
+                }
+            }
+        }
+
+        this.reached = tail;
+        this.distanceSum = sum;
+        this.edgesInspected = inspected;
+        return tail;
+    }
+
+    @Override
+    public int reached() {
+        return reached;
+    }
+
+    @Override
+    public long distanceSum() {
+        return distanceSum;
+    }
+
+    @Override
+    public int distance(int vertex) {
+        return visitedEpoch[vertex] == epoch ? distance[vertex] : -1;
+    }
+
+    @Override
+    public int reachedAt(int k) {
+        return queue[k];
+    }
+
+    @Override
+    public long edgesInspected() {
+        return edgesInspected;
+    }
+
+}
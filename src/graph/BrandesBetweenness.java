@@ -0,0 +1,264 @@
+package graph;
+
+/*
+ * Brandes' betweenness centrality over the arrays of a CsrFriendGraph.
+ *
+ * One instance holds the scratch arrays (distance, BFS order, shortest path
+ * counts and dependencies) for a single thread, so a source can be processed
+ * without allocating anything. The dependencies are accumulated from the
+ * successors of each vertex in reverse BFS order, which avoids predecessor
+ * lists altogether.
+ *
+ * The sources are split into fixed blocks of SOURCES_PER_BLOCK. A worker sums
+ * the dependencies of each block it claims into a partial array of its own and
+ * hands the array over without waiting. The arrays are added to the result
+ * strictly in block order by whichever worker completes the lowest block not yet
+ * added, so the floating point additions happen in the same order whatever the
+ * number of workers, and a parallel run gives exactly the same values as a
+ * sequential one. A block finished ahead of a slower earlier one keeps its array
+ * until that one is done, so a slow block does not hold up the other workers at
+ * first. At most ARRAYS_PER_WORKER arrays per worker are in use, though; once
+ * they all wait behind a slow block the workers wait for it too, so the memory
+ * stays O(workers * n).
+ */
+import java.util.ArrayList;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+final class BrandesBetweenness {
+
+    static final int SOURCES_PER_BLOCK = 64;
+    static final int ARRAYS_PER_WORKER = 2;
+
+    private final int[] offsets;
+    private final int[] neighbors;
+
+    private final int[] distance;
+    private final int[] order;
+    private final double[] shortestPathCount;
+    private final double[] dependency;
+
+    BrandesBetweenness(CsrFriendGraph graph) {
+        this.offsets = graph.offsets();
+        this.neighbors = graph.neighbors();
+        int n = graph.size();
+        this.distance = new int[n];
+        this.order = new int[n];
+        this.shortestPathCount = new double[n];
+        this.dependency = new double[n];
+        Arrays.fill(distance, -1);
+    }
+
+    /**
+     * Run one BFS from the source and add its dependency on every other vertex,
+     * multiplied by scale, to betweenness.
+     *
+     * @param source      Dense index of the source vertex.
+     * @param betweenness Accumulated betweenness values per dense index.
+     * @param scale       Factor applied to each dependency, 1 for the exact value.
+     */
+    void accumulate(int source, double[] betweenness, double scale) {
+
+        distance[source] = 0;
+        shortestPathCount[source] = 1;
+        order[0] = source;
+        int head = 0;
+        int tail = 1;
+
+        // perform a bfs type search
+        while (head < tail) {
+            int curr = order[head++];
+            int nextDistance = distance[curr] + 1;
+            for (int i = offsets[curr]; i < offsets[curr + 1]; i++) {
+                int neighbor = neighbors[i];
+                if (distance[neighbor] < 0) {
+                    distance[neighbor] = nextDistance;
+                    order[tail++] = neighbor;
+                }
+                if (distance[neighbor] == nextDistance) {
+                    shortestPathCount[neighbor] += shortestPathCount[curr];
+                }
+            }
+        }
+
+        // visit the vertices in reverse bfs order and accumulate dependencies
+        for (int k = tail - 1; k >= 0; k--) {
+            int curr = order[k];
+            int nextDistance = distance[curr] + 1;
+            double sum = 0;
+            for (int i = offsets[curr]; i < offsets[curr + 1]; i++) {
+                int successor = neighbors[i];
+                if (distance[successor] == nextDistance) {
+                    sum += (1 + dependency[successor]) / shortestPathCount[successor];
+                }
+            }
+            dependency[curr] = shortestPathCount[curr] * sum;
+            if (curr != source) {
+                betweenness[curr] += scale * dependency[curr];
+            }
+        }
+
+        // only reset what this source touched
+        for (int k = 0; k < tail; k++) {
+            int curr = order[k];
+            distance[curr] = -1;
+            shortestPathCount[curr] = 0;
+            dependency[curr] = 0;
+        }
+    }
+
+    /**
+     * Measure the exact betweenness of every vertex on the calling thread.
+     *
+     * @param graph The graph to measure.
+     * @return double[] The betweenness value per dense index.
+     */
+    static double[] measure(CsrFriendGraph graph) {
+        Job job = new Job(graph, 1);
+        job.call();
+        return job.betweenness;
+    }
+
+    /**
+     * Measure the exact betweenness of every vertex with the sources spread over
+     * the threads of the given executor. The values are identical to measure().
+     *
+     * @param graph    The graph to measure.
+     * @param executor The executor running the workers.
+     * @return double[] The betweenness value per dense index.
+     */
+    static double[] measure(CsrFriendGraph graph, ExecutorService executor) {
+
+        int workers = Workers.parallelism(executor);
+        Job job = new Job(graph, workers);
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (int i = 0; i < workers; i++) {
+            tasks.add(job);
+        }
+        Workers.invokeAll(executor, tasks);
+        return job.betweenness;
+    }
+
+    /*
+     * Shared state of one betweenness pass. Every call() is a worker that claims
+     * blocks of sources until none are left.
+     */
+    private static class Job implements Callable<Void> {
+
+        private final CsrFriendGraph graph;
+        private final int numBlocks;
+        private final AtomicInteger nextBlock = new AtomicInteger();
+        private final double[] betweenness;
+        // partial arrays of finished blocks waiting for an earlier block, by block
+        private final Map<Integer, double[]> pending = new HashMap<Integer, double[]>();
+        // cleared partial arrays to reuse
+        private final ArrayDeque<double[]> spare = new ArrayDeque<double[]>();
+        private final int maxArrays;
+        private int numArrays;
+        private int mergedBlocks;
+        // true while a worker adds pending arrays to the result
+        private boolean merging;
+
+        Job(CsrFriendGraph graph, int workers) {
+            this.graph = graph;
+            this.maxArrays = ARRAYS_PER_WORKER * workers;
+            this.numBlocks = (graph.size() + SOURCES_PER_BLOCK - 1) / SOURCES_PER_BLOCK;
+            this.betweenness = new double[graph.size()];
+        }
+
+        @Override
+        public Void call() {
+
+            BrandesBetweenness brandes = null;
+            int n = graph.size();
+
+            while (true) {
+                // take the array before the block, so the worker holding the lowest
+                // block not yet merged never waits for one
+                double[] partial = partial(n);
+                int block = nextBlock.getAndIncrement();
+                if (block >= numBlocks) {
+                    release(partial);
+                    return null;
+                }
+                if (brandes == null)
+                    brandes = new BrandesBetweenness(graph);
+
+                int end = Math.min(n, (block + 1) * SOURCES_PER_BLOCK);
+                for (int source = block * SOURCES_PER_BLOCK; source < end; source++) {
+                    // a source without friends, such as a single friend component, adds nothing
+                    if (brandes.offsets[source] == brandes.offsets[source + 1])
+                        continue;
+                    brandes.accumulate(source, partial, 1.0);
+                }
+                merge(block, partial);
+            }
+        }
+
+        /*
+         * A cleared partial array, reused from an earlier block when one is spare.
+         * When all maxArrays are in use it waits for the merge to free one.
+         */
+        private synchronized double[] partial(int n) {
+            while (spare.isEmpty() && numArrays == maxArrays) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for a partial array", e);
+                }
+            }
+            double[] partial = spare.poll();
+            if (partial == null) {
+                partial = new double[n];
+                numArrays++;
+            }
+            return partial;
+        }
+
+        private synchronized void release(double[] partial) {
+            spare.push(partial);
+            notifyAll();
+        }
+
+        /*
+         * Hands over the partial sums of a block. Unless another worker is already
+         * merging, the calling worker adds every pending block that is next in
+         * order, clearing its array for reuse, and returns as soon as the next
+         * block is still running; the worker finishing that block merges it.
+         */
+        private void merge(int block, double[] partial) {
+            synchronized (this) {
+                pending.put(block, partial);
+                if (merging)
+                    return;
+                merging = true;
+            }
+            while (true) {
+                double[] next;
+                synchronized (this) {
+                    next = pending.remove(mergedBlocks);
+                    if (next == null) {
+                        merging = false;
+                        return;
+                    }
+                }
+                for (int v = 0; v < next.length; v++) {
+                    betweenness[v] += next[v];
+                }
+                Arrays.fill(next, 0);
+                synchronized (this) {
+                    mergedBlocks++;
+                    release(next);
+                }
+            }
+        }
+    }
+
+}
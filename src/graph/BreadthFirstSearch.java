@@ -0,0 +1,28 @@
+package graph;
+
+/*
+ * A reusable breadth first search from one source at a time over the arrays of a
+ * CsrFriendGraph. Implementations keep their scratch arrays between searches and
+ * are not thread safe; use one instance per thread.
+ */
+interface BreadthFirstSearch {
+
+    /* Run a BFS from the dense source index and return the number of vertices reached, including the source. */
+    int run(int source);
+
+    /* Number of vertices reached by the last search, including the source. */
+    int reached();
+
+    /* Sum of the distances from the source of the last search to every vertex it reached. */
+    long distanceSum();
+
+    /* Distance of the vertex from the source of the last search, or -1 if it was not reached. */
+    int distance(int vertex);
+
+    /* The k-th vertex reached by the last search, in order of distance. */
+    int reachedAt(int k);
+
+    /* Number of edges looked at by the last search. */
+    long edgesInspected();
+
+}
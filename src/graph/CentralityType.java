@@ -0,0 +1,114 @@
+package graph;
+
+/*
+ * The centrality measures that friend nodes can be ranked by.
+ */
+public enum CentralityType {
+
+    DEGREE("degree") {
+        @Override
+        public double scoreOf(FriendNode friend) {
+            return friend.getDegreeOfCentrality();
+        }
+    },
+    CLOSENESS("closeness") {
+        @Override
+        public double scoreOf(FriendNode friend) {
+            return friend.getClosenessCentrality();
+        }
+
+        @Override
+        void store(FriendNode friend, double score) {
+            friend.setClosenessCentrality(score);
+        }
+    },
+    BETWEENNESS("betweenness") {
+        @Override
+        public double scoreOf(FriendNode friend) {
+            return friend.getBetweennessValue();
+        }
+
+        @Override
+        void store(FriendNode friend, double score) {
+            friend.setBetweennessValue(score);
+        }
+    },
+    PAGERANK("pagerank") {
+        @Override
+        public double scoreOf(FriendNode friend) {
+            return friend.getPageRank();
+        }
+
+        @Override
+        void store(FriendNode friend, double score) {
+            friend.setPageRank(score);
+        }
+    },
+    EIGENVECTOR("eigenvector") {
+        @Override
+        public double scoreOf(FriendNode friend) {
+            return friend.getEigenvectorCentrality();
+        }
+
+        @Override
+        void store(FriendNode friend, double score) {
+            friend.setEigenvectorCentrality(score);
+        }
+    },
+    KATZ("katz") {
+        @Override
+        public double scoreOf(FriendNode friend) {
+            return friend.getKatzCentrality();
+        }
+
+        @Override
+        void store(FriendNode friend, double score) {
+            friend.setKatzCentrality(score);
+        }
+    },
+    CORENESS("coreness") {
+        @Override
+        public double scoreOf(FriendNode friend) {
+            return friend.getCoreness();
+        }
+
+        @Override
+        void store(FriendNode friend, double score) {
+            friend.setCoreness((int) score);
+        }
+    };
+
+    private final String name;
+
+    private CentralityType(String name) {
+        this.name = name;
+    }
+
+    /* The value of this centrality type stored in the given friend node. */
+    public abstract double scoreOf(FriendNode friend);
+
+    /* Sets the measured value of this centrality type in the given friend node. */
+    void store(FriendNode friend, double score) {
+        throw new UnsupportedOperationException("The " + name + " of a friend node is not stored");
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Look up a centrality type by its name, for example "degree", "closeness",
+     * "betweenness" or "pagerank".
+     *
+     * @param name The name of the centrality type.
+     * @return CentralityType The matching type.
+     */
+    public static CentralityType fromName(String name) {
+        for (CentralityType type : values()) {
+            if (type.name.equals(name))
+                return type;
+        }
+        throw new IllegalArgumentException("Invalid type");
+    }
+
+}
@@ -0,0 +1,176 @@
+package graph;
+
+/*
+ * Closeness centrality over the arrays of a CsrFriendGraph. By default the
+ * sources are searched 64 at a time with a MultiSourceBfs, which reads each row
+ * once per level for the whole batch. A single source kernel can be chosen
+ * instead; one search of the TraversalKernel is then reused for every source,
+ * so a full sweep allocates its arrays once.
+ *
+ * The values are normalized as proposed by Wasserman and Faust, so that they stay
+ * comparable when the graph is not connected: a friend that reaches r friends
+ * (itself included) with a sum of all lengths S in a graph of n friends has
+ * closeness (r - 1)^2 / ((n - 1) * S). In a connected graph this is the plain
+ * (n - 1) / S, while a friend in a small group no longer looks central just
+ * because its few friends are close.
+ *
+ * The parallel measure works per connected component: the sources are grouped
+ * by component, components of a single friend are skipped, and the workers
+ * claim batches of sources from the remaining components.
+ */
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+final class ClosenessCentrality {
+
+    static final int SOURCES_PER_BLOCK = MultiSourceBfs.SOURCES_PER_BATCH;
+
+    private ClosenessCentrality() {
+    }
+
+    /**
+     * Measure the closeness centrality of every vertex.
+     *
+     * @param graph The graph to measure.
+     * @return double[] The closeness value per dense index.
+     */
+    static double[] measure(CsrFriendGraph graph) {
+
+        int n = graph.size();
+        int[] offsets = graph.offsets();
+        // a friend without friends reaches nobody
+        int[] sources = new int[n];
+        int numSources = 0;
+        for (int v = 0; v < n; v++) {
+            if (offsets[v] != offsets[v + 1])
+                sources[numSources++] = v;
+        }
+
+        double[] closeness = new double[n];
+        MultiSourceBfs bfs = new MultiSourceBfs(graph);
+        for (int first = 0; first < numSources; first += SOURCES_PER_BLOCK) {
+            measureBatch(bfs, sources, first, Math.min(SOURCES_PER_BLOCK, numSources - first), closeness);
+        }
+        return closeness;
+    }
+
+    private static void measureBatch(MultiSourceBfs bfs, int[] sources, int first, int count, double[] closeness) {
+        int n = closeness.length;
+        bfs.run(sources, first, count);
+        for (int i = 0; i < count; i++) {
+            closeness[sources[first + i]] = closeness(bfs.reached(i), bfs.distanceSum(i), n);
+        }
+    }
+
+    /**
+     * Measure the closeness centrality of every vertex with the given BFS kernel.
+     *
+     * @param graph  The graph to measure.
+     * @param kernel The breadth first search to run from every vertex.
+     * @return double[] The closeness value per dense index.
+     */
+    static double[] measure(CsrFriendGraph graph, TraversalKernel kernel) {
+
+        int n = graph.size();
+        int[] offsets = graph.offsets();
+        double[] closeness = new double[n];
+        BreadthFirstSearch bfs = kernel.newSearch(graph);
+        for (int source = 0; source < n; source++) {
+            // a friend without friends reaches nobody
+            if (offsets[source] == offsets[source + 1])
+                continue;
+            bfs.run(source);
+            closeness[source] = closeness(bfs.reached(), bfs.distanceSum(), n);
+        }
+        return closeness;
+    }
+
+    /**
+     * Measure the closeness centrality of every vertex, component by component, on
+     * the threads of the given executor. The values are identical to measure().
+     *
+     * @param graph    The graph to measure.
+     * @param executor The executor running the workers.
+     * @return double[] The closeness value per dense index.
+     */
+    static double[] measure(final CsrFriendGraph graph, ExecutorService executor) {
+
+        final int n = graph.size();
+        ConnectedComponents components = ConnectedComponents.find(graph, executor);
+
+        // the sources of every component with more than one friend, grouped by component
+        int[] members = components.vertices();
+        int[] componentOffsets = components.offsets();
+        final int[] sources = new int[n];
+        int numSources = 0;
+        for (int c = 0; c < components.count(); c++) {
+            if (components.size(c) > 1) {
+                int length = componentOffsets[c + 1] - componentOffsets[c];
+                System.arraycopy(members, componentOffsets[c], sources, numSources, length);
+                numSources += length;
+            }
+        }
+
+        final double[] closeness = new double[n];
+        final int numBlocks = (numSources + SOURCES_PER_BLOCK - 1) / SOURCES_PER_BLOCK;
+        final int end = numSources;
+        final AtomicInteger nextBlock = new AtomicInteger();
+        Callable<Void> worker = new Callable<Void>() {
+            @Override
+            public Void call() {
+                MultiSourceBfs bfs = null;
+                for (int block = nextBlock.getAndIncrement(); block < numBlocks; block = nextBlock
+                        .getAndIncrement()) {
+                    if (bfs == null)
+                        bfs = new MultiSourceBfs(graph);
+                    int first = block * SOURCES_PER_BLOCK;
+                    measureBatch(bfs, sources, first, Math.min(SOURCES_PER_BLOCK, end - first), closeness);
+                }
+                return null;
+            }
+        };
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (int i = Workers.parallelism(executor); i > 0; i--) {
+            tasks.add(worker);
+        }
+        Workers.invokeAll(executor, tasks);
+        return closeness;
+    }
+
+    /**
+     * Closeness value of a vertex from the result of its BFS, normalized by the
+     * part of the graph it reaches (Wasserman-Faust). A vertex that reaches nobody
+     * has closeness 0.
+     *
+     * @param reached     Number of vertices reached, including the vertex itself.
+     * @param distanceSum Sum of the distances to the reached vertices.
+     * @param vertices    Number of vertices in the graph.
+     * @return double The closeness centrality.
+     */
+    static double closeness(int reached, double distanceSum, int vertices) {
+        if (distanceSum == 0)
+            return 0.0;
+        return (reached - 1.0) * (reached - 1.0) / ((vertices - 1.0) * distanceSum);
+    }
+
+    /**
+     * Adjust a closeness value measured when the graph had oldVertices vertices to
+     * a graph with newVertices vertices, where the new vertices are not reachable
+     * from it. Its reach and sum of all lengths are unchanged, only the
+     * normalization by the graph size is.
+     *
+     * @param closeness   The closeness value measured before.
+     * @param oldVertices Number of vertices when the value was measured.
+     * @param newVertices Number of vertices now.
+     * @return double The closeness centrality for the new number of vertices.
+     */
+    static double rescale(double closeness, int oldVertices, int newVertices) {
+        if (closeness == 0 || newVertices <= 1)
+            return closeness;
+        return closeness * (oldVertices - 1.0) / (newVertices - 1.0);
+    }
+
+}
@@ -0,0 +1,479 @@
+package graph;
+
+/*
+ * Groups of friends that are more densely connected to each other than to the
+ * rest of the network, found on the undirected version of a CsrFriendGraph (see
+ * CsrFriendGraph.undirected()).
+ *
+ * Label propagation is the fast detector. Every friend starts in a community of
+ * its own and in each round takes the community most common among its friends
+ * and itself. The rounds are synchronous: the new labels are written to a second
+ * array, so the vertices can be split into blocks that the workers of an
+ * executor update in parallel and the result does not depend on the number of
+ * workers. A friend keeps its community when it is among the most common ones,
+ * and other ties go to a fixed pseudo random priority of the labels, so the
+ * rounds settle instead of flipping between equal choices. A round costs
+ * O(E log d) for sorting the labels of each row.
+ *
+ * Louvain is the detector for quality. Each pass moves single vertices to the
+ * neighboring community with the largest modularity gain until no move helps,
+ * then merges every community into one vertex of a smaller weighted graph and
+ * repeats on it, until a pass moves nothing. The level graphs shrink quickly, so
+ * the extra memory stays below the size of the adjacency.
+ *
+ * Communities are numbered in the order of their smallest dense index, and the
+ * modularity of the result is measured on the undirected graph.
+ */
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+
+public final class Communities {
+
+    // vertices handled by one parallel task
+    private static final int VERTICES_PER_BLOCK = 4096;
+    static final int MAX_ROUNDS = 50;
+    static final int MAX_PASSES = 100;
+
+    private final CsrFriendGraph graph;
+    // community number of each dense index
+    private final int[] community;
+    // members of community c are vertices[offsets[c]] up to vertices[offsets[c + 1]]
+    private final int[] offsets;
+    private final int[] vertices;
+    private final double modularity;
+
+    /*
+     * Numbers the communities given by any label per dense index in order of
+     * their smallest dense index and measures the modularity.
+     */
+    private Communities(CsrFriendGraph graph, int[] label) {
+
+        this.graph = graph;
+        int n = graph.size();
+        this.community = new int[n];
+        int[] number = new int[n];
+        Arrays.fill(number, -1);
+        int count = 0;
+        for (int v = 0; v < n; v++) {
+            if (number[label[v]] < 0)
+                number[label[v]] = count++;
+            community[v] = number[label[v]];
+        }
+
+        this.offsets = new int[count + 1];
+        for (int v = 0; v < n; v++) {
+            offsets[community[v] + 1]++;
+        }
+        for (int c = 0; c < count; c++) {
+            offsets[c + 1] += offsets[c];
+        }
+        int[] cursor = Arrays.copyOf(offsets, count);
+        this.vertices = new int[n];
+        for (int v = 0; v < n; v++) {
+            vertices[cursor[community[v]]++] = v;
+        }
+        this.modularity = modularity(graph.undirected(), community, count);
+    }
+
+    /**
+     * Find communities by label propagation, with the vertices of every round
+     * spread over the workers of the executor.
+     *
+     * @param graph    The graph to search.
+     * @param executor The executor running the workers, or null for the calling
+     *                 thread.
+     * @return Communities The communities found.
+     */
+    static Communities labelPropagation(CsrFriendGraph graph, ExecutorService executor) {
+
+        CsrFriendGraph undirected = graph.undirected();
+        final int n = undirected.size();
+        final int[] offsets = undirected.offsets();
+        final int[] neighbors = undirected.neighbors();
+        final int[] label = new int[n];
+        final int[] next = new int[n];
+        for (int v = 0; v < n; v++) {
+            label[v] = v;
+        }
+
+        for (int round = 0; round < MAX_ROUNDS; round++) {
+            final boolean first = round == 0;
+            double changed = Workers.sumBlocks(executor, n, VERTICES_PER_BLOCK, new Workers.Block() {
+                @Override
+                public double run(int start, int end) {
+                    int[] buffer = new int[16];
+                    int changes = 0;
+                    for (int v = start; v < end; v++) {
+                        int degree = offsets[v + 1] - offsets[v];
+                        if (buffer.length <= degree)
+                            buffer = new int[2 * degree + 1];
+                        buffer[0] = label[v];
+                        for (int i = 0; i < degree; i++) {
+                            buffer[i + 1] = label[neighbors[offsets[v] + i]];
+                        }
+                        next[v] = mostCommon(buffer, degree + 1, first ? -1 : label[v]);
+                        if (next[v] != label[v])
+                            changes++;
+                    }
+                    return changes;
+                }
+            });
+            System.arraycopy(next, 0, label, 0, n);
+            if (changed == 0)
+                break;
+        }
+        return new Communities(graph, label);
+    }
+
+    /*
+     * The most frequent of the first length labels in buffer. Ties go to the
+     * current label if it is among them, otherwise to the label with the smallest
+     * priority.
+     */
+    private static int mostCommon(int[] buffer, int length, int current) {
+        Arrays.sort(buffer, 0, length);
+        int best = buffer[0];
+        int bestCount = 0;
+        for (int i = 0; i < length;) {
+            int j = i + 1;
+            while (j < length && buffer[j] == buffer[i]) {
+                j++;
+            }
+            int count = j - i;
+            if (count > bestCount || (count == bestCount && best != current
+                    && (buffer[i] == current || priority(buffer[i]) < priority(best)))) {
+                best = buffer[i];
+                bestCount = count;
+            }
+            i = j;
+        }
+        return best;
+    }
+
+    /* A fixed pseudo random order of the labels (the finalizer of MurmurHash3). */
+    private static int priority(int label) {
+        int h = label * 0x9E3779B9;
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Find communities with the Louvain method.
+     *
+     * @param graph The graph to search.
+     * @return Communities The communities found.
+     */
+    static Communities louvain(CsrFriendGraph graph) {
+
+        CsrFriendGraph undirected = graph.undirected();
+        int n = undirected.size();
+        // level vertex of every vertex of the graph
+        int[] membership = new int[n];
+        for (int v = 0; v < n; v++) {
+            membership[v] = v;
+        }
+
+        Level level = new Level(n, undirected.offsets(), undirected.neighbors(), null, new double[n]);
+        while (level.size > 0) {
+            int[] moved = level.moveVertices();
+            int count = 0;
+            for (int c : moved) {
+                count = Math.max(count, c + 1);
+            }
+            if (count == level.size)
+                break;
+            for (int v = 0; v < n; v++) {
+                membership[v] = moved[membership[v]];
+            }
+            level = level.aggregate(moved, count);
+        }
+        return new Communities(graph, membership);
+    }
+
+    /*
+     * Modularity of the communities on an undirected graph: the share of edges
+     * inside communities minus the share expected if the edges were placed at
+     * random with the same degrees.
+     */
+    private static double modularity(CsrFriendGraph undirected, int[] community, int count) {
+        int[] offsets = undirected.offsets();
+        int[] neighbors = undirected.neighbors();
+        double edges = neighbors.length;
+        if (edges == 0)
+            return 0;
+        long[] inside = new long[count];
+        long[] total = new long[count];
+        for (int v = 0; v < community.length; v++) {
+            total[community[v]] += offsets[v + 1] - offsets[v];
+            for (int i = offsets[v]; i < offsets[v + 1]; i++) {
+                if (community[neighbors[i]] == community[v])
+                    inside[community[v]]++;
+            }
+        }
+        double q = 0;
+        for (int c = 0; c < count; c++) {
+            q += inside[c] / edges - (total[c] / edges) * (total[c] / edges);
+        }
+        return q;
+    }
+
+    /**
+     * Return the number of communities. Every friend is in exactly one.
+     *
+     * @return int The number of communities.
+     */
+    public int count() {
+        return offsets.length - 1;
+    }
+
+    /**
+     * Return the number of friends in a community.
+     *
+     * @param community The community number, from 0 to count() - 1.
+     * @return int The size of the community.
+     */
+    public int size(int community) {
+        return offsets[community + 1] - offsets[community];
+    }
+
+    /**
+     * Return the community a friend belongs to.
+     *
+     * @param friend The friend id.
+     * @return int The community number.
+     */
+    public int communityOf(int friend) {
+        int v = graph.indexOf(friend);
+        if (v < 0)
+            throw new IllegalArgumentException("Person is not in this graph");
+        return community[v];
+    }
+
+    /**
+     * Return the friend ids of a community in dense index order, which is
+     * ascending unless the graph was relabeled.
+     *
+     * @param community The community number, from 0 to count() - 1.
+     * @return int[] The friend ids of the community.
+     */
+    public int[] members(int community) {
+        int[] members = new int[size(community)];
+        for (int k = 0; k < members.length; k++) {
+            members[k] = graph.idOf(vertices[offsets[community] + k]);
+        }
+        return members;
+    }
+
+    /**
+     * Return the community with the most friends, the first one on ties.
+     *
+     * @return int The number of the largest community, or -1 for an empty graph.
+     */
+    public int largest() {
+        int largest = -1;
+        for (int c = 0; c < count(); c++) {
+            if (largest < 0 || size(c) > size(largest))
+                largest = c;
+        }
+        return largest;
+    }
+
+    /**
+     * Return the modularity of the communities, from -0.5 to 1. Values above about
+     * 0.3 indicate a clear community structure.
+     *
+     * @return double The modularity.
+     */
+    public double modularity() {
+        return modularity;
+    }
+
+    /* Community number of every dense index. */
+    int[] assignment() {
+        return community;
+    }
+
+    /* Start of each community's members within vertices(), one extra entry at the end. */
+    int[] offsets() {
+        return offsets;
+    }
+
+    /* Dense indices grouped by community, ascending within each community. */
+    int[] vertices() {
+        return vertices;
+    }
+
+    /*
+     * One level of the Louvain method: an undirected graph in CSR form whose edges
+     * have weights (null for weight 1) and whose vertices carry the weight of the
+     * edges merged inside them, counted in both directions.
+     */
+    private static final class Level {
+
+        private final int size;
+        private final int[] offsets;
+        private final int[] neighbors;
+        private final double[] weights;
+        private final double[] inner;
+
+        Level(int size, int[] offsets, int[] neighbors, double[] weights, double[] inner) {
+            this.size = size;
+            this.offsets = offsets;
+            this.neighbors = neighbors;
+            this.weights = weights;
+            this.inner = inner;
+        }
+
+        private double weight(int edge) {
+            return weights == null ? 1 : weights[edge];
+        }
+
+        /*
+         * Moves single vertices between communities while that raises the
+         * modularity. Returns the community of each vertex, numbered from 0 in
+         * order of first vertex.
+         */
+        int[] moveVertices() {
+
+            double[] degree = new double[size];
+            double total = 0;
+            for (int v = 0; v < size; v++) {
+                degree[v] = inner[v];
+                for (int i = offsets[v]; i < offsets[v + 1]; i++) {
+                    degree[v] += weight(i);
+                }
+                total += degree[v];
+            }
+
+            int[] community = new int[size];
+            // sum of the degrees of the members of each community
+            double[] communityDegree = Arrays.copyOf(degree, size);
+            for (int v = 0; v < size; v++) {
+                community[v] = v;
+            }
+
+            // weight of the edges from the current vertex into each community
+            double[] link = new double[size];
+            int[] touched = new int[size];
+            boolean[] seen = new boolean[size];
+
+            for (int pass = 0; pass < MAX_PASSES && total > 0; pass++) {
+                int moves = 0;
+                for (int v = 0; v < size; v++) {
+                    int own = community[v];
+                    int numTouched = 0;
+                    seen[own] = true;
+                    touched[numTouched++] = own;
+                    for (int i = offsets[v]; i < offsets[v + 1]; i++) {
+                        int c = community[neighbors[i]];
+                        if (!seen[c]) {
+                            seen[c] = true;
+                            touched[numTouched++] = c;
+                        }
+                        link[c] += weight(i);
+                    }
+
+                    // take the vertex out, then put it where the gain is largest
+                    communityDegree[own] -= degree[v];
+                    int best = own;
+                    double bestGain = link[own] - communityDegree[own] * degree[v] / total;
+                    for (int k = 1; k < numTouched; k++) {
+                        int c = touched[k];
+                        double gain = link[c] - communityDegree[c] * degree[v] / total;
+                        if (gain > bestGain) {
+                            best = c;
+                            bestGain = gain;
+                        }
+                    }
+                    communityDegree[best] += degree[v];
+                    if (best != own) {
+                        community[v] = best;
+                        moves++;
+                    }
+
+                    for (int k = 0; k < numTouched; k++) {
+                        link[touched[k]] = 0;
+                        seen[touched[k]] = false;
+                    }
+                }
+                if (moves == 0)
+                    break;
+            }
+
+            // number the communities in order of their first vertex
+            int[] number = new int[size];
+            Arrays.fill(number, -1);
+            int count = 0;
+            for (int v = 0; v < size; v++) {
+                if (number[community[v]] < 0)
+                    number[community[v]] = count++;
+                community[v] = number[community[v]];
+            }
+            return community;
+        }
+
+        /*
+         * Merges the vertices of every community into one vertex of the next level.
+         */
+        Level aggregate(int[] community, int count) {
+
+            // the vertices grouped by community
+            int[] start = new int[count + 1];
+            for (int v = 0; v < size; v++) {
+                start[community[v] + 1]++;
+            }
+            for (int c = 0; c < count; c++) {
+                start[c + 1] += start[c];
+            }
+            int[] cursor = Arrays.copyOf(start, count);
+            int[] members = new int[size];
+            for (int v = 0; v < size; v++) {
+                members[cursor[community[v]]++] = v;
+            }
+
+            int[] nextOffsets = new int[count + 1];
+            int[] nextNeighbors = new int[neighbors.length];
+            double[] nextWeights = new double[neighbors.length];
+            double[] nextInner = new double[count];
+            double[] link = new double[count];
+            int[] touched = new int[count];
+            boolean[] seen = new boolean[count];
+            int position = 0;
+            for (int c = 0; c < count; c++) {
+                nextOffsets[c] = position;
+                int numTouched = 0;
+                for (int k = start[c]; k < start[c + 1]; k++) {
+                    int v = members[k];
+                    nextInner[c] += inner[v];
+                    for (int i = offsets[v]; i < offsets[v + 1]; i++) {
+                        int other = community[neighbors[i]];
+                        if (other == c) {
+                            nextInner[c] += weight(i);
+                        } else {
+                            if (!seen[other]) {
+                                seen[other] = true;
+                                touched[numTouched++] = other;
+                            }
+                            link[other] += weight(i);
+                        }
+                    }
+                }
+                Arrays.sort(touched, 0, numTouched);
+                for (int k = 0; k < numTouched; k++) {
+                    int other = touched[k];
+                    nextNeighbors[position] = other;
+                    nextWeights[position++] = link[other];
+                    link[other] = 0;
+                    seen[other] = false;
+                }
+            }
+            nextOffsets[count] = position;
+            return new Level(count, nextOffsets, Arrays.copyOf(nextNeighbors, position),
+                    Arrays.copyOf(nextWeights, position), nextInner);
+        }
+    }
+
+}
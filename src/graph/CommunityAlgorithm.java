@@ -0,0 +1,28 @@
+package graph;
+
+/*
+ * The community detectors behind FriendGraph.findCommunities().
+ */
+import java.util.concurrent.ExecutorService;
+
+public enum CommunityAlgorithm {
+
+    /* Synchronous label propagation, parallel and fast, a few passes over the edges. */
+    LABEL_PROPAGATION {
+        @Override
+        Communities find(CsrFriendGraph graph, ExecutorService executor) {
+            return Communities.labelPropagation(graph, executor);
+        }
+    },
+    /* The Louvain method, slower but with a higher modularity; runs on the calling thread. */
+    LOUVAIN {
+        @Override
+        Communities find(CsrFriendGraph graph, ExecutorService executor) {
+            return Communities.louvain(graph);
+        }
+    };
+
+    /* The communities of the graph, using the executor's workers where the detector can. */
+    abstract Communities find(CsrFriendGraph graph, ExecutorService executor);
+
+}
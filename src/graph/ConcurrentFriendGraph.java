@@ -0,0 +1,615 @@
+package graph;
+
+/*
+ * A friendship graph that many threads can add friends and friendships to while
+ * other threads analyze it.
+ *
+ * Every vertex keeps its outgoing edges in an append-only log of (friend id,
+ * epoch) pairs, plus the edge lengths once a weighted edge is added. A writer locks only the vertex the edge starts at, appends the
+ * pair and publishes it by a volatile write of the log size, so writers to
+ * different vertices never wait for each other and readers never lock a vertex.
+ * New vertices are added to a ConcurrentHashMap.
+ *
+ * Readers work on snapshots. snapshot() advances the global epoch and builds an
+ * immutable CsrFriendGraph from every vertex and edge stamped with an earlier
+ * epoch, so a snapshot holds exactly the writes that completed before it was
+ * taken; edges added meanwhile carry the new epoch and are left out. Writers hold
+ * the read side of a StampedLock while they stamp and publish, and the snapshot
+ * takes the write side only to advance the epoch, so writers are never held up
+ * while a snapshot is built or analyzed. Reading the cached snapshot takes no
+ * lock at all.
+ *
+ * The FriendGraph methods run on the latest snapshot, which is reused until the
+ * next write. The centrality values measured on a snapshot are carried over to
+ * later snapshots for the vertices they share: a new snapshot starts with the
+ * values of the one before, and a measure that finishes after newer snapshots
+ * were taken copies its values into the latest one, unless that type was
+ * measured on a newer snapshot meanwhile. A snapshot the caller holds keeps the
+ * values measured on it.
+ */
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.StampedLock;
+
+public class ConcurrentFriendGraph implements FriendGraph {
+
+    private final ConcurrentHashMap<Integer, Vertex> vertices = new ConcurrentHashMap<Integer, Vertex>();
+
+    // writers hold the read side while they stamp and publish, snapshots take the
+    // write side to advance the epoch
+    private final StampedLock epochLock = new StampedLock();
+    private volatile long epoch;
+    private volatile boolean modified;
+    // set once the first edge with a length other than 1 is added
+    private volatile boolean weighted;
+
+    // set by addEdgeAndUpdateCentrality, the next snapshot brings closeness and
+    // betweenness up to date
+    private volatile boolean remeasure;
+
+    private final Object snapshotLock = new Object();
+    private volatile Snapshot latest;
+    // the limit of the newest snapshot each centrality type was measured on,
+    // guarded by snapshotLock
+    private final long[] measuredLimits = new long[CentralityType.values().length];
+    // incremental updates queued, guarded by snapshotLock
+    private long updatesQueued;
+
+    // the incremental updates run one at a time in snapshot order, outside
+    // snapshotLock
+    private final Object updateLock = new Object();
+    private volatile long updatesDone;
+    // the snapshot the last update brought up to date, guarded by updateLock
+    private Snapshot updated;
+
+    @Override
+    public void addVertex(int num) {
+        if (num < 0)
+            throw new IllegalArgumentException("Number must be 0 or greater.");
+
+        long lock = epochLock.readLock();
+        try {
+            vertex(num, epoch);
+            if (!modified)
+                modified = true;
+        } finally {
+            epochLock.unlockRead(lock);
+        }
+    }
+
+    @Override
+    public void addEdge(int from, int to) {
+        addEdge(from, to, 1);
+    }
+
+    @Override
+    public void addEdge(int from, int to, float weight) {
+        if (from < 0 || to < 0)
+            throw new IllegalArgumentException("Number must be 0 or greater.");
+        FriendNode.checkWeight(weight);
+
+        long lock = epochLock.readLock();
+        try {
+            long stamp = epoch;
+            if (weight != 1 && !weighted)
+                weighted = true;
+            vertex(to, stamp);
+            vertex(from, stamp).append(to, stamp, weight);
+            if (!modified)
+                modified = true;
+        } finally {
+            epochLock.unlockRead(lock);
+        }
+    }
+
+    /*
+     * Returns the vertex of the friend id, adding it with the given epoch if it is
+     * new.
+     */
+    private Vertex vertex(int num, long stamp) {
+        Vertex vertex = vertices.get(num);
+        if (vertex == null) {
+            Vertex added = new Vertex(num, stamp);
+            vertex = vertices.putIfAbsent(num, added);
+            if (vertex == null)
+                vertex = added;
+        }
+        return vertex;
+    }
+
+    /**
+     * Return an immutable copy of every friend and friendship added before this
+     * call. Writers keep running while the copy is built. Without writes since the
+     * last snapshot the same copy is returned again.
+     *
+     * @return CsrFriendGraph A consistent snapshot of the graph.
+     */
+    public CsrFriendGraph snapshot() {
+        return latest().graph;
+    }
+
+    /*
+     * Returns the latest snapshot together with its epoch limit, building a new
+     * one first when the graph was written since. Only a rebuild takes the locks.
+     */
+    private Snapshot latest() {
+
+        // without writes since it and no newer snapshot being built (which would
+        // have advanced the epoch past its limit) the cached snapshot is current
+        Snapshot current = latest;
+        if (current != null && !modified && !remeasure && current.limit == epoch - 1)
+            return current;
+
+        Snapshot previous;
+        Snapshot next;
+        long ticket = -1;
+        synchronized (snapshotLock) {
+            long lock = epochLock.writeLock();
+            long limit;
+            boolean measure;
+            try {
+                if (latest != null && !modified && !remeasure)
+                    return latest;
+                limit = epoch++;
+                modified = false;
+                measure = remeasure;
+                remeasure = false;
+            } finally {
+                epochLock.unlockWrite(lock);
+            }
+
+            // every write stamped up to limit has completed, later writes are skipped
+            int[] ids = new int[vertices.size()];
+            int n = 0;
+            int numEdges = 0;
+            for (Vertex vertex : vertices.values()) {
+                if (vertex.stamp <= limit) {
+                    if (n == ids.length)
+                        ids = Arrays.copyOf(ids, 2 * n);
+                    ids[n++] = vertex.value;
+                    numEdges += vertex.size;
+                }
+            }
+            int[] sources = new int[numEdges];
+            int[] targets = new int[numEdges];
+            float[] weights = weighted ? new float[numEdges] : null;
+            int m = 0;
+            for (int v = 0; v < n; v++) {
+                m = vertices.get(ids[v]).copyEdges(limit, sources, targets, weights, m);
+            }
+
+            CsrFriendGraph graph = CsrFriendGraph.fromEdges(ids, n, sources, targets, weights, m);
+            previous = latest;
+            if (previous != null) {
+                for (int v = 0; v < graph.size(); v++) {
+                    int old = previous.graph.indexOf(graph.idOf(v));
+                    if (old >= 0) {
+                        graph.nodeAt(v).copyCentralities(previous.graph.nodeAt(old));
+                    }
+                }
+            }
+            // values copied while an update is running may be out of date
+            next = new Snapshot(graph, limit, updatesQueued == updatesDone);
+            latest = next;
+            if (measure)
+                ticket = updatesQueued++;
+        }
+
+        if (ticket >= 0)
+            update(previous, next, ticket);
+        return next;
+    }
+
+    /*
+     * Brings the closeness and betweenness of a new snapshot up to date from an
+     * earlier one, like FriendGraphImpl.addEdgeAndUpdateCentrality, and publishes
+     * them. Each update starts from the values the one before it left, so they
+     * wait for each other in snapshot order; readers keep getting the snapshot
+     * with the values it was built with meanwhile.
+     */
+    private void update(Snapshot previous, Snapshot next, long ticket) {
+
+        synchronized (updateLock) {
+            boolean interrupted = false;
+            while (updatesDone != ticket) {
+                try {
+                    updateLock.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            try {
+                // a snapshot built while an earlier update ran holds stale values,
+                // so start from the snapshot that update brought up to date
+                Snapshot base = previous == null || previous.upToDate ? previous : updated;
+                double[][] values;
+                if (base == null) {
+                    values = new double[][] { ClosenessCentrality.measure(next.graph),
+                            BrandesBetweenness.measure(next.graph) };
+                } else {
+                    double[] closeness = new double[base.graph.size()];
+                    double[] betweenness = new double[base.graph.size()];
+                    for (int v = 0; v < closeness.length; v++) {
+                        closeness[v] = base.graph.nodeAt(v).getClosenessCentrality();
+                        betweenness[v] = base.graph.nodeAt(v).getBetweennessValue();
+                    }
+                    values = IncrementalCentrality.update(base.graph, closeness, betweenness, next.graph);
+                }
+                publish(next, CentralityType.CLOSENESS, values[0]);
+                publish(next, CentralityType.BETWEENNESS, values[1]);
+                updated = next;
+            } finally {
+                updatesDone = ticket + 1;
+                updateLock.notifyAll();
+                if (interrupted)
+                    Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /*
+     * Stores the values of a centrality type measured on a snapshot in it and
+     * carries them over to the latest snapshot, unless the type was measured on a
+     * newer snapshot meanwhile.
+     */
+    private void publish(Snapshot measured, CentralityType type, double[] values) {
+
+        synchronized (snapshotLock) {
+            if (measured.limit < measuredLimits[type.ordinal()])
+                return;
+            for (int v = 0; v < values.length; v++) {
+                type.store(measured.graph.nodeAt(v), values[v]);
+            }
+            carryOver(measured, type);
+        }
+    }
+
+    /*
+     * Copies the values of a centrality type measured on the given snapshot into
+     * the latest snapshot, for the vertices both hold, if newer snapshots were
+     * taken while it was measured. Values measured on a newer snapshot are kept.
+     */
+    private void carryOver(Snapshot measured, CentralityType type) {
+
+        synchronized (snapshotLock) {
+            if (measured.limit < measuredLimits[type.ordinal()])
+                return;
+            measuredLimits[type.ordinal()] = measured.limit;
+            if (latest == measured)
+                return;
+            CsrFriendGraph from = measured.graph;
+            CsrFriendGraph to = latest.graph;
+            for (int v = 0; v < to.size(); v++) {
+                int old = from.indexOf(to.idOf(v));
+                if (old >= 0) {
+                    type.store(to.nodeAt(v), type.scoreOf(from.nodeAt(old)));
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the friends of the latest snapshot, a read-only map.
+     */
+    @Override
+    public Map<Integer, FriendNode> getFriends() {
+        return snapshot().getFriends();
+    }
+
+    /**
+     * Add the edge and bring the closeness and betweenness centrality up to date
+     * on the next snapshot, which holds the edge. The reader that builds that
+     * snapshot runs the incremental update of FriendGraphImpl for every edge
+     * added since the snapshot before, outside the snapshot lock, so other
+     * readers are not held up. Call measureAndSetClosenessCentrality() and
+     * measureAndSetBetweennessCentrality() once before the first insertion.
+     *
+     * @param from The friend id the edge starts at.
+     * @param to   The friend id the edge ends at.
+     */
+    @Override
+    public void addEdgeAndUpdateCentrality(int from, int to) {
+        addEdge(from, to);
+
+        long lock = epochLock.readLock();
+        try {
+            remeasure = true;
+        } finally {
+            epochLock.unlockRead(lock);
+        }
+    }
+
+    @Override
+    public HashMap<Integer, HashSet<Integer>> exportGraph() {
+        return snapshot().exportGraph();
+    }
+
+    @Override
+    public HashMap<Integer, ArrayList<Integer>> suggestFriendsOfFriends(FriendNode person) {
+        return snapshot().suggestFriendsOfFriends(person);
+    }
+
+    @Override
+    public List<Recommendation> recommendFriends(FriendNode person, int number, RecommendationScore score) {
+        return snapshot().recommendFriends(person, number, score);
+    }
+
+    @Override
+    public void recommendFriendsForAll(int number, RecommendationScore score, RecommendationSink sink,
+            ForkJoinPool pool) {
+        snapshot().recommendFriendsForAll(number, score, sink, pool);
+    }
+
+    @Override
+    public int distance(int from, int to) {
+        return snapshot().distance(from, to);
+    }
+
+    @Override
+    public List<List<Integer>> shortestPaths(int from, int to, int number) {
+        return snapshot().shortestPaths(from, to, number);
+    }
+
+    @Override
+    public String adjacencyString() {
+        return snapshot().adjacencyString();
+    }
+
+    @Override
+    public List<FriendGraph> exportTopDegreeGraphs(int number) {
+        return snapshot().exportTopDegreeGraphs(number);
+    }
+
+    @Override
+    public FriendGraph subgraph(int[] friends) {
+        return snapshot().subgraph(friends);
+    }
+
+    @Override
+    public FriendGraph egoNetwork(int friend, int radius) {
+        return snapshot().egoNetwork(friend, radius);
+    }
+
+    @Override
+    public void measureAndSetClosenessCentrality() {
+        Snapshot measured = latest();
+        measured.graph.measureAndSetClosenessCentrality();
+        carryOver(measured, CentralityType.CLOSENESS);
+    }
+
+    @Override
+    public void measureAndSetClosenessCentrality(ExecutorService executor) {
+        Snapshot measured = latest();
+        measured.graph.measureAndSetClosenessCentrality(executor);
+        carryOver(measured, CentralityType.CLOSENESS);
+    }
+
+    @Override
+    public int measureAndSetCoreness(ExecutorService executor) {
+        Snapshot measured = latest();
+        int degeneracy = measured.graph.measureAndSetCoreness(executor);
+        carryOver(measured, CentralityType.CORENESS);
+        return degeneracy;
+    }
+
+    @Override
+    public int[] degeneracyOrder() {
+        return snapshot().degeneracyOrder();
+    }
+
+    @Override
+    public ConnectedComponents findConnectedComponents() {
+        return snapshot().findConnectedComponents();
+    }
+
+    @Override
+    public void measureAndSetWeightedClosenessCentrality() {
+        Snapshot measured = latest();
+        measured.graph.measureAndSetWeightedClosenessCentrality();
+        carryOver(measured, CentralityType.CLOSENESS);
+    }
+
+    @Override
+    public Communities findCommunities(CommunityAlgorithm algorithm, ExecutorService executor) {
+        return snapshot().findCommunities(algorithm, executor);
+    }
+
+    @Override
+    public TriangleCounts countTriangles(ExecutorService executor) {
+        return snapshot().countTriangles(executor);
+    }
+
+    @Override
+    public void measureAndSetApproximateClosenessCentrality(int pivots) {
+        Snapshot measured = latest();
+        measured.graph.measureAndSetApproximateClosenessCentrality(pivots);
+        carryOver(measured, CentralityType.CLOSENESS);
+    }
+
+    @Override
+    public int measureAndSetPageRank(ExecutorService executor) {
+        Snapshot measured = latest();
+        int iterations = measured.graph.measureAndSetPageRank(executor);
+        carryOver(measured, CentralityType.PAGERANK);
+        return iterations;
+    }
+
+    @Override
+    public int measureAndSetEigenvectorCentrality(ExecutorService executor) {
+        Snapshot measured = latest();
+        int iterations = measured.graph.measureAndSetEigenvectorCentrality(executor);
+        carryOver(measured, CentralityType.EIGENVECTOR);
+        return iterations;
+    }
+
+    @Override
+    public int measureAndSetKatzCentrality(double alpha, ExecutorService executor) {
+        Snapshot measured = latest();
+        int iterations = measured.graph.measureAndSetKatzCentrality(alpha, executor);
+        carryOver(measured, CentralityType.KATZ);
+        return iterations;
+    }
+
+    @Override
+    public void measureAndSetBetweennessCentrality() {
+        Snapshot measured = latest();
+        measured.graph.measureAndSetBetweennessCentrality();
+        carryOver(measured, CentralityType.BETWEENNESS);
+    }
+
+    @Override
+    public void measureAndSetBetweennessCentrality(ExecutorService executor) {
+        Snapshot measured = latest();
+        measured.graph.measureAndSetBetweennessCentrality(executor);
+        carryOver(measured, CentralityType.BETWEENNESS);
+    }
+
+    @Override
+    public void measureAndSetWeightedBetweennessCentrality() {
+        Snapshot measured = latest();
+        measured.graph.measureAndSetWeightedBetweennessCentrality();
+        carryOver(measured, CentralityType.BETWEENNESS);
+    }
+
+    @Override
+    public double measureAndSetApproximateBetweennessCentrality(int samples, double delta) {
+        Snapshot measured = latest();
+        double error = measured.graph.measureAndSetApproximateBetweennessCentrality(samples, delta);
+        carryOver(measured, CentralityType.BETWEENNESS);
+        return error;
+    }
+
+    @Override
+    public double measureAndSetApproximateBetweennessCentrality(double epsilon, double delta) {
+        Snapshot measured = latest();
+        double error = measured.graph.measureAndSetApproximateBetweennessCentrality(epsilon, delta);
+        carryOver(measured, CentralityType.BETWEENNESS);
+        return error;
+    }
+
+    @Override
+    public List<FriendNode> returnTopCentralityFor(int number, String type) {
+        return snapshot().returnTopCentralityFor(number, type);
+    }
+
+    @Override
+    public List<FriendNode> returnTopCentralityFor(int number, CentralityType type) {
+        return snapshot().returnTopCentralityFor(number, type);
+    }
+
+    /*
+     * A vertex and the append-only log of its outgoing edges. Appends are locked on
+     * the vertex; the log arrays are replaced when they grow, and both the arrays
+     * and the size are volatile so a reader that reads the size first sees every
+     * entry below it.
+     */
+    private static final class Vertex {
+
+        private final int value;
+        private final long stamp;
+
+        private volatile Log log = new Log(4);
+        private volatile int size;
+
+        Vertex(int value, long stamp) {
+            this.value = value;
+            this.stamp = stamp;
+        }
+
+        synchronized void append(int target, long edgeStamp, float weight) {
+            Log current = log;
+            if (size == current.targets.length) {
+                current = current.grow(size);
+                log = current;
+            }
+            if (weight != 1 && current.weights == null) {
+                current = current.withWeights(size);
+                log = current;
+            }
+            current.targets[size] = target;
+            current.stamps[size] = edgeStamp;
+            if (current.weights != null)
+                current.weights[size] = weight;
+            size = size + 1;
+        }
+
+        /*
+         * Copies the edges stamped up to limit into sources, targets and weights
+         * (when not null) from position on and returns the position after them.
+         */
+        int copyEdges(long limit, int[] sources, int[] targets, float[] weights, int position) {
+            int count = size;
+            Log current = log;
+            for (int i = 0; i < count && position < sources.length; i++) {
+                if (current.stamps[i] <= limit) {
+                    if (weights != null)
+                        weights[position] = current.weights == null ? 1 : current.weights[i];
+                    sources[position] = value;
+                    targets[position++] = current.targets[i];
+                }
+            }
+            return position;
+        }
+    }
+
+    /*
+     * A snapshot, the last epoch whose writes it holds and whether no incremental
+     * update was running when it copied the values of the snapshot before.
+     */
+    private static final class Snapshot {
+
+        private final CsrFriendGraph graph;
+        private final long limit;
+        private final boolean upToDate;
+
+        Snapshot(CsrFriendGraph graph, long limit, boolean upToDate) {
+            this.graph = graph;
+            this.limit = limit;
+            this.upToDate = upToDate;
+        }
+    }
+
+    private static final class Log {
+
+        private final int[] targets;
+        private final long[] stamps;
+        // edge lengths, null while every edge has length 1
+        private final float[] weights;
+
+        Log(int capacity) {
+            this(capacity, false);
+        }
+
+        private Log(int capacity, boolean weighted) {
+            this.targets = new int[capacity];
+            this.stamps = new long[capacity];
+            this.weights = weighted ? new float[capacity] : null;
+        }
+
+        Log grow(int size) {
+            Log larger = new Log(2 * targets.length, weights != null);
+            System.arraycopy(targets, 0, larger.targets, 0, size);
+            System.arraycopy(stamps, 0, larger.stamps, 0, size);
+            if (weights != null)
+                System.arraycopy(weights, 0, larger.weights, 0, size);
+            return larger;
+        }
+
+        /* A copy of the same capacity with a weight column, 1 for the first size edges. */
+        Log withWeights(int size) {
+            Log weightedLog = new Log(targets.length, true);
+            System.arraycopy(targets, 0, weightedLog.targets, 0, size);
+            System.arraycopy(stamps, 0, weightedLog.stamps, 0, size);
+            Arrays.fill(weightedLog.weights, 0, size, 1);
+            return weightedLog;
+        }
+    }
+
+}
@@ -0,0 +1,267 @@
+package graph;
+
+/*
+ * The connected components of a friendship graph, found with a union-find over
+ * the CSR edge arrays. Edge directions are ignored, so these are the weakly
+ * connected components: two friends are in the same component when a path of
+ * friendships in either direction joins them. No shortest path ever leaves a
+ * component, so centrality can be measured one component at a time and
+ * components of a single friend can be skipped.
+ *
+ * A root is always linked below the smaller root, so the root of a component is
+ * its smallest dense index. Components are numbered in the order of their
+ * smallest dense index, which makes the numbering the same for the sequential
+ * and the parallel search.
+ *
+ * The parallel search runs the same union-find on an AtomicIntegerArray. The
+ * edges are split over the workers, roots are linked with compareAndSet (the
+ * hooking step of Shiloach-Vishkin and Afforest) and a failed link is retried
+ * from the new roots, so no locks are needed.
+ */
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+public final class ConnectedComponents {
+
+    // vertices handled by one parallel task
+    private static final int VERTICES_PER_BLOCK = 4096;
+
+    private final CsrFriendGraph graph;
+    // component number of each dense index
+    private final int[] component;
+    // members of component c are vertices[offsets[c]] up to vertices[offsets[c + 1]]
+    private final int[] offsets;
+    private final int[] vertices;
+
+    private ConnectedComponents(CsrFriendGraph graph, int[] root) {
+
+        this.graph = graph;
+        int n = graph.size();
+        this.component = new int[n];
+        int count = 0;
+        for (int v = 0; v < n; v++) {
+            // the root is the smallest index of the component, so it is seen first
+            component[v] = root[v] == v ? count++ : component[root[v]];
+        }
+
+        this.offsets = new int[count + 1];
+        for (int v = 0; v < n; v++) {
+            offsets[component[v] + 1]++;
+        }
+        for (int c = 0; c < count; c++) {
+            offsets[c + 1] += offsets[c];
+        }
+        int[] cursor = new int[count];
+        System.arraycopy(offsets, 0, cursor, 0, count);
+        this.vertices = new int[n];
+        for (int v = 0; v < n; v++) {
+            vertices[cursor[component[v]]++] = v;
+        }
+    }
+
+    /**
+     * Find the connected components on the calling thread.
+     *
+     * @param graph The graph to search.
+     * @return ConnectedComponents The components of the graph.
+     */
+    static ConnectedComponents find(CsrFriendGraph graph) {
+
+        int n = graph.size();
+        int[] offsets = graph.offsets();
+        int[] neighbors = graph.neighbors();
+        int[] parent = new int[n];
+        for (int v = 0; v < n; v++) {
+            parent[v] = v;
+        }
+
+        for (int v = 0; v < n; v++) {
+            for (int i = offsets[v]; i < offsets[v + 1]; i++) {
+                int a = root(parent, v);
+                int b = root(parent, neighbors[i]);
+                if (a < b) {
+                    parent[b] = a;
+                } else if (b < a) {
+                    parent[a] = b;
+                }
+            }
+        }
+        for (int v = 0; v < n; v++) {
+            parent[v] = root(parent, v);
+        }
+        return new ConnectedComponents(graph, parent);
+    }
+
+    /**
+     * Find the connected components with the edges spread over the threads of the
+     * given executor. The result is identical to find(CsrFriendGraph).
+     *
+     * @param graph    The graph to search.
+     * @param executor The executor running the workers.
+     * @return ConnectedComponents The components of the graph.
+     */
+    static ConnectedComponents find(final CsrFriendGraph graph, ExecutorService executor) {
+
+        final int n = graph.size();
+        final int[] offsets = graph.offsets();
+        final int[] neighbors = graph.neighbors();
+        final AtomicIntegerArray parent = new AtomicIntegerArray(n);
+        for (int v = 0; v < n; v++) {
+            parent.set(v, v);
+        }
+
+        final int numBlocks = (n + VERTICES_PER_BLOCK - 1) / VERTICES_PER_BLOCK;
+        final AtomicInteger nextBlock = new AtomicInteger();
+        Callable<Void> link = new Callable<Void>() {
+            @Override
+            public Void call() {
+                for (int block = nextBlock.getAndIncrement(); block < numBlocks; block = nextBlock
+                        .getAndIncrement()) {
+                    int end = Math.min(n, (block + 1) * VERTICES_PER_BLOCK);
+                    for (int v = block * VERTICES_PER_BLOCK; v < end; v++) {
+                        for (int i = offsets[v]; i < offsets[v + 1]; i++) {
+                            union(parent, v, neighbors[i]);
+                        }
+                    }
+                }
+                return null;
+            }
+        };
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (int i = Workers.parallelism(executor); i > 0; i--) {
+            tasks.add(link);
+        }
+        Workers.invokeAll(executor, tasks);
+
+        int[] root = new int[n];
+        for (int v = 0; v < n; v++) {
+            root[v] = root(parent, v);
+        }
+        return new ConnectedComponents(graph, root);
+    }
+
+    /*
+     * Follows the parents to the root, halving the path on the way.
+     */
+    private static int root(int[] parent, int v) {
+        while (parent[v] != v) {
+            parent[v] = parent[parent[v]];
+            v = parent[v];
+        }
+        return v;
+    }
+
+    private static int root(AtomicIntegerArray parent, int v) {
+        int p = parent.get(v);
+        while (p != v) {
+            int grandparent = parent.get(p);
+            // path halving, losing this race to another thread is harmless
+            parent.compareAndSet(v, p, grandparent);
+            v = grandparent;
+            p = parent.get(v);
+        }
+        return v;
+    }
+
+    /*
+     * Links the roots of a and b, the larger below the smaller. The link only
+     * succeeds while the larger is still a root; otherwise the roots are looked up
+     * again.
+     */
+    private static void union(AtomicIntegerArray parent, int a, int b) {
+        while (true) {
+            a = root(parent, a);
+            b = root(parent, b);
+            if (a == b)
+                return;
+            if (a > b) {
+                int swap = a;
+                a = b;
+                b = swap;
+            }
+            if (parent.compareAndSet(b, b, a))
+                return;
+        }
+    }
+
+    /**
+     * Return the number of components.
+     *
+     * @return int The number of components.
+     */
+    public int count() {
+        return offsets.length - 1;
+    }
+
+    /**
+     * Return the number of friends in a component.
+     *
+     * @param component The component number, from 0 to count() - 1.
+     * @return int The size of the component.
+     */
+    public int size(int component) {
+        return offsets[component + 1] - offsets[component];
+    }
+
+    /**
+     * Return the component a friend belongs to.
+     *
+     * @param friend The friend id.
+     * @return int The component number.
+     */
+    public int componentOf(int friend) {
+        int v = graph.indexOf(friend);
+        if (v < 0)
+            throw new IllegalArgumentException("Person is not in this graph");
+        return component[v];
+    }
+
+    /**
+     * Return the friend ids of a component in dense index order, which is
+     * ascending unless the graph was relabeled.
+     *
+     * @param component The component number, from 0 to count() - 1.
+     * @return int[] The friend ids of the component.
+     */
+    public int[] members(int component) {
+        int[] members = new int[size(component)];
+        for (int k = 0; k < members.length; k++) {
+            members[k] = graph.idOf(vertices[offsets[component] + k]);
+        }
+        return members;
+    }
+
+    /**
+     * Return the component with the most friends, the first one on ties.
+     *
+     * @return int The number of the largest component, or -1 for an empty graph.
+     */
+    public int largest() {
+        int largest = -1;
+        for (int c = 0; c < count(); c++) {
+            if (largest < 0 || size(c) > size(largest))
+                largest = c;
+        }
+        return largest;
+    }
+
+    /* Component number of a dense index. */
+    int componentOfVertex(int v) {
+        return component[v];
+    }
+
+    /* Start of each component's members within vertices(), one extra entry at the end. */
+    int[] offsets() {
+        return offsets;
+    }
+
+    /* Dense indices grouped by component, ascending within each component. */
+    int[] vertices() {
+        return vertices;
+    }
+
+}
@@ -0,0 +1,182 @@
+package graph;
+
+/*
+ * k-core decomposition of the undirected version of a CsrFriendGraph. The
+ * k-core is what is left after repeatedly removing every friend with fewer than
+ * k friends; the coreness of a friend is the largest k whose core still holds
+ * it. A hub whose many friends barely know each other has a high degree but a
+ * low coreness, while the members of a tight group share a high coreness.
+ *
+ * The sequential decomposition is the bucket algorithm of Batagelj and
+ * Zaversnik: the vertices are kept sorted by remaining degree in one array with
+ * the start of each degree's bucket, and removing the vertex of smallest degree
+ * moves each of its friends one bucket down by a swap. It runs in O(V + E), and
+ * the order the vertices are removed in is a degeneracy ordering: every vertex
+ * has at most degeneracy friends later in the order.
+ *
+ * The parallel decomposition peels level by level (as ParK does). For k = 0, 1,
+ * ... the vertices left with exactly k friends form the frontier; the workers
+ * remove the frontier, decrement the remaining degree of its friends with
+ * atomic updates, and a friend that drops to k joins the next frontier of the
+ * same level. Each level scans the vertices once to find its first frontier.
+ * The coreness is the same as the sequential one; the removal order is not
+ * kept.
+ */
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+final class CoreDecomposition {
+
+    // vertices handled by one parallel task
+    private static final int VERTICES_PER_BLOCK = 4096;
+
+    private CoreDecomposition() {
+    }
+
+    /**
+     * Find the coreness of every vertex with the bucket algorithm.
+     *
+     * @param graph The graph to decompose.
+     * @param order Filled with the dense indices in the order they are removed, a
+     *              degeneracy ordering, when not null.
+     * @return int[] The coreness per dense index.
+     */
+    static int[] coreness(CsrFriendGraph graph, int[] order) {
+
+        CsrFriendGraph undirected = graph.undirected();
+        int n = undirected.size();
+        int[] offsets = undirected.offsets();
+        int[] neighbors = undirected.neighbors();
+
+        int[] degree = new int[n];
+        int maxDegree = 0;
+        for (int v = 0; v < n; v++) {
+            degree[v] = offsets[v + 1] - offsets[v];
+            maxDegree = Math.max(maxDegree, degree[v]);
+        }
+
+        // bucket sort the vertices by degree, start[d] is the first position of degree d
+        int[] start = new int[maxDegree + 2];
+        for (int v = 0; v < n; v++) {
+            start[degree[v] + 1]++;
+        }
+        for (int d = 0; d <= maxDegree; d++) {
+            start[d + 1] += start[d];
+        }
+        int[] vertices = new int[n];
+        int[] position = new int[n];
+        int[] cursor = new int[maxDegree + 1];
+        System.arraycopy(start, 0, cursor, 0, maxDegree + 1);
+        for (int v = 0; v < n; v++) {
+            position[v] = cursor[degree[v]]++;
+            vertices[position[v]] = v;
+        }
+
+        // remove the vertex of smallest remaining degree, moving each friend one bucket down
+        for (int k = 0; k < n; k++) {
+            int v = vertices[k];
+            for (int i = offsets[v]; i < offsets[v + 1]; i++) {
+                int u = neighbors[i];
+                int du = degree[u];
+                if (du > degree[v]) {
+                    int first = start[du];
+                    int w = vertices[first];
+                    if (u != w) {
+                        vertices[position[u]] = w;
+                        position[w] = position[u];
+                        vertices[first] = u;
+                        position[u] = first;
+                    }
+                    start[du]++;
+                    degree[u]--;
+                }
+            }
+        }
+
+        if (order != null)
+            System.arraycopy(vertices, 0, order, 0, n);
+        return degree;
+    }
+
+    /**
+     * Find the coreness of every vertex by peeling level by level, with each
+     * frontier spread over the workers of the executor.
+     *
+     * @param graph    The graph to decompose.
+     * @param executor The executor running the workers.
+     * @return int[] The coreness per dense index.
+     */
+    static int[] parallelCoreness(CsrFriendGraph graph, ExecutorService executor) {
+
+        CsrFriendGraph undirected = graph.undirected();
+        final int n = undirected.size();
+        final int[] offsets = undirected.offsets();
+        final int[] neighbors = undirected.neighbors();
+
+        final AtomicIntegerArray degree = new AtomicIntegerArray(n);
+        final int[] core = new int[n];
+        for (int v = 0; v < n; v++) {
+            degree.set(v, offsets[v + 1] - offsets[v]);
+            core[v] = -1;
+        }
+
+        // the vertices removed at the current level, and the ones that follow them
+        int[] frontier = new int[n];
+        int[] following = new int[n];
+        final AtomicInteger size = new AtomicInteger();
+        int removed = 0;
+        for (int k = 0; removed < n; k++) {
+            final int level = k;
+            final int[] found = frontier;
+            size.set(0);
+            Workers.sumBlocks(executor, n, VERTICES_PER_BLOCK, new Workers.Block() {
+                @Override
+                public double run(int start, int end) {
+                    for (int v = start; v < end; v++) {
+                        if (core[v] < 0 && degree.get(v) <= level)
+                            found[size.getAndIncrement()] = v;
+                    }
+                    return 0;
+                }
+            });
+
+            int length = size.get();
+            while (length > 0) {
+                final int[] current = frontier;
+                final int[] next = following;
+                for (int j = 0; j < length; j++) {
+                    core[current[j]] = level;
+                }
+                removed += length;
+                size.set(0);
+                Workers.sumBlocks(executor, length, VERTICES_PER_BLOCK, new Workers.Block() {
+                    @Override
+                    public double run(int start, int end) {
+                        for (int j = start; j < end; j++) {
+                            int v = current[j];
+                            for (int i = offsets[v]; i < offsets[v + 1]; i++) {
+                                int u = neighbors[i];
+                                if (core[u] >= 0 || degree.get(u) <= level)
+                                    continue;
+                                // exactly one decrement takes a friend from level + 1 to level
+                                int left = degree.decrementAndGet(u);
+                                if (left == level) {
+                                    next[size.getAndIncrement()] = u;
+                                } else if (left < level) {
+                                    degree.incrementAndGet(u);
+                                }
+                            }
+                        }
+                        return 0;
+                    }
+                });
+                length = size.get();
+                frontier = next;
+                following = current;
+            }
+        }
+        return core;
+    }
+
+}
@@ -0,0 +1,1176 @@
+package graph;
+
+/*
+ * An immutable friendship graph stored in compressed sparse row (CSR) form.
+ *
+ * Every friend id is remapped to a dense vertex index in [0, size). The friends
+ * of vertex v are the dense indices neighbors[offsets[v]] up to (but not
+ * including) neighbors[offsets[v + 1]], sorted in ascending order. The original
+ * friend ids are kept in the array ids, so mapping an id to its dense index is a
+ * binary search and no boxed keys are stored per vertex or per edge.
+ *
+ * The dense indices follow the ascending friend ids, unless the graph was
+ * relabeled with relabel(VertexOrder) so that vertices that are visited together
+ * sit next to each other in memory. A relabeled graph keeps a sorted copy of the
+ * ids with the dense index of each for the lookup; the original ids only
+ * show up at the API boundary (getValue(), exportGraph() and the results).
+ *
+ * A graph is created from an existing FriendGraph with from(FriendGraph) or
+ * assembled edge by edge with a CsrFriendGraph.Builder. Once built, the graph
+ * cannot be changed; addVertex() and addEdge() throw an
+ * UnsupportedOperationException.
+ *
+ * One FriendNode is kept per vertex to hold the centrality values and to answer
+ * the FriendGraph methods. Its edges are a read-only view over the neighbors
+ * array, so no FriendNode is allocated per edge. Closeness, betweenness and
+ * friend suggestions all run directly over the primitive arrays.
+ */
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+
+public class CsrFriendGraph implements FriendGraph {
+
+    // original friend id of each dense vertex index
+    private final int[] ids;
+    // ids in ascending order and the dense index of each, null when ids is sorted
+    private final int[][] lookup;
+    // start of each vertex's row within neighbors, offsets[size] == neighbors.length
+    private final int[] offsets;
+    // dense indices of the friends of each vertex, sorted within each row
+    private final int[] neighbors;
+    // length of each edge in neighbors, null when every edge has length 1
+    private final float[] weights;
+
+    private final FriendNode[] nodes;
+    private final Map<Integer, FriendNode> friends;
+
+    // same vertices with every edge reversed, built on first use
+    private volatile CsrFriendGraph transpose;
+    // same vertices with every edge in both directions and no self loops, built on first use
+    private volatile CsrFriendGraph undirected;
+
+    /*
+     * Wraps already built CSR arrays. The ids must be unique, and each row of
+     * neighbors must be sorted and free of duplicates.
+     */
+    CsrFriendGraph(int[] ids, int[] offsets, int[] neighbors) {
+        this(ids, offsets, neighbors, null, lookupFor(ids));
+    }
+
+    /*
+     * Wraps already built CSR arrays with the length of every edge, parallel to
+     * neighbors. Null weights give every edge length 1.
+     */
+    CsrFriendGraph(int[] ids, int[] offsets, int[] neighbors, float[] weights) {
+        this(ids, offsets, neighbors, weights, lookupFor(ids));
+    }
+
+    private CsrFriendGraph(int[] ids, int[] offsets, int[] neighbors, float[] weights, int[][] lookup) {
+        this.ids = ids;
+        this.lookup = lookup;
+        this.offsets = offsets;
+        this.neighbors = neighbors;
+        this.weights = weights;
+        this.nodes = new FriendNode[ids.length];
+        for (int v = 0; v < ids.length; v++) {
+            nodes[v] = new Node(v);
+        }
+        this.friends = new FriendMap();
+    }
+
+    /*
+     * Returns null when the ids are ascending, otherwise the sorted ids and the
+     * dense index of each.
+     */
+    private static int[][] lookupFor(int[] ids) {
+
+        boolean ascending = true;
+        for (int v = 1; v < ids.length && ascending; v++) {
+            ascending = ids[v - 1] < ids[v];
+        }
+        if (ascending)
+            return null;
+
+        // sort (id, index) pairs packed into longs
+        long[] keys = new long[ids.length];
+        for (int v = 0; v < ids.length; v++) {
+            keys[v] = ((long) ids[v] << 32) | v;
+        }
+        Arrays.sort(keys);
+        int[] sorted = new int[ids.length];
+        int[] index = new int[ids.length];
+        for (int k = 0; k < keys.length; k++) {
+            sorted[k] = (int) (keys[k] >> 32);
+            index[k] = (int) keys[k];
+            if (k > 0 && sorted[k] == sorted[k - 1])
+                throw new IllegalArgumentException("Duplicate friend id " + sorted[k]);
+        }
+        return new int[][] { sorted, index };
+    }
+
+    /**
+     * Creates a compressed copy of the given graph. The closeness and betweenness
+     * values already measured on the graph are copied as well.
+     *
+     * @param graph The graph to copy.
+     * @return CsrFriendGraph An immutable graph with the same friends and edges.
+     */
+    public static CsrFriendGraph from(FriendGraph graph) {
+
+        Map<Integer, FriendNode> source = graph.getFriends();
+        int[] ids = new int[source.size()];
+        int count = 0;
+        int numEdges = 0;
+        boolean weighted = false;
+        for (FriendNode friend : source.values()) {
+            ids[count++] = friend.getValue();
+            numEdges += friend.getSize();
+            weighted |= friend.hasWeights();
+        }
+        Arrays.sort(ids);
+
+        int[] offsets = new int[ids.length + 1];
+        int[] neighbors = new int[numEdges];
+        float[] weights = weighted ? new float[numEdges] : null;
+        int position = 0;
+        for (int v = 0; v < ids.length; v++) {
+            offsets[v] = position;
+            FriendNode node = source.get(ids[v]);
+            for (FriendNode friend : node.getEdges()) {
+                if (weighted)
+                    weights[position] = node.getWeight(friend);
+                neighbors[position++] = Arrays.binarySearch(ids, friend.getValue());
+            }
+            if (weighted) {
+                sortRow(neighbors, weights, offsets[v], position);
+            } else {
+                Arrays.sort(neighbors, offsets[v], position);
+            }
+        }
+        offsets[ids.length] = position;
+
+        CsrFriendGraph csr = new CsrFriendGraph(ids, offsets, neighbors, weights);
+        for (int v = 0; v < ids.length; v++) {
+            csr.nodes[v].copyCentralities(source.get(ids[v]));
+        }
+        return csr;
+    }
+
+    /*
+     * Builds a graph from a list of directed edges given as original friend ids.
+     * Vertices without edges can be passed in vertices. Duplicate edges are
+     * dropped.
+     */
+    static CsrFriendGraph fromEdges(int[] vertices, int numVertices, int[] sources, int[] targets, int numEdges) {
+        return fromEdges(vertices, numVertices, sources, targets, null, numEdges);
+    }
+
+    /*
+     * Same as above with the length of each edge, or null weights for length 1.
+     * Of duplicate edges the shortest is kept.
+     */
+    static CsrFriendGraph fromEdges(int[] vertices, int numVertices, int[] sources, int[] targets, float[] weights,
+            int numEdges) {
+
+        // collect every id that appears and give each one a dense index
+        int[] ids = new int[numVertices + 2 * numEdges];
+        System.arraycopy(vertices, 0, ids, 0, numVertices);
+        System.arraycopy(sources, 0, ids, numVertices, numEdges);
+        System.arraycopy(targets, 0, ids, numVertices + numEdges, numEdges);
+        Arrays.sort(ids);
+        int unique = 0;
+        for (int i = 0; i < ids.length; i++) {
+            if (unique == 0 || ids[unique - 1] != ids[i]) {
+                ids[unique++] = ids[i];
+            }
+        }
+        ids = Arrays.copyOf(ids, unique);
+
+        // count the out degree of each vertex, then place the edges into their rows
+        int[] offsets = new int[unique + 1];
+        for (int e = 0; e < numEdges; e++) {
+            offsets[Arrays.binarySearch(ids, sources[e]) + 1]++;
+        }
+        for (int v = 0; v < unique; v++) {
+            offsets[v + 1] += offsets[v];
+        }
+        int[] cursor = Arrays.copyOf(offsets, unique);
+        int[] neighbors = new int[numEdges];
+        float[] rowWeights = weights == null ? null : new float[numEdges];
+        for (int e = 0; e < numEdges; e++) {
+            int position = cursor[Arrays.binarySearch(ids, sources[e])]++;
+            neighbors[position] = Arrays.binarySearch(ids, targets[e]);
+            if (weights != null)
+                rowWeights[position] = weights[e];
+        }
+
+        if (weights == null)
+            return new CsrFriendGraph(ids, offsets, compactRows(offsets, neighbors));
+        int length = compactRows(offsets, neighbors, rowWeights);
+        return new CsrFriendGraph(ids, offsets, Arrays.copyOf(neighbors, length), Arrays.copyOf(rowWeights, length));
+    }
+
+    /**
+     * Return a copy of this graph with the dense indices laid out in the given
+     * order. The friends, edges and centrality values are the same; only the
+     * position of each vertex in the arrays changes, so the analysis kernels touch
+     * fewer cache lines when they follow the edges.
+     *
+     * @param order The vertex layout.
+     * @return CsrFriendGraph The relabeled graph.
+     */
+    public CsrFriendGraph relabel(VertexOrder order) {
+
+        int n = ids.length;
+        int[] permutation = order.permutation(this);
+        int[] rank = new int[n];
+        for (int v = 0; v < n; v++) {
+            rank[permutation[v]] = v;
+        }
+
+        int[] newIds = new int[n];
+        int[] newOffsets = new int[n + 1];
+        int[] newNeighbors = new int[neighbors.length];
+        float[] newWeights = weights == null ? null : new float[weights.length];
+        int position = 0;
+        for (int v = 0; v < n; v++) {
+            int old = permutation[v];
+            newIds[v] = ids[old];
+            newOffsets[v] = position;
+            for (int i = offsets[old]; i < offsets[old + 1]; i++) {
+                if (weights != null)
+                    newWeights[position] = weights[i];
+                newNeighbors[position++] = rank[neighbors[i]];
+            }
+            if (weights != null) {
+                sortRow(newNeighbors, newWeights, newOffsets[v], position);
+            } else {
+                Arrays.sort(newNeighbors, newOffsets[v], position);
+            }
+        }
+        newOffsets[n] = position;
+
+        CsrFriendGraph result = new CsrFriendGraph(newIds, newOffsets, newNeighbors, newWeights);
+        for (int v = 0; v < n; v++) {
+            result.nodes[v].copyCentralities(nodes[permutation[v]]);
+        }
+        return result;
+    }
+
+    /*
+     * Sorts every row of the adjacency in place and removes duplicate entries.
+     * The offsets are updated to the compacted rows and the (possibly shorter)
+     * neighbors array is returned.
+     */
+    static int[] compactRows(int[] offsets, int[] neighbors) {
+        int write = 0;
+        int rowStart = offsets[0];
+        for (int v = 0; v < offsets.length - 1; v++) {
+            int rowEnd = offsets[v + 1];
+            Arrays.sort(neighbors, rowStart, rowEnd);
+            offsets[v] = write;
+            for (int i = rowStart; i < rowEnd; i++) {
+                if (i == rowStart || neighbors[i] != neighbors[i - 1]) {
+                    neighbors[write++] = neighbors[i];
+                }
+            }
+            rowStart = rowEnd;
+        }
+        offsets[offsets.length - 1] = write;
+        return write == neighbors.length ? neighbors : Arrays.copyOf(neighbors, write);
+    }
+
+    /*
+     * Same as above with the length of every edge moved along with it. Of
+     * duplicate entries the shortest edge is kept. The arrays are compacted in
+     * place and the number of entries kept is returned.
+     */
+    static int compactRows(int[] offsets, int[] neighbors, float[] weights) {
+        int write = 0;
+        int rowStart = offsets[0];
+        for (int v = 0; v < offsets.length - 1; v++) {
+            int rowEnd = offsets[v + 1];
+            sortRow(neighbors, weights, rowStart, rowEnd);
+            offsets[v] = write;
+            for (int i = rowStart; i < rowEnd; i++) {
+                if (i == rowStart || neighbors[i] != neighbors[i - 1]) {
+                    weights[write] = weights[i];
+                    neighbors[write++] = neighbors[i];
+                }
+            }
+            rowStart = rowEnd;
+        }
+        offsets[offsets.length - 1] = write;
+        return write;
+    }
+
+    /*
+     * Sorts a row of neighbors together with the edge weights. Each pair is packed
+     * into a long with the neighbor in the high half; the bits of a positive float
+     * order like its value, so equal neighbors end up shortest edge first.
+     */
+    private static void sortRow(int[] neighbors, float[] weights, int start, int end) {
+        if (end - start < 2)
+            return;
+        long[] keys = new long[end - start];
+        for (int i = start; i < end; i++) {
+            keys[i - start] = ((long) neighbors[i] << 32) | (Float.floatToIntBits(weights[i]) & 0xFFFFFFFFL);
+        }
+        Arrays.sort(keys);
+        for (int i = start; i < end; i++) {
+            neighbors[i] = (int) (keys[i - start] >>> 32);
+            weights[i] = Float.intBitsToFloat((int) keys[i - start]);
+        }
+    }
+
+    /*
+     * Number of vertices in the graph.
+     */
+    int size() {
+        return ids.length;
+    }
+
+    int[] offsets() {
+        return offsets;
+    }
+
+    int[] neighbors() {
+        return neighbors;
+    }
+
+    /*
+     * Length of each edge, parallel to neighbors, or null when every edge has
+     * length 1.
+     */
+    float[] weights() {
+        return weights;
+    }
+
+    boolean isWeighted() {
+        return weights != null;
+    }
+
+    /*
+     * Original friend id of the given dense vertex index.
+     */
+    int idOf(int vertex) {
+        return ids[vertex];
+    }
+
+    /*
+     * True when the dense indices follow the ascending friend ids.
+     */
+    boolean hasSortedIds() {
+        return lookup == null;
+    }
+
+    /*
+     * Dense vertex index of the given friend id, or -1 if it is not in the graph.
+     */
+    int indexOf(int id) {
+        if (lookup == null) {
+            int index = Arrays.binarySearch(ids, id);
+            return index < 0 ? -1 : index;
+        }
+        int position = Arrays.binarySearch(lookup[0], id);
+        return position < 0 ? -1 : lookup[1][position];
+    }
+
+    FriendNode nodeAt(int vertex) {
+        return nodes[vertex];
+    }
+
+    boolean hasEdge(int from, int to) {
+        return Arrays.binarySearch(neighbors, offsets[from], offsets[from + 1], to) >= 0;
+    }
+
+    /*
+     * The graph with the same dense vertices and every edge reversed, so its rows
+     * are the incoming edges of each vertex. It is built once on first use.
+     */
+    CsrFriendGraph transpose() {
+        CsrFriendGraph result = transpose;
+        if (result == null) {
+            int n = ids.length;
+            int[] reverseOffsets = new int[n + 1];
+            for (int i = 0; i < neighbors.length; i++) {
+                reverseOffsets[neighbors[i] + 1]++;
+            }
+            for (int v = 0; v < n; v++) {
+                reverseOffsets[v + 1] += reverseOffsets[v];
+            }
+            // filling by ascending source keeps every reversed row sorted
+            int[] cursor = Arrays.copyOf(reverseOffsets, n);
+            int[] reverseNeighbors = new int[neighbors.length];
+            float[] reverseWeights = weights == null ? null : new float[weights.length];
+            for (int v = 0; v < n; v++) {
+                for (int i = offsets[v]; i < offsets[v + 1]; i++) {
+                    int position = cursor[neighbors[i]]++;
+                    reverseNeighbors[position] = v;
+                    if (weights != null)
+                        reverseWeights[position] = weights[i];
+                }
+            }
+            result = new CsrFriendGraph(ids, reverseOffsets, reverseNeighbors, reverseWeights, lookup);
+            result.transpose = this;
+            transpose = result;
+        }
+        return result;
+    }
+
+    /*
+     * The graph with the same dense vertices where every friendship goes both
+     * ways: each row is the union of the outgoing and incoming friends of a vertex,
+     * without the vertex itself. Edge weights are dropped. A graph that already
+     * is undirected is returned as it is. It is built once on first use.
+     */
+    CsrFriendGraph undirected() {
+        CsrFriendGraph result = undirected;
+        if (result == null) {
+            int n = ids.length;
+            CsrFriendGraph reverse = transpose();
+            // count the union of each row first, then fill it
+            int[] unionOffsets = new int[n + 1];
+            for (int v = 0; v < n; v++) {
+                unionOffsets[v + 1] = unionOffsets[v] + mergeRows(v, reverse, null, 0);
+            }
+            if (unionOffsets[n] == neighbors.length && weights == null && !hasSelfLoop()) {
+                result = this;
+            } else {
+                int[] unionNeighbors = new int[unionOffsets[n]];
+                for (int v = 0; v < n; v++) {
+                    mergeRows(v, reverse, unionNeighbors, unionOffsets[v]);
+                }
+                result = new CsrFriendGraph(ids, unionOffsets, unionNeighbors, null, lookup);
+                result.undirected = result;
+            }
+            undirected = result;
+        }
+        return result;
+    }
+
+    /*
+     * Merges the sorted out and in rows of a vertex, leaving out duplicates and the
+     * vertex itself, into target from position on. Returns the length of the
+     * union; with a null target the union is only counted.
+     */
+    private int mergeRows(int v, CsrFriendGraph reverse, int[] target, int position) {
+        int[] in = reverse.neighbors;
+        int i = offsets[v];
+        int j = reverse.offsets[v];
+        int count = 0;
+        while (i < offsets[v + 1] || j < reverse.offsets[v + 1]) {
+            int next;
+            if (j == reverse.offsets[v + 1] || (i < offsets[v + 1] && neighbors[i] < in[j])) {
+                next = neighbors[i++];
+            } else if (i == offsets[v + 1] || in[j] < neighbors[i]) {
+                next = in[j++];
+            } else {
+                next = neighbors[i++];
+                j++;
+            }
+            if (next != v) {
+                if (target != null)
+                    target[position + count] = next;
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private boolean hasSelfLoop() {
+        for (int v = 0; v < ids.length; v++) {
+            if (hasEdge(v, v))
+                return true;
+        }
+        return false;
+    }
+
+    @Override
+    public Map<Integer, FriendNode> getFriends() {
+        return friends;
+    }
+
+    @Override
+    public void addVertex(int num) {
+        throw new UnsupportedOperationException("CsrFriendGraph is immutable");
+    }
+
+    @Override
+    public void addEdge(int from, int to) {
+        throw new UnsupportedOperationException("CsrFriendGraph is immutable");
+    }
+
+    @Override
+    public void addEdge(int from, int to, float weight) {
+        throw new UnsupportedOperationException("CsrFriendGraph is immutable");
+    }
+
+    @Override
+    public void addEdgeAndUpdateCentrality(int from, int to) {
+        throw new UnsupportedOperationException("CsrFriendGraph is immutable");
+    }
+
+    @Override
+    public HashMap<Integer, HashSet<Integer>> exportGraph() {
+        HashMap<Integer, HashSet<Integer>> graph = new HashMap<Integer, HashSet<Integer>>();
+        for (int v = 0; v < ids.length; v++) {
+            HashSet<Integer> values = new HashSet<Integer>();
+            for (int i = offsets[v]; i < offsets[v + 1]; i++) {
+                values.add(ids[neighbors[i]]);
+            }
+            graph.put(ids[v], values);
+        }
+        return graph;
+    }
+
+    @Override
+    public String adjacencyString() {
+        StringBuilder s = new StringBuilder("Adjacency list");
+        s.append(" (size " + ids.length + "+" + neighbors.length + " integers):");
+
+        for (int v = 0; v < ids.length; v++) {
+            s.append("\n\t" + ids[v] + ": ");
+            for (int i = offsets[v]; i < offsets[v + 1]; i++) {
+                s.append(ids[neighbors[i]] + ", ");
+            }
+        }
+        return s.toString();
+    }
+
+    /**
+     * For a given network, return a list of subgraphs of a graph that includes only
+     * the most (N) influential based on degree centrality, as ego network views
+     * over the rows of this graph. See FriendGraphImpl.exportTopDegreeGraphs(int).
+     *
+     * @param number This is the number of top N influential subgraphs to return.
+     * @return List<FriendGraph> This is a list of graphs containing each individual
+     *         influential person's graph.
+     */
+    @Override
+    public List<FriendGraph> exportTopDegreeGraphs(int number) {
+
+        number--;
+        if (number >= ids.length || number < 0)
+            throw new IllegalArgumentException("Number must be less than num of vertices");
+
+        List<FriendGraph> graphs = new LinkedList<FriendGraph>();
+        for (FriendNode vertex : TopKSelector.select(nodes, CentralityType.DEGREE, number + 1)) {
+            graphs.add(egoNetwork(vertex.getValue(), 1));
+        }
+
+        return graphs;
+    }
+
+    /**
+     * Return a read-only view of the given friends and the friendships among them
+     * over the rows of this graph. See SubgraphView.
+     *
+     * @param friends The friend ids in the subgraph.
+     * @return FriendGraph The induced subgraph.
+     */
+    @Override
+    public FriendGraph subgraph(int[] friends) {
+        return SubgraphView.induced(this, friends);
+    }
+
+    /**
+     * Return a read-only view of the friends within the given number of
+     * friendships of a friend over the rows of this graph. See SubgraphView.
+     *
+     * @param friend The friend id at the center.
+     * @param radius Largest number of friendships from the center.
+     * @return FriendGraph The ego network.
+     */
+    @Override
+    public FriendGraph egoNetwork(int friend, int radius) {
+        return SubgraphView.egoNetwork(this, friend, radius);
+    }
+
+    /**
+     * For a given person, which of their friends aren't connected as friends? Each
+     * check is a binary search within the sorted row of a friend.
+     *
+     * @param person This is the FriendNode that investigates its friends for
+     *               recommendation(s)
+     * @return HashMap<Integer, ArrayList<Integer>> This returns a list of persons
+     *         with a list of friend recommendation(s) per person.
+     */
+    @Override
+    public HashMap<Integer, ArrayList<Integer>> suggestFriendsOfFriends(FriendNode person) {
+
+        int v = indexOf(person.getValue());
+        if (v < 0)
+            throw new IllegalArgumentException("Person is not in this graph");
+
+        HashMap<Integer, ArrayList<Integer>> listOfRecommendations = new HashMap<Integer, ArrayList<Integer>>();
+
+        for (int i = offsets[v]; i < offsets[v + 1]; i++) {
+            int outer = neighbors[i];
+            ArrayList<Integer> list = null;
+
+            for (int j = offsets[v]; j < offsets[v + 1]; j++) {
+                int inner = neighbors[j];
+                if (outer != inner && !hasEdge(outer, inner)) {
+                    if (list == null) {
+                        list = new ArrayList<Integer>();
+                        listOfRecommendations.put(ids[outer], list);
+                    }
+                    list.add(ids[inner]);
+                }
+            }
+        }
+
+        return listOfRecommendations;
+    }
+
+    /**
+     * Rank the people at distance two from a person that aren't friends yet. The
+     * shared friends are counted in reusable per thread arrays (see
+     * FriendRecommender), so a query costs the sum of the degrees of the person's
+     * friends and allocates only the returned list.
+     *
+     * @param person The person to recommend friends to.
+     * @param number Largest number of recommendations to return.
+     * @param score  How candidates are scored.
+     * @return List<Recommendation> The best candidates, best first. Equal scores
+     *         are ordered by dense index, which is ascending friend id unless the
+     *         graph was relabeled.
+     */
+    @Override
+    public List<Recommendation> recommendFriends(FriendNode person, int number, RecommendationScore score) {
+
+        int v = indexOf(person.getValue());
+        if (v < 0)
+            throw new IllegalArgumentException("Person is not in this graph");
+
+        FriendRecommender recommender = FriendRecommender.forThread();
+        int count = recommender.recommend(this, v, number, score);
+        List<Recommendation> result = new ArrayList<Recommendation>(count);
+        for (int k = 0; k < count; k++) {
+            result.add(new Recommendation(ids[recommender.resultVertex(k)], recommender.resultScore(k),
+                    recommender.resultCommonFriends(k)));
+        }
+        return result;
+    }
+
+    /**
+     * Rank the friends of friends of every person on the threads of the pool and
+     * stream each person's result to the sink. See BatchRecommender.
+     *
+     * @param number Largest number of recommendations per person.
+     * @param score  How candidates are scored.
+     * @param sink   Receives the recommendations, called from several threads.
+     * @param pool   The pool running the job.
+     */
+    @Override
+    public void recommendFriendsForAll(int number, RecommendationScore score, RecommendationSink sink,
+            ForkJoinPool pool) {
+        new BatchRecommender(this, number, score, sink).run(pool);
+    }
+
+    /**
+     * Find the number of friendships on a shortest chain from one friend to
+     * another with a bidirectional BFS. See ShortestPathSearch.
+     *
+     * @param from The friend id the chain starts at.
+     * @param to   The friend id the chain ends at.
+     * @return int The length of a shortest chain, or -1 if there is none.
+     */
+    @Override
+    public int distance(int from, int to) {
+        return ShortestPathSearch.forThread().distance(this, vertexOf(from), vertexOf(to));
+    }
+
+    /**
+     * Find up to the given number of shortest chains from one friend to another
+     * with a bidirectional BFS. See ShortestPathSearch.
+     *
+     * @param from   The friend id the chains start at.
+     * @param to     The friend id the chains end at.
+     * @param number Largest number of chains to return.
+     * @return List<List<Integer>> The chains of friend ids from first to last, empty
+     *         if there is none.
+     */
+    @Override
+    public List<List<Integer>> shortestPaths(int from, int to, int number) {
+
+        List<int[]> paths = ShortestPathSearch.forThread().paths(this, vertexOf(from), vertexOf(to), number);
+        List<List<Integer>> result = new ArrayList<List<Integer>>(paths.size());
+        for (int[] path : paths) {
+            List<Integer> chain = new ArrayList<Integer>(path.length);
+            for (int v : path) {
+                chain.add(ids[v]);
+            }
+            result.add(chain);
+        }
+        return result;
+    }
+
+    private int vertexOf(int id) {
+        int v = indexOf(id);
+        if (v < 0)
+            throw new IllegalArgumentException("Person is not in this graph");
+        return v;
+    }
+
+    @Override
+    public List<FriendNode> returnTopCentralityFor(int number, String type) {
+        return returnTopCentralityFor(number, CentralityType.fromName(type));
+    }
+
+    @Override
+    public List<FriendNode> returnTopCentralityFor(int number, CentralityType type) {
+
+        if (number > ids.length || number < 1)
+            throw new IllegalArgumentException("Number must be less than num of vertices");
+
+        return TopKSelector.select(nodes, type, number);
+    }
+
+    /**
+     * Measure the closeness centrality of every vertex with one BFS per vertex over
+     * the neighbors array. See ClosenessCentrality.
+     */
+    @Override
+    public void measureAndSetClosenessCentrality() {
+        setClosenessValues(ClosenessCentrality.measure(this));
+    }
+
+    /**
+     * Measure the closeness centrality of every vertex per connected component,
+     * with the BFS sources spread over the threads of the given executor. The
+     * values are identical to the sequential measureAndSetClosenessCentrality().
+     *
+     * @param executor The executor running the workers, for example a ForkJoinPool.
+     */
+    @Override
+    public void measureAndSetClosenessCentrality(ExecutorService executor) {
+        setClosenessValues(ClosenessCentrality.measure(this, executor));
+    }
+
+    /**
+     * Measure the closeness centrality of every vertex from the shortest path
+     * lengths by edge weight, with one Dijkstra search per vertex over the
+     * neighbors and weights arrays. See DijkstraSearch.
+     */
+    @Override
+    public void measureAndSetWeightedClosenessCentrality() {
+        setClosenessValues(DijkstraSearch.closeness(this));
+    }
+
+    /**
+     * Measure the coreness of every vertex on the undirected version of the graph.
+     * See CoreDecomposition.
+     *
+     * @param executor The executor peeling in parallel, or null for the
+     *                 sequential bucket algorithm.
+     * @return int The degeneracy, the largest coreness.
+     */
+    @Override
+    public int measureAndSetCoreness(ExecutorService executor) {
+        int[] coreness = executor == null ? CoreDecomposition.coreness(this, null)
+                : CoreDecomposition.parallelCoreness(this, executor);
+        int degeneracy = 0;
+        for (int v = 0; v < nodes.length; v++) {
+            nodes[v].setCoreness(coreness[v]);
+            degeneracy = Math.max(degeneracy, coreness[v]);
+        }
+        return degeneracy;
+    }
+
+    /**
+     * Return the friend ids in the order the bucket algorithm removes them. See
+     * CoreDecomposition.
+     *
+     * @return int[] The friend ids in a degeneracy order.
+     */
+    @Override
+    public int[] degeneracyOrder() {
+        int[] order = new int[ids.length];
+        CoreDecomposition.coreness(this, order);
+        for (int k = 0; k < order.length; k++) {
+            order[k] = ids[order[k]];
+        }
+        return order;
+    }
+
+    /**
+     * Find the connected components of the graph with a union-find over the
+     * neighbors array. See ConnectedComponents.
+     */
+    @Override
+    public ConnectedComponents findConnectedComponents() {
+        return ConnectedComponents.find(this);
+    }
+
+    /**
+     * Find groups of densely connected friends on the undirected version of the
+     * graph. See Communities.
+     *
+     * @param algorithm The community detector.
+     * @param executor  The executor running the workers, or null for the calling
+     *                  thread.
+     */
+    @Override
+    public Communities findCommunities(CommunityAlgorithm algorithm, ExecutorService executor) {
+        return algorithm.find(this, executor);
+    }
+
+    /**
+     * Count the triangles of every vertex on the undirected version of the graph.
+     * See TriangleCounts.
+     *
+     * @param executor The executor running the workers, or null for the calling
+     *                 thread.
+     */
+    @Override
+    public TriangleCounts countTriangles(ExecutorService executor) {
+        return TriangleCounts.count(this, executor);
+    }
+
+    /**
+     * Measure the betweenness centrality of every vertex with Brandes' algorithm
+     * over the neighbors array. See BrandesBetweenness.
+     */
+    @Override
+    public void measureAndSetBetweennessCentrality() {
+        setBetweennessValues(BrandesBetweenness.measure(this));
+    }
+
+    /**
+     * Measure the betweenness centrality of every vertex with the BFS sources
+     * spread over the threads of the given executor. The values are identical to
+     * the sequential measureAndSetBetweennessCentrality().
+     *
+     * @param executor The executor running the workers, for example a ForkJoinPool.
+     */
+    @Override
+    public void measureAndSetBetweennessCentrality(ExecutorService executor) {
+        setBetweennessValues(BrandesBetweenness.measure(this, executor));
+    }
+
+    /**
+     * Measure the betweenness centrality of every vertex over the shortest paths
+     * by edge weight, with Brandes' algorithm on Dijkstra searches. See
+     * DijkstraSearch.
+     */
+    @Override
+    public void measureAndSetWeightedBetweennessCentrality() {
+        setBetweennessValues(DijkstraSearch.betweenness(this));
+    }
+
+    /**
+     * Estimate the betweenness centrality of every vertex from a sample of BFS
+     * sources. See ApproximateBetweenness.
+     *
+     * @param samples Number of BFS sources to sample.
+     * @param delta   Allowed probability of exceeding the returned bound.
+     * @return double The absolute error bound of every estimate.
+     */
+    @Override
+    public double measureAndSetApproximateBetweennessCentrality(int samples, double delta) {
+        double bound = ApproximateBetweenness.errorBound(ids.length, samples, delta);
+        setBetweennessValues(ApproximateBetweenness.measure(this, samples, new Random()));
+        return bound;
+    }
+
+    /**
+     * Estimate the betweenness centrality of every vertex within epsilon of the
+     * exact value with probability at least 1 - delta.
+     *
+     * @param epsilon Allowed error as a fraction of the largest betweenness.
+     * @param delta   Allowed probability of exceeding the error.
+     * @return double The absolute error bound of every estimate.
+     */
+    @Override
+    public double measureAndSetApproximateBetweennessCentrality(double epsilon, double delta) {
+        return measureAndSetApproximateBetweennessCentrality(
+                ApproximateBetweenness.samplesFor(ids.length, epsilon, delta), delta);
+    }
+
+    /**
+     * Estimate the closeness centrality of every vertex from BFS runs of a few
+     * random pivots. See ApproximateCloseness.
+     *
+     * @param pivots Number of BFS sources to sample.
+     */
+    @Override
+    public void measureAndSetApproximateClosenessCentrality(int pivots) {
+        setClosenessValues(ApproximateCloseness.measure(this, pivots, new Random()));
+    }
+
+    /**
+     * Measure the PageRank of every vertex by power iteration over the transposed
+     * arrays, starting from the PageRank values already set. See PowerIteration.
+     *
+     * @param executor The executor running the workers, or null for the calling
+     *                 thread.
+     * @return int The number of iterations until the values converged.
+     */
+    @Override
+    public int measureAndSetPageRank(ExecutorService executor) {
+        PowerIteration iteration = new PowerIteration(this, executor);
+        setValues(CentralityType.PAGERANK, iteration.pageRank(valuesOf(CentralityType.PAGERANK)));
+        return iteration.iterations();
+    }
+
+    /**
+     * Measure the eigenvector centrality of every vertex by power iteration,
+     * starting from the values already set. See PowerIteration.
+     *
+     * @param executor The executor running the workers, or null for the calling
+     *                 thread.
+     * @return int The number of iterations until the values converged, or
+     *         PowerIteration.MAX_ITERATIONS when they did not.
+     */
+    @Override
+    public int measureAndSetEigenvectorCentrality(ExecutorService executor) {
+        PowerIteration iteration = new PowerIteration(this, executor);
+        setValues(CentralityType.EIGENVECTOR, iteration.eigenvector(valuesOf(CentralityType.EIGENVECTOR)));
+        return iteration.iterations();
+    }
+
+    /**
+     * Measure the Katz centrality of every vertex by power iteration, starting
+     * from the values already set. See PowerIteration.
+     *
+     * @param alpha    Attenuation of each step of a walk, less than 1 / (largest
+     *                 eigenvalue of the adjacency).
+     * @param executor The executor running the workers, or null for the calling
+     *                 thread.
+     * @return int The number of iterations until the values converged.
+     */
+    @Override
+    public int measureAndSetKatzCentrality(double alpha, ExecutorService executor) {
+        PowerIteration iteration = new PowerIteration(this, executor);
+        setValues(CentralityType.KATZ, iteration.katz(alpha, valuesOf(CentralityType.KATZ)));
+        return iteration.iterations();
+    }
+
+    private double[] valuesOf(CentralityType type) {
+        double[] values = new double[nodes.length];
+        for (int v = 0; v < nodes.length; v++) {
+            values[v] = type.scoreOf(nodes[v]);
+        }
+        return values;
+    }
+
+    private void setValues(CentralityType type, double[] values) {
+        for (int v = 0; v < nodes.length; v++) {
+            type.store(nodes[v], values[v]);
+        }
+    }
+
+    private void setClosenessValues(double[] closeness) {
+        for (int v = 0; v < nodes.length; v++) {
+            nodes[v].setClosenessCentrality(closeness[v]);
+        }
+    }
+
+    private void setBetweennessValues(double[] betweenness) {
+        for (int v = 0; v < nodes.length; v++) {
+            nodes[v].setBetweennessValue(betweenness[v]);
+        }
+    }
+
+    /**
+     * Assembles a CsrFriendGraph edge by edge. Edges are buffered in primitive
+     * arrays and compressed when build() is called.
+     */
+    public static class Builder {
+
+        private int[] vertices = new int[16];
+        private int numVertices;
+        private int[] sources = new int[16];
+        private int[] targets = new int[16];
+        // created on the first edge with a length other than 1
+        private float[] weights;
+        private int numEdges;
+
+        /* Adds a vertex with the given number id. */
+        public Builder addVertex(int num) {
+            if (num < 0)
+                throw new IllegalArgumentException("Number must be 0 or greater.");
+            if (numVertices == vertices.length) {
+                vertices = Arrays.copyOf(vertices, numVertices * 2);
+            }
+            vertices[numVertices++] = num;
+            return this;
+        }
+
+        /* Adds an edge from the first vertex to the second. */
+        public Builder addEdge(int from, int to) {
+            return addEdge(from, to, 1);
+        }
+
+        /* Adds an edge of the given length from the first vertex to the second; of duplicates the shortest is kept. */
+        public Builder addEdge(int from, int to, float weight) {
+            if (from < 0 || to < 0)
+                throw new IllegalArgumentException("Number must be 0 or greater.");
+            FriendNode.checkWeight(weight);
+            if (numEdges == sources.length) {
+                sources = Arrays.copyOf(sources, numEdges * 2);
+                targets = Arrays.copyOf(targets, numEdges * 2);
+                if (weights != null)
+                    weights = Arrays.copyOf(weights, numEdges * 2);
+            }
+            if (weights == null && weight != 1) {
+                weights = new float[sources.length];
+                Arrays.fill(weights, 0, numEdges, 1);
+            }
+            sources[numEdges] = from;
+            targets[numEdges] = to;
+            if (weights != null)
+                weights[numEdges] = weight;
+            numEdges++;
+            return this;
+        }
+
+        public CsrFriendGraph build() {
+            return fromEdges(vertices, numVertices, sources, targets, weights, numEdges);
+        }
+    }
+
+    /*
+     * Friend node of a dense vertex, whose edges and edge lengths are read from
+     * the arrays of the graph.
+     */
+    private class Node extends FriendNode {
+
+        private final int vertex;
+
+        Node(int vertex) {
+            super(ids[vertex], new NeighborSet(vertex));
+            this.vertex = vertex;
+        }
+
+        @Override
+        public float getWeight(FriendNode node) {
+            int other = indexOf(node.getValue());
+            int position = other < 0 || nodes[other] != node ? -1
+                    : Arrays.binarySearch(neighbors, offsets[vertex], offsets[vertex + 1], other);
+            if (position < 0)
+                throw new IllegalArgumentException("Not a friend of " + ids[vertex]);
+            return weights == null ? 1 : weights[position];
+        }
+
+        @Override
+        boolean hasWeights() {
+            return weights != null;
+        }
+    }
+
+    /*
+     * Read-only view of the friends of one vertex, backed by its row of the
+     * neighbors array.
+     */
+    private class NeighborSet extends AbstractSet<FriendNode> {
+
+        private final int vertex;
+
+        NeighborSet(int vertex) {
+            this.vertex = vertex;
+        }
+
+        @Override
+        public int size() {
+            return offsets[vertex + 1] - offsets[vertex];
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof FriendNode))
+                return false;
+            int other = indexOf(((FriendNode) o).getValue());
+            return other >= 0 && nodes[other] == o && hasEdge(vertex, other);
+        }
+
+        @Override
+        public Iterator<FriendNode> iterator() {
+            return new Iterator<FriendNode>() {
+                private int position = offsets[vertex];
+
+                @Override
+                public boolean hasNext() {
+                    return position < offsets[vertex + 1];
+                }
+
+                @Override
+                public FriendNode next() {
+                    if (!hasNext())
+                        throw new NoSuchElementException();
+                    return nodes[neighbors[position++]];
+                }
+            };
+        }
+    }
+
+    /*
+     * Read-only map from friend id to FriendNode, backed by the sorted ids array.
+     */
+    private class FriendMap extends AbstractMap<Integer, FriendNode> {
+
+        @Override
+        public int size() {
+            return ids.length;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public FriendNode get(Object key) {
+            if (!(key instanceof Integer))
+                return null;
+            int v = indexOf((Integer) key);
+            return v < 0 ? null : nodes[v];
+        }
+
+        @Override
+        public Set<Map.Entry<Integer, FriendNode>> entrySet() {
+            return new AbstractSet<Map.Entry<Integer, FriendNode>>() {
+                @Override
+                public int size() {
+                    return ids.length;
+                }
+
+                @Override
+                public Iterator<Map.Entry<Integer, FriendNode>> iterator() {
+                    return new Iterator<Map.Entry<Integer, FriendNode>>() {
+                        private int vertex = 0;
+
+                        @Override
+                        public boolean hasNext() {
+                            return vertex < ids.length;
+                        }
+
+                        @Override
+                        public Map.Entry<Integer, FriendNode> next() {
+                            if (!hasNext())
+                                throw new NoSuchElementException();
+                            FriendNode node = nodes[vertex];
+                            return new AbstractMap.SimpleImmutableEntry<Integer, FriendNode>(ids[vertex++], node);
+                        }
+                    };
+                }
+            };
+        }
+    }
+
+}
@@ -0,0 +1,177 @@
+package graph;
+
+/*
+ * Shortest paths by edge length over the arrays of a CsrFriendGraph, for the
+ * weighted closeness and betweenness.
+ *
+ * One instance holds the scratch arrays of a single thread: the distance of each
+ * vertex, the order the vertices were settled in, the shortest path counts and
+ * the dependencies, plus an IndexedMinHeap as the priority queue. A search only
+ * resets the vertices it reached, so running it from every source allocates
+ * nothing per source.
+ *
+ * Betweenness follows Brandes' algorithm with Dijkstra in place of the BFS: a
+ * vertex w is a successor of v on a shortest path when distance(v) + length(v, w)
+ * equals distance(w), which is the same sum that settled w, and the
+ * dependencies are accumulated over the successors in reverse settle order.
+ *
+ * On a graph without weights every edge has length 1 and the measures hand over
+ * to the BFS kernels, which give the same values.
+ */
+import java.util.Arrays;
+
+final class DijkstraSearch {
+
+    private final int[] offsets;
+    private final int[] neighbors;
+    private final float[] weights;
+
+    private final double[] distance;
+    private final int[] order;
+    private final double[] shortestPathCount;
+    private final double[] dependency;
+    private final IndexedMinHeap queue;
+    private int settled;
+    private double distanceSum;
+
+    DijkstraSearch(CsrFriendGraph graph) {
+        this.offsets = graph.offsets();
+        this.neighbors = graph.neighbors();
+        this.weights = graph.weights();
+        int n = graph.size();
+        this.distance = new double[n];
+        this.order = new int[n];
+        this.shortestPathCount = new double[n];
+        this.dependency = new double[n];
+        this.queue = new IndexedMinHeap(n);
+        Arrays.fill(distance, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Find the shortest path lengths from the source to every vertex it reaches.
+     *
+     * @param source Dense index of the source vertex.
+     * @return int The number of vertices reached, the source included.
+     */
+    int run(int source) {
+
+        // only reset what the previous source touched
+        for (int k = 0; k < settled; k++) {
+            int curr = order[k];
+            distance[curr] = Double.POSITIVE_INFINITY;
+            shortestPathCount[curr] = 0;
+            dependency[curr] = 0;
+        }
+        settled = 0;
+        distanceSum = 0;
+
+        distance[source] = 0;
+        shortestPathCount[source] = 1;
+        queue.push(source, 0);
+        while (!queue.isEmpty()) {
+            int curr = queue.pop();
+            order[settled++] = curr;
+            distanceSum += distance[curr];
+            for (int i = offsets[curr]; i < offsets[curr + 1]; i++) {
+                int neighbor = neighbors[i];
+                double length = distance[curr] + length(i);
+                if (length < distance[neighbor]) {
+                    distance[neighbor] = length;
+                    shortestPathCount[neighbor] = shortestPathCount[curr];
+                    queue.push(neighbor, length);
+                } else if (length == distance[neighbor]) {
+                    shortestPathCount[neighbor] += shortestPathCount[curr];
+                }
+            }
+        }
+        return settled;
+    }
+
+    /* Sum of the shortest path lengths from the source of the last run. */
+    double distanceSum() {
+        return distanceSum;
+    }
+
+    /* Shortest path length from the source of the last run, infinite if not reached. */
+    double distance(int vertex) {
+        return distance[vertex];
+    }
+
+    /**
+     * Run a search from the source and add its dependency on every other vertex to
+     * betweenness.
+     *
+     * @param source      Dense index of the source vertex.
+     * @param betweenness Accumulated betweenness values per dense index.
+     */
+    void accumulate(int source, double[] betweenness) {
+
+        run(source);
+        for (int k = settled - 1; k >= 0; k--) {
+            int curr = order[k];
+            double sum = 0;
+            for (int i = offsets[curr]; i < offsets[curr + 1]; i++) {
+                int successor = neighbors[i];
+                if (distance[successor] == distance[curr] + length(i)) {
+                    sum += (1 + dependency[successor]) / shortestPathCount[successor];
+                }
+            }
+            dependency[curr] = shortestPathCount[curr] * sum;
+            if (curr != source) {
+                betweenness[curr] += dependency[curr];
+            }
+        }
+    }
+
+    private double length(int edge) {
+        return weights == null ? 1 : weights[edge];
+    }
+
+    /**
+     * Measure the betweenness of every vertex over the weighted shortest paths.
+     *
+     * @param graph The graph to measure.
+     * @return double[] The betweenness value per dense index.
+     */
+    static double[] betweenness(CsrFriendGraph graph) {
+
+        if (!graph.isWeighted())
+            return BrandesBetweenness.measure(graph);
+
+        int n = graph.size();
+        int[] offsets = graph.offsets();
+        double[] betweenness = new double[n];
+        DijkstraSearch search = new DijkstraSearch(graph);
+        for (int source = 0; source < n; source++) {
+            if (offsets[source] != offsets[source + 1])
+                search.accumulate(source, betweenness);
+        }
+        return betweenness;
+    }
+
+    /**
+     * Measure the closeness of every vertex from the weighted shortest path
+     * lengths, normalized as in ClosenessCentrality.
+     *
+     * @param graph The graph to measure.
+     * @return double[] The closeness value per dense index.
+     */
+    static double[] closeness(CsrFriendGraph graph) {
+
+        if (!graph.isWeighted())
+            return ClosenessCentrality.measure(graph);
+
+        int n = graph.size();
+        int[] offsets = graph.offsets();
+        double[] closeness = new double[n];
+        DijkstraSearch search = new DijkstraSearch(graph);
+        for (int source = 0; source < n; source++) {
+            if (offsets[source] != offsets[source + 1]) {
+                int reached = search.run(source);
+                closeness[source] = ClosenessCentrality.closeness(reached, search.distanceSum(), n);
+            }
+        }
+        return closeness;
+    }
+
+}
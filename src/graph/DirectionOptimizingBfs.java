@@ -0,0 +1,176 @@
+package graph;
+
+/*
+ * Direction-optimizing breadth first search, following "Direction-Optimizing
+ * Breadth-First Search" by Beamer, Asanovic and Patterson.
+ *
+ * Social graphs have a small diameter, so after two or three levels the frontier
+ * holds a large part of the graph and a top-down step checks mostly edges to
+ * vertices that are already visited. A bottom-up step turns this around: every
+ * unvisited vertex scans its incoming edges (the rows of the transpose) and stops
+ * at the first one that comes from the frontier, which is kept as a bitmap. As
+ * most unvisited vertices find a parent within a few edges, far fewer edges are
+ * inspected.
+ *
+ * The search starts top-down and switches to bottom-up once the edges out of the
+ * frontier exceed the incoming edges of the unvisited vertices divided by ALPHA;
+ * it switches back when the frontier shrinks below n / BETA vertices. The
+ * distances are the same as those of a plain BFS.
+ *
+ * The visited and frontier bitmaps are cleared word by word through the vertices
+ * that were set, so a search that stays in a small component costs only its
+ * reach, like the epoch stamps of BfsEngine.
+ *
+ * It is the kernel of the single source searches: the sampled closeness pivots,
+ * the sources measured again by an incremental edge insertion and the landmarks
+ * of the DistanceOracle. Full closeness sweeps use MultiSourceBfs, and the
+ * betweenness measures keep the top-down BfsEngine, because Brandes needs the
+ * number of shortest paths through every parent while a bottom-up step stops at
+ * the first one.
+ */
+final class DirectionOptimizingBfs implements BreadthFirstSearch {
+
+    // tuning values suggested by Beamer et al.
+    static final int ALPHA = 15;
+    static final int BETA = 18;
+
+    private final int n;
+    private final int[] offsets;
+    private final int[] neighbors;
+    private final int[] reverseOffsets;
+    private final int[] reverseNeighbors;
+
+    private final int[] distance;
+    private final int[] queue;
+    private final long[] visited;
+    private final long[] frontier;
+
+    private int reached;
+    private long distanceSum;
+    private long edgesInspected;
+
+    DirectionOptimizingBfs(CsrFriendGraph graph) {
+        CsrFriendGraph transpose = graph.transpose();
+        this.n = graph.size();
+        this.offsets = graph.offsets();
+        this.neighbors = graph.neighbors();
+        this.reverseOffsets = transpose.offsets();
+        this.reverseNeighbors = transpose.neighbors();
+        this.distance = new int[n];
+        this.queue = new int[n];
+        this.visited = new long[(n + 63) >>> 6];
+        this.frontier = new long[(n + 63) >>> 6];
+    }
+
+    @Override
+    public int run(int source) {
+
+        // only clear the marks of the vertices the last search reached
+        for (int k = 0; k < reached; k++) {
+            visited[queue[k] >>> 6] = 0;
+        }
+        visited[source >>> 6] |= 1L << source;
+        distance[source] = 0;
+        queue[0] = source;
+        int levelStart = 0;
+        int tail = 1;
+        long sum = 0;
+        long inspected = 0;
+
+        // edges out of the frontier, and edges into vertices not visited yet
+        long frontierEdges = offsets[source + 1] - offsets[source];
+        long unvisitedEdges = neighbors.length - (reverseOffsets[source + 1] - reverseOffsets[source]);
+        boolean bottomUp = false;
+
+        for (int nextDistance = 1; levelStart < tail; nextDistance++) {
+            int levelEnd = tail;
+            if (!bottomUp && frontierEdges > unvisitedEdges / ALPHA) {
+                bottomUp = true;
+            } else if (bottomUp && levelEnd - levelStart < n / BETA) {
+                bottomUp = false;
+            }
+
+            if (bottomUp) {
+                for (int k = levelStart; k < levelEnd; k++) {
+                    frontier[queue[k] >>> 6] |= 1L << queue[k];
+                }
+                for (int word = 0; word < visited.length; word++) {
+                    long unvisited = ~visited[word];
+                    while (unvisited != 0) {
+                        int v = (word << 6) + Long.numberOfTrailingZeros(unvisited);
+                        unvisited &= unvisited - 1;
+                        if (v >= n)
+                            break;
+                        // look for any parent in the frontier
+                        for (int i = reverseOffsets[v]; i < reverseOffsets[v + 1]; i++) {
+                            inspected++;
+                            int parent = reverseNeighbors[i];
+                            if ((frontier[parent >>> 6] & (1L << parent)) != 0) {
+                                visited[word] |= 1L << v;
+                                distance[v] = nextDistance;
+                                queue[tail++] = v;
+                                break;
+                            }
+                        }
+                    }
+                }
+                for (int k = levelStart; k < levelEnd; k++) {
+                    frontier[queue[k] >>> 6] = 0;
+                }
+            } else {
+                for (int k = levelStart; k < levelEnd; k++) {
+                    int curr = queue[k];
+                    inspected += offsets[curr + 1] - offsets[curr];
+                    for (int i = offsets[curr]; i < offsets[curr + 1]; i++) {
+                        int neighbor = neighbors[i];
+                        if ((visited[neighbor >>> 6] & (1L << neighbor)) == 0) {
+                            visited[neighbor >>> 6] |= 1L << neighbor;
+                            distance[neighbor] = nextDistance;
+                            queue[tail++] = neighbor;
+                        }
+                    }
+                }
+            }
+
+            frontierEdges = 0;
+            for (int k = levelEnd; k < tail; k++) {
+                int v = queue[k];
+                frontierEdges += offsets[v + 1] - offsets[v];
+                unvisitedEdges -= reverseOffsets[v + 1] - reverseOffsets[v];
+            }
+            sum += (long) nextDistance * (tail - levelEnd);
+            levelStart = levelEnd;
+        }
+
+        this.reached = tail;
+        this.distanceSum = sum;
+        this.edgesInspected = inspected;
+        return tail;
+    }
+
+    @Override
+    public int reached() {
+        return reached;
+    }
+
+    @Override
+    public long distanceSum() {
+        return distanceSum;
+    }
+
+    @Override
+    public int distance(int vertex) {
+        return (visited[vertex >>> 6] & (1L << vertex)) != 0 ? distance[vertex] : -1;
+    }
+
+    @Override
+    public int reachedAt(int k) {
+        return queue[k];
+    }
+
+    @Override
+    public long edgesInspected() {
+        return edgesInspected;
+    }
+
+}
@@ -0,0 +1,298 @@
+package graph;
+
+/*
+ * A precomputed landmark distance oracle for degrees of separation badges that
+ * must be answered faster than even a bidirectional BFS.
+ *
+ * k landmarks are chosen among the friends with the highest degree, which lie
+ * on many shortest chains. A BFS from each landmark over the edges and one over
+ * the reversed edges store the distance from and to the landmark for every
+ * friend in a byte, so graphs with distances above MAX_DISTANCE are rejected;
+ * social graphs stay far below it. The distances of one friend to all landmarks
+ * are stored next to each other, so a query reads two runs of k bytes.
+ *
+ * By the triangle inequality, for every landmark L
+ *
+ *   d(u, v) <= d(u, L) + d(L, v)
+ *   d(u, v) >= d(L, v) - d(L, u)   and   d(u, v) >= d(u, L) - d(v, L)
+ *
+ * so lowerBound() and upperBound() answer in O(k) and both are exact when u or v
+ * is a landmark. The oracle needs 2 * n bytes per landmark and can be written to
+ * and read from a file.
+ */
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+public final class DistanceOracle {
+
+    static final int MAGIC = 0x4F444746; // "FGDO" in little endian
+    static final int VERSION = 1;
+
+    // largest distance that fits, 255 marks an unreachable friend
+    static final int MAX_DISTANCE = 254;
+    private static final int UNREACHABLE = 255;
+    private static final int HEADER_SIZE = 16;
+
+    // friend id of each dense index, ascending
+    private final int[] ids;
+    private final int[] landmarks;
+    // distances from and to each landmark, vertex major: [v * k + landmark]
+    private final byte[] fromLandmark;
+    private final byte[] toLandmark;
+
+    private DistanceOracle(int[] ids, int[] landmarks, byte[] fromLandmark, byte[] toLandmark) {
+        this.ids = ids;
+        this.landmarks = landmarks;
+        this.fromLandmark = fromLandmark;
+        this.toLandmark = toLandmark;
+    }
+
+    /**
+     * Build an oracle over the given number of highest degree friends.
+     *
+     * @param graph     The graph to build the oracle for.
+     * @param landmarks Number of landmarks, at most the number of friends.
+     * @return DistanceOracle The oracle.
+     * @throws IllegalArgumentException If a distance from or to a landmark is
+     *                                  above MAX_DISTANCE.
+     */
+    public static DistanceOracle build(FriendGraph graph, int landmarks) {
+
+        // the queries look friends up by binary search in the ids of the dense indices
+        CsrFriendGraph csr = graph instanceof CsrFriendGraph && ((CsrFriendGraph) graph).hasSortedIds()
+                ? (CsrFriendGraph) graph
+                : CsrFriendGraph.from(graph);
+        int n = csr.size();
+        if (landmarks < 1 || landmarks > n)
+            throw new IllegalArgumentException("Landmarks must be between 1 and the number of vertices");
+        if ((long) n * landmarks > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Too many landmarks for the graph size");
+
+        // the highest degrees, ties broken by dense index
+        int[] offsets = csr.offsets();
+        double[] degrees = new double[n];
+        for (int v = 0; v < n; v++) {
+            degrees[v] = offsets[v + 1] - offsets[v];
+        }
+        int[] chosen = Arrays.copyOf(TopKSelector.selectTopLevels(degrees, landmarks), landmarks);
+
+        int[] ids = new int[n];
+        for (int v = 0; v < n; v++) {
+            ids[v] = csr.idOf(v);
+        }
+        byte[] fromLandmark = new byte[n * landmarks];
+        byte[] toLandmark = new byte[n * landmarks];
+        Arrays.fill(fromLandmark, (byte) UNREACHABLE);
+        Arrays.fill(toLandmark, (byte) UNREACHABLE);
+        BreadthFirstSearch forward = TraversalKernel.DIRECTION_OPTIMIZING.newSearch(csr);
+        BreadthFirstSearch backward = TraversalKernel.DIRECTION_OPTIMIZING.newSearch(csr.transpose());
+        int[] landmarkIds = new int[landmarks];
+        for (int l = 0; l < landmarks; l++) {
+            landmarkIds[l] = ids[chosen[l]];
+            store(forward, chosen[l], fromLandmark, l, landmarks);
+            store(backward, chosen[l], toLandmark, l, landmarks);
+        }
+        return new DistanceOracle(ids, landmarkIds, fromLandmark, toLandmark);
+    }
+
+    private static void store(BreadthFirstSearch bfs, int landmark, byte[] distances, int l, int k) {
+        int reached = bfs.run(landmark);
+        for (int i = 0; i < reached; i++) {
+            int v = bfs.reachedAt(i);
+            int distance = bfs.distance(v);
+            if (distance > MAX_DISTANCE)
+                throw new IllegalArgumentException("Distances above " + MAX_DISTANCE + " are not supported");
+            distances[v * k + l] = (byte) distance;
+        }
+    }
+
+    /**
+     * Return a distance that the shortest chain from one friend to another is at
+     * least as long as.
+     *
+     * @param from The friend id the chain starts at.
+     * @param to   The friend id the chain ends at.
+     * @return int The lower bound, or Integer.MAX_VALUE when the landmarks show
+     *         that there is no chain.
+     */
+    public int lowerBound(int from, int to) {
+
+        int k = landmarks.length;
+        int u = vertexOf(from) * k;
+        int v = vertexOf(to) * k;
+        if (u == v)
+            return 0;
+
+        int bound = 1;
+        for (int l = 0; l < k; l++) {
+            int fromU = fromLandmark[u + l] & 0xFF;
+            int fromV = fromLandmark[v + l] & 0xFF;
+            int uTo = toLandmark[u + l] & 0xFF;
+            int vTo = toLandmark[v + l] & 0xFF;
+            // the landmark reaches u but not v, so u cannot reach v either
+            if (fromU != UNREACHABLE && fromV == UNREACHABLE)
+                return Integer.MAX_VALUE;
+            if (fromU != UNREACHABLE)
+                bound = Math.max(bound, fromV - fromU);
+            if (uTo != UNREACHABLE && vTo != UNREACHABLE)
+                bound = Math.max(bound, uTo - vTo);
+        }
+        return bound;
+    }
+
+    /**
+     * Return a distance that the shortest chain from one friend to another is at
+     * most as long as, the length of the shortest chain through a landmark.
+     *
+     * @param from The friend id the chain starts at.
+     * @param to   The friend id the chain ends at.
+     * @return int The upper bound, or -1 if no landmark joins the two friends.
+     */
+    public int upperBound(int from, int to) {
+
+        int k = landmarks.length;
+        int u = vertexOf(from) * k;
+        int v = vertexOf(to) * k;
+        if (u == v)
+            return 0;
+
+        int bound = Integer.MAX_VALUE;
+        for (int l = 0; l < k; l++) {
+            int uTo = toLandmark[u + l] & 0xFF;
+            int fromV = fromLandmark[v + l] & 0xFF;
+            if (uTo != UNREACHABLE && fromV != UNREACHABLE)
+                bound = Math.min(bound, uTo + fromV);
+        }
+        return bound == Integer.MAX_VALUE ? -1 : bound;
+    }
+
+    private int vertexOf(int id) {
+        int v = Arrays.binarySearch(ids, id);
+        if (v < 0)
+            throw new IllegalArgumentException("Person is not in this graph");
+        return v;
+    }
+
+    /**
+     * Return the friend ids of the landmarks, highest degree first.
+     *
+     * @return int[] The landmarks.
+     */
+    public int[] landmarks() {
+        return landmarks.clone();
+    }
+
+    /**
+     * Return the memory taken by the distances of one landmark, one byte from and
+     * one byte to the landmark per friend.
+     *
+     * @return long The bytes per landmark.
+     */
+    public long bytesPerLandmark() {
+        return 2L * ids.length;
+    }
+
+    /**
+     * Return the memory taken by the oracle's arrays.
+     *
+     * @return long The total bytes of the distances, friend ids and landmarks.
+     */
+    public long sizeInBytes() {
+        return bytesPerLandmark() * landmarks.length + 4L * ids.length + 4L * landmarks.length;
+    }
+
+    @Override
+    public String toString() {
+        return "DistanceOracle (" + landmarks.length + " landmarks, " + ids.length + " friends, "
+                + bytesPerLandmark() + " bytes per landmark, " + sizeInBytes() + " bytes)";
+    }
+
+    /**
+     * Write the oracle to a file. Layout, little endian: int magic ("FGDO"), int
+     * version, int friends, int landmarks, the friend ids, the landmark ids, then
+     * the distances from and the distances to the landmarks.
+     *
+     * @param path The file, replaced if it exists.
+     * @throws IOException If the file cannot be written.
+     */
+    public void write(Path path) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putInt(ids.length).putInt(landmarks.length);
+            header.flip();
+            writeFully(channel, header);
+            writeFully(channel, ints(ids));
+            writeFully(channel, ints(landmarks));
+            writeFully(channel, ByteBuffer.wrap(fromLandmark));
+            writeFully(channel, ByteBuffer.wrap(toLandmark));
+        }
+    }
+
+    /**
+     * Read an oracle written by write().
+     *
+     * @param path The file.
+     * @return DistanceOracle The oracle.
+     * @throws IOException If the file cannot be read or is not a valid oracle.
+     */
+    public static DistanceOracle read(Path path) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, header);
+            if (header.getInt() != MAGIC)
+                throw new IOException("Not a distance oracle: " + path);
+            int version = header.getInt();
+            if (version > VERSION)
+                throw new IOException("Unsupported oracle version " + version + ": " + path);
+            int n = header.getInt();
+            int k = header.getInt();
+            if (n < 0 || k < 1 || (long) n * k > Integer.MAX_VALUE)
+                throw new IOException("Corrupt oracle header: " + path);
+            if (channel.size() != HEADER_SIZE + 4L * (n + k) + 2L * n * k)
+                throw new IOException("Truncated oracle: " + path);
+
+            ByteBuffer buffer = ByteBuffer.allocate(4 * n).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, buffer);
+            int[] ids = new int[n];
+            buffer.asIntBuffer().get(ids);
+            buffer = ByteBuffer.allocate(4 * k).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, buffer);
+            int[] landmarks = new int[k];
+            buffer.asIntBuffer().get(landmarks);
+            byte[] fromLandmark = new byte[n * k];
+            byte[] toLandmark = new byte[n * k];
+            readFully(channel, ByteBuffer.wrap(fromLandmark));
+            readFully(channel, ByteBuffer.wrap(toLandmark));
+            return new DistanceOracle(ids, landmarks, fromLandmark, toLandmark);
+        }
+    }
+
+    private static ByteBuffer ints(int[] values) {
+        ByteBuffer buffer = ByteBuffer.allocate(4 * values.length).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asIntBuffer().put(values);
+        return buffer;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0)
+                throw new IOException("Unexpected end of file");
+        }
+        buffer.flip();
+    }
+
+}
@@ -0,0 +1,316 @@
+package graph;
+
+/*
+ * Loads a SNAP style edge list file into a CsrFriendGraph.
+ *
+ * Every line holds two friend ids separated by spaces, tabs or a comma; any
+ * further fields on the line (weights, timestamps) are ignored. Lines starting
+ * with '#' or '%' are comments. Each line is an edge from the first id to the
+ * second; when the list is undirected the reverse edge is added as well.
+ *
+ * The file is memory mapped with FileChannel.map and the integers are parsed
+ * straight from the mapped bytes, so no String is created per line. The file is
+ * split into chunks at line boundaries that are parsed in parallel, twice: the
+ * first pass counts the edges and the largest id of each chunk, the second pass
+ * writes the edges into int arrays at the offset of each chunk. The adjacency is
+ * then filled with a counting sort over a dense id table instead of a
+ * HashMap<Integer, FriendNode> lookup per edge.
+ */
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public final class EdgeListLoader {
+
+    // largest chunk mapped at once, a MappedByteBuffer is limited to 2 GB
+    private static final long MAX_CHUNK_SIZE = 1L << 30;
+    // files smaller than this are parsed as a single chunk
+    private static final long MIN_PARALLEL_SIZE = 1L << 22;
+
+    private EdgeListLoader() {
+    }
+
+    /**
+     * Load an edge list file with one parsing thread per processor.
+     *
+     * @param path       The edge list file.
+     * @param undirected True to add every edge in both directions.
+     * @return CsrFriendGraph The loaded graph.
+     * @throws IOException If the file cannot be read or a line is malformed.
+     */
+    public static CsrFriendGraph load(Path path, boolean undirected) throws IOException {
+        return load(path, undirected, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Load an edge list file.
+     *
+     * @param path       The edge list file.
+     * @param undirected True to add every edge in both directions.
+     * @param threads    Number of threads parsing chunks of the file.
+     * @return CsrFriendGraph The loaded graph.
+     * @throws IOException If the file cannot be read or a line is malformed.
+     */
+    public static CsrFriendGraph load(Path path, boolean undirected, int threads) throws IOException {
+
+        if (threads < 1)
+            throw new IllegalArgumentException("Threads must be 1 or greater");
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            List<Chunk> chunks = split(channel, threads);
+
+            ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, chunks.size()));
+            try {
+                // first pass: count the edges and find the largest id of each chunk
+                run(executor, chunks, undirected, null, null);
+                int numEdges = 0;
+                int maxId = -1;
+                for (Chunk chunk : chunks) {
+                    chunk.firstEdge = numEdges;
+                    if ((long) numEdges + chunk.numEdges > Integer.MAX_VALUE)
+                        throw new IOException("Too many edges in " + path);
+                    numEdges += chunk.numEdges;
+                    maxId = Math.max(maxId, chunk.maxId);
+                }
+
+                // second pass: write the edges of each chunk at its own offset
+                int[] sources = new int[numEdges];
+                int[] targets = new int[numEdges];
+                run(executor, chunks, undirected, sources, targets);
+                return build(sources, targets, maxId);
+            } finally {
+                executor.shutdown();
+            }
+        }
+    }
+
+    /*
+     * Splits the file into chunks that each end right after a line break, and maps
+     * each chunk into memory.
+     */
+    private static List<Chunk> split(FileChannel channel, int threads) throws IOException {
+
+        long size = channel.size();
+        int numChunks = size < MIN_PARALLEL_SIZE ? 1 : threads;
+        numChunks = (int) Math.max(numChunks, (size + MAX_CHUNK_SIZE - 1) / MAX_CHUNK_SIZE);
+
+        List<Chunk> chunks = new ArrayList<Chunk>();
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+        long start = 0;
+        for (int i = 1; i <= numChunks && start < size; i++) {
+            long end = i == numChunks ? size : Math.max(start, size / numChunks * i);
+            // move the end forward past the next line break
+            while (end < size) {
+                probe.clear();
+                int read = channel.read(probe, end);
+                if (read <= 0) {
+                    end = size;
+                    break;
+                }
+                int newline = -1;
+                for (int j = 0; j < read; j++) {
+                    if (probe.get(j) == '\n') {
+                        newline = j;
+                        break;
+                    }
+                }
+                if (newline >= 0) {
+                    end += newline + 1;
+                    break;
+                }
+                end += read;
+            }
+            if (end - start > Integer.MAX_VALUE)
+                throw new IOException("Line too long at byte " + start);
+            if (end > start) {
+                chunks.add(new Chunk(channel.map(FileChannel.MapMode.READ_ONLY, start, end - start), start));
+            }
+            start = end;
+        }
+        return chunks;
+    }
+
+    private static void run(ExecutorService executor, List<Chunk> chunks, final boolean undirected,
+            final int[] sources, final int[] targets) throws IOException {
+
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (final Chunk chunk : chunks) {
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() throws IOException {
+                    chunk.parse(undirected, sources, targets);
+                    return null;
+                }
+            });
+        }
+        try {
+            Workers.invokeAll(executor, tasks);
+        } catch (IllegalStateException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw e;
+        }
+    }
+
+    /*
+     * Builds the CSR arrays from the parsed edges. The ids are dense enough in
+     * SNAP files to index a table of size maxId + 1; for very sparse ids the
+     * sort based CsrFriendGraph.fromEdges() is used instead.
+     */
+    private static CsrFriendGraph build(int[] sources, int[] targets, int maxId) {
+
+        int numEdges = sources.length;
+        if ((long) maxId + 1 > 4L * numEdges + 1024)
+            return CsrFriendGraph.fromEdges(new int[0], 0, sources, targets, numEdges);
+
+        // dense index of every id that appears, in ascending id order
+        int[] denseIndex = new int[maxId + 1];
+        for (int e = 0; e < numEdges; e++) {
+            denseIndex[sources[e]] = 1;
+            denseIndex[targets[e]] = 1;
+        }
+        int n = 0;
+        for (int id = 0; id <= maxId; id++) {
+            if (denseIndex[id] != 0) {
+                denseIndex[id] = n++;
+            } else {
+                denseIndex[id] = -1;
+            }
+        }
+        int[] ids = new int[n];
+        for (int id = 0; id <= maxId; id++) {
+            if (denseIndex[id] >= 0)
+                ids[denseIndex[id]] = id;
+        }
+
+        // count degrees, then fill the rows
+        int[] offsets = new int[n + 1];
+        for (int e = 0; e < numEdges; e++) {
+            offsets[denseIndex[sources[e]] + 1]++;
+        }
+        for (int v = 0; v < n; v++) {
+            offsets[v + 1] += offsets[v];
+        }
+        int[] cursor = new int[n];
+        System.arraycopy(offsets, 0, cursor, 0, n);
+        int[] neighbors = new int[numEdges];
+        for (int e = 0; e < numEdges; e++) {
+            neighbors[cursor[denseIndex[sources[e]]]++] = denseIndex[targets[e]];
+        }
+
+        return new CsrFriendGraph(ids, offsets, CsrFriendGraph.compactRows(offsets, neighbors));
+    }
+
+    /*
+     * A memory mapped part of the file that starts at the beginning of a line.
+     */
+    private static class Chunk {
+
+        private final MappedByteBuffer buffer;
+        private final long position;
+
+        private int numEdges;
+        private int maxId = -1;
+        private int firstEdge;
+
+        Chunk(MappedByteBuffer buffer, long position) {
+            this.buffer = buffer;
+            this.position = position;
+        }
+
+        /*
+         * Parses every line of the chunk. Without arrays the edges are only counted,
+         * otherwise they are written from firstEdge on.
+         */
+        void parse(boolean undirected, int[] sources, int[] targets) throws IOException {
+
+            int limit = buffer.limit();
+            int pos = 0;
+            int edge = firstEdge;
+            int count = 0;
+            int max = -1;
+
+            while (pos < limit) {
+                byte b = buffer.get(pos);
+                if (b == '#' || b == '%') {
+                    pos = skipLine(pos, limit);
+                    continue;
+                }
+                if (isSeparator(b) || b == '\n' || b == '\r') {
+                    pos++;
+                    continue;
+                }
+
+                long from = 0;
+                int start = pos;
+                while (pos < limit && isDigit(buffer.get(pos))) {
+                    from = from * 10 + (buffer.get(pos++) - '0');
+                    if (from > Integer.MAX_VALUE)
+                        throw malformed(start);
+                }
+                if (pos == start)
+                    throw malformed(start);
+                while (pos < limit && isSeparator(buffer.get(pos))) {
+                    pos++;
+                }
+                long to = 0;
+                int second = pos;
+                while (pos < limit && isDigit(buffer.get(pos))) {
+                    to = to * 10 + (buffer.get(pos++) - '0');
+                    if (to > Integer.MAX_VALUE)
+                        throw malformed(start);
+                }
+                if (pos == second)
+                    throw malformed(start);
+                pos = skipLine(pos, limit);
+
+                max = Math.max(max, (int) Math.max(from, to));
+                if (sources != null) {
+                    sources[edge] = (int) from;
+                    targets[edge++] = (int) to;
+                    if (undirected) {
+                        sources[edge] = (int) to;
+                        targets[edge++] = (int) from;
+                    }
+                } else {
+                    count += undirected ? 2 : 1;
+                    if (count < 0)
+                        throw new IOException("Too many edges in chunk at byte " + position);
+                }
+            }
+
+            if (sources == null) {
+                this.numEdges = count;
+                this.maxId = max;
+            }
+        }
+
+        private int skipLine(int pos, int limit) {
+            while (pos < limit && buffer.get(pos) != '\n') {
+                pos++;
+            }
+            return pos + 1;
+        }
+
+        private IOException malformed(int pos) {
+            return new IOException("Malformed edge at byte " + (position + pos));
+        }
+
+        private static boolean isDigit(byte b) {
+            return b >= '0' && b <= '9';
+        }
+
+        private static boolean isSeparator(byte b) {
+            return b == ' ' || b == '\t' || b == ',';
+        }
+    }
+
+}
@@ -5,6 +5,8 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
 
 public interface FriendGraph {
 
@@ -16,6 +18,13 @@ public interface FriendGraph {
     /* Creates an edge from the first vertex to the second. */
     public void addEdge(int from, int to);
 
+    /*
+     * Creates an edge of the given length (a positive number) from the first vertex
+     * to the second. An edge added again keeps the shortest of its lengths, where
+     * addEdge(from, to) counts as length 1.
+     */
+    public void addEdge(int from, int to, float weight);
+
     /*
      * Return the graph's connections in a readable format. The keys in this HashMap
      * are the vertices in the graph. The values are the nodes that are reachable
@@ -27,16 +36,96 @@ public interface FriendGraph {
     /* find friends of friends not linked for friend recommendation */
     public HashMap<Integer, ArrayList<Integer>> suggestFriendsOfFriends(FriendNode person);
 
+    /* rank the friends of friends of a person that aren't friends yet, best first */
+    public List<Recommendation> recommendFriends(FriendNode person, int number, RecommendationScore score);
+
+    /* rank friends of friends for every person in parallel, streaming each result to the sink */
+    public void recommendFriendsForAll(int number, RecommendationScore score, RecommendationSink sink, ForkJoinPool pool);
+
+    /* number of friendships on a shortest chain from one friend to another, -1 if there is none */
+    public int distance(int from, int to);
+
+    /* up to number shortest chains of friend ids from one friend to another */
+    public List<List<Integer>> shortestPaths(int from, int to, int number);
+
+    /*
+     * Creates an edge from the first vertex to the second and updates the measured
+     * closeness and betweenness for the BFS sources affected by the new edge.
+     */
+    public void addEdgeAndUpdateCentrality(int from, int to);
+
     /* Generate string representation of adjacency list */
     public String adjacencyString();
 
-    /* export Top number of network by capacity */
+    /* export Top number of network by capacity, as read-only ego network views */
     public List<FriendGraph> exportTopDegreeGraphs(int number);
 
+    /* read-only view of the given friends and the friendships among them, nothing is copied */
+    public FriendGraph subgraph(int[] friends);
+
+    /* read-only view of the friends within radius friendships of a friend, nothing is copied */
+    public FriendGraph egoNetwork(int friend, int radius);
+
     public void measureAndSetClosenessCentrality();
 
+    /* measure closeness per connected component with the sources spread over the executor's threads */
+    public void measureAndSetClosenessCentrality(ExecutorService executor);
+
+    /* measure closeness from the weighted shortest path lengths (Dijkstra from every vertex) */
+    public void measureAndSetWeightedClosenessCentrality();
+
+    /* measure the k-core number of every friend, in parallel when executor is not null; returns the degeneracy */
+    public int measureAndSetCoreness(ExecutorService executor);
+
+    /* friend ids in a degeneracy order: each has at most degeneracy friends after it */
+    public int[] degeneracyOrder();
+
+    /* find the connected components, ignoring the direction of the edges */
+    public ConnectedComponents findConnectedComponents();
+
+    /* find groups of densely connected friends, ignoring the direction of the edges; executor may be null */
+    public Communities findCommunities(CommunityAlgorithm algorithm, ExecutorService executor);
+
+    /* count the triangles of every friend, ignoring the direction of the edges; executor may be null */
+    public TriangleCounts countTriangles(ExecutorService executor);
+
+    /* estimate closeness from the BFS searches of a number of randomly chosen pivots */
+    public void measureAndSetApproximateClosenessCentrality(int pivots);
+
     public void measureAndSetBetweennessCentrality();
 
+    /* measure PageRank by power iteration, starting from the current values; returns the iterations run */
+    public int measureAndSetPageRank(ExecutorService executor);
+
+    /*
+     * measure eigenvector centrality by power iteration, starting from the current
+     * values; returns the iterations run, 0 for a graph without cycles (every value
+     * is 0), and 1000 when the values did not converge and hold the direction
+     * reached after 1000 iterations
+     */
+    public int measureAndSetEigenvectorCentrality(ExecutorService executor);
+
+    /* measure Katz centrality with the given attenuation by power iteration, starting from the current values */
+    public int measureAndSetKatzCentrality(double alpha, ExecutorService executor);
+
+    /* measure betweenness with the BFS sources spread over the executor's threads */
+    public void measureAndSetBetweennessCentrality(ExecutorService executor);
+
+    /* measure betweenness over the weighted shortest paths (Brandes with Dijkstra) */
+    public void measureAndSetWeightedBetweennessCentrality();
+
+    /*
+     * estimate betweenness from a number of sampled BFS sources, returns the error
+     * bound that holds for every node with probability 1 - delta
+     */
+    public double measureAndSetApproximateBetweennessCentrality(int samples, double delta);
+
+    /* estimate betweenness within epsilon (relative to the largest possible value) with probability 1 - delta */
+    public double measureAndSetApproximateBetweennessCentrality(double epsilon, double delta);
+
     public List<FriendNode> returnTopCentralityFor(int number, String string);
 
+    /* friend nodes holding the top number of distinct values of the centrality type */
+    public List<FriendNode> returnTopCentralityFor(int number, CentralityType type);
+
 }
@@ -9,13 +9,15 @@ package graph;
  * 
  * addVertex(int num)
  * addEdge(int from, int to)
+ * addEdge(int from, int to, float weight)
  * 
- * The graph built is undirected and un-weighted. 
+ * The graph built is undirected. Edges are un-weighted unless a length is given;
+ * the weighted measures treat an unweighted edge as length 1. 
  * 
  * It provides further methods to investigate the built graph.  The following methods are:
  * 
  * suggestFriendsOfFriends(FriendNode person) - For a given person, which of their friends aren't connected 
- * as friends? Those that aren't connected we will suggest them as potential friends. 
+ * as friends? Those that aren't connected we will suggest them as potential friends. 
  * 
  * The next set of methods will help to determine the persons with the most influence within a social network based
  * on centrality values of degree, closeness, and betweenness. For degree this is simply based on the number of 
@@ -28,27 +30,32 @@ package graph;
  * measureAndSetClosenessCentrality()
  * measureAndSetBetweennessCentrality()
  * 
+ * On large networks, where closeness and betweenness are too slow, PageRank,
+ * eigenvector and Katz centrality rank influence by how influential a person's
+ * friends are, at a cost of one pass over the connections per iteration:
+ * 
+ * measureAndSetPageRank(ExecutorService executor)
+ * measureAndSetEigenvectorCentrality(ExecutorService executor)
+ * measureAndSetKatzCentrality(double alpha, ExecutorService executor)
+ * 
  * For degree, this is simply tracked by the size of the friend node's edges\neighbors\friends. 
  * 
  * Another method to extract a list of TOP N friends in the graph based on centrality type is:
- * returnTopCentralityFor(int number, String type)
+ * returnTopCentralityFor(int number, CentralityType type)
  * 
  * See main() method for examples on building a graph and using the noted methods above accordingly.  
  * 
  */
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
-import java.util.Queue;
+import java.util.Random;
 import java.util.Set;
-import java.util.Stack;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
 
 public class FriendGraphImpl implements FriendGraph {
 
@@ -56,11 +63,15 @@ public class FriendGraphImpl implements FriendGraph {
 
     public void setFriends(Map<Integer, FriendNode> friends) {
         this.friends = friends;
+        this.queryGraph = null;
     }
 
     private int numVertices;
     private int numEdges;
 
+    // compressed copy answering shortest path and recommendation queries, dropped on every change
+    private CsrFriendGraph queryGraph;
+
     public FriendGraphImpl() {
         this.friends = new HashMap<Integer, FriendNode>();
         this.numEdges = 0;
@@ -81,6 +92,7 @@ public class FriendGraphImpl implements FriendGraph {
             FriendNode node = new FriendNode(num);
             friends.put(num, node);
             numVertices++;
+            queryGraph = null;
         }
     }
 
@@ -95,9 +107,108 @@ public class FriendGraphImpl implements FriendGraph {
 
         FriendNode formNode = friends.get(from);
         FriendNode toNode = friends.get(to);
-        formNode.addEdge(toNode);
+        // a repeated edge without a length is length 1, so it keeps the shorter one
+        if (!formNode.addEdge(toNode) && formNode.getWeight(toNode) > 1)
+            formNode.setWeight(toNode, 1);
 
         numEdges++;
+        queryGraph = null;
+    }
+
+    /**
+     * Add a friendship with a length, for example the inverse of how often the two
+     * persons interact, so that close friends are a short distance apart. Only the
+     * weighted measures use the length. Adding the same edge again keeps the
+     * shorter of the two lengths.
+     * 
+     * @param from   This is the person the edge starts at.
+     * @param to     This is the person the edge ends at.
+     * @param weight This is the length of the edge, a positive number.
+     */
+    @Override
+    public void addEdge(int from, int to, float weight) {
+        FriendNode.checkWeight(weight);
+        FriendNode formNode = friends.get(from);
+        FriendNode toNode = friends.get(to);
+        float previous = Float.POSITIVE_INFINITY;
+        if (formNode != null && toNode != null && formNode.getEdges().contains(toNode))
+            previous = formNode.getWeight(toNode);
+        this.addEdge(from, to);
+        friends.get(from).setWeight(friends.get(to), Math.min(previous, weight));
+    }
+
+    /**
+     * How many friendships separate two persons? The search runs from both persons
+     * at once, each step growing the side with the smaller frontier, until the two
+     * sides meet, so only the neighborhoods of the two persons are explored.
+     * 
+     * The search runs over a compressed copy of the network that is kept until the
+     * next addVertex() or addEdge(); edges added to the friend nodes directly are
+     * not seen by it.
+     * 
+     * @param from This is the person the chain starts at.
+     * @param to   This is the person the chain ends at.
+     * @return int The number of friendships on a shortest chain, or -1 if there is
+     *         none.
+     */
+    @Override
+    public int distance(int from, int to) {
+        return queryGraph().distance(from, to);
+    }
+
+    /**
+     * How are two persons connected? Return up to the given number of shortest
+     * chains of friends from one person to the other, found with the same search
+     * as distance().
+     * 
+     * @param from   This is the person the chains start at.
+     * @param to     This is the person the chains end at.
+     * @param number This is the largest number of chains to return.
+     * @return List<List<Integer>> The chains of friend ids from first to last,
+     *         empty if the persons are not connected.
+     */
+    @Override
+    public List<List<Integer>> shortestPaths(int from, int to, int number) {
+        return queryGraph().shortestPaths(from, to, number);
+    }
+
+    private CsrFriendGraph queryGraph() {
+        if (queryGraph == null)
+            queryGraph = CsrFriendGraph.from(this);
+        return queryGraph;
+    }
+
+    /**
+     * Add an edge and keep the closeness and betweenness centrality already stored
+     * in the friend nodes up to date without measuring the whole graph again.
+     * Call measureAndSetClosenessCentrality() and
+     * measureAndSetBetweennessCentrality() once before the first insertion.
+     * 
+     * Only the BFS sources whose shortest paths the edge changes are measured
+     * again, following the incremental Brandes approach; see
+     * IncrementalCentrality.
+     * 
+     * @param from The friend id the edge starts at.
+     * @param to   The friend id the edge ends at.
+     */
+    @Override
+    public void addEdgeAndUpdateCentrality(int from, int to) {
+
+        FriendNode fromNode = friends.get(from);
+        FriendNode toNode = friends.get(to);
+        if (fromNode != null && toNode != null && fromNode.getEdges().contains(toNode)) {
+            this.addEdge(from, to);
+            return;
+        }
+
+        CsrFriendGraph before = CsrFriendGraph.from(this);
+        double[] closeness = valuesOf(before, CentralityType.CLOSENESS);
+        double[] betweenness = valuesOf(before, CentralityType.BETWEENNESS);
+        this.addEdge(from, to);
+        CsrFriendGraph after = CsrFriendGraph.from(this);
+        double[][] values = IncrementalCentrality.update(before, closeness, betweenness, after);
+        setValues(after, CentralityType.CLOSENESS, values[0]);
+        setValues(after, CentralityType.BETWEENNESS, values[1]);
     }
 
     @Override
@@ -135,6 +246,11 @@ public class FriendGraphImpl implements FriendGraph {
      * noted as degree centrality. If N=1, this will return the Top only most
      * influential person(s).
      * 
+     * Each graph is the ego network of an influential person: a read-only view of
+     * the person, their friends and the friendships among them, read from this
+     * graph's friend nodes as it is used, so an export copies nothing. See
+     * egoNetwork(int, int).
+     * 
      * @param number This is the number of top N influential subgraphs to return.
      * @return List<FriendGraph> This is a list of graphs containing each individual
      *         influential person's graph.
@@ -147,30 +263,44 @@ public class FriendGraphImpl implements FriendGraph {
             throw new IllegalArgumentException("Number must be less than num of vertices");
 
         List<FriendGraph> graphs = new LinkedList<FriendGraph>();
-        HashMap<Double, ArrayList<FriendNode>> data = new HashMap<Double, ArrayList<FriendNode>>();
+        FriendNode[] vertices = this.friends.values().toArray(new FriendNode[0]);
 
-        ArrayList<Double> sortedValues = sortFriendsBy(data, "degree");
-
-        int count = 0;
-        for (Double item : sortedValues) {
-
-            if (count > number)
-                break;
-            ArrayList<FriendNode> vertices = data.get(item);
-            for (FriendNode vertex : vertices) {
-                FriendGraph graph = new FriendGraphImpl();
-                Set<FriendNode> nodes = vertex.getEdges();
-                for (FriendNode to : nodes) {
-                    graph.addEdge(vertex.getValue(), to.getValue());
-                }
-                graphs.add(graph);
-            }
-            count++;
+        for (FriendNode vertex : TopKSelector.select(vertices, CentralityType.DEGREE, number + 1)) {
+            graphs.add(egoNetwork(vertex.getValue(), 1));
         }
 
         return graphs;
     }
 
+    /**
+     * Return a read-only view of the given friends and the friendships among them.
+     * The view reads the edges of this graph's friend nodes, so friendships added
+     * later among its friends show up in it; the values measured on the view are
+     * kept in the view. See SubgraphView.
+     * 
+     * @param friends The friend ids in the subgraph.
+     * @return FriendGraph The induced subgraph.
+     */
+    @Override
+    public FriendGraph subgraph(int[] friends) {
+        return SubgraphView.induced(this, friends);
+    }
+
+    /**
+     * Return a read-only view of the friends within the given number of
+     * friendships of a person, and the friendships among them. The friends are
+     * found on first use, so creating the view costs nothing. See SubgraphView.
+     * 
+     * @param friend The friend id of the person at the center.
+     * @param radius Largest number of friendships from the person, 1 for the
+     *               person and their friends.
+     * @return FriendGraph The ego network.
+     */
+    @Override
+    public FriendGraph egoNetwork(int friend, int radius) {
+        return SubgraphView.egoNetwork(this, friend, radius);
+    }
+
     /**
      * For a given person, which of their friends aren't connected as friends? Those
      * that aren't connected we will suggest them as potential friends.
@@ -209,6 +339,42 @@ public class FriendGraphImpl implements FriendGraph {
         return listOfRecommendations;
     }
 
+    /**
+     * For a given person, rank the people at distance two (friends of friends that
+     * aren't friends yet) and return the best N. Unlike suggestFriendsOfFriends()
+     * this recommends to the person itself, scored by shared friends (see
+     * RecommendationScore).
+     * 
+     * The candidates are counted over a compressed copy of the graph, made by the
+     * first query after a change and reused by the following ones.
+     * 
+     * @param person This is the FriendNode to recommend friends to.
+     * @param number This is the largest number of recommendations to return.
+     * @param score  This is how candidates are scored.
+     * @return List<Recommendation> The best candidates, best first.
+     */
+    @Override
+    public List<Recommendation> recommendFriends(FriendNode person, int number, RecommendationScore score) {
+        return queryGraph().recommendFriends(person, number, score);
+    }
+
+    /**
+     * Rank the friends of friends of every person in the network, for example for
+     * a nightly job. The persons are processed in parallel ranges on the pool with
+     * reusable scratch arrays per worker thread, and each person's recommendations
+     * are streamed to the sink instead of collected in a map.
+     * 
+     * @param number This is the largest number of recommendations per person.
+     * @param score  This is how candidates are scored.
+     * @param sink   Receives the recommendations, called from several threads.
+     * @param pool   The pool running the job.
+     */
+    @Override
+    public void recommendFriendsForAll(int number, RecommendationScore score, RecommendationSink sink,
+            ForkJoinPool pool) {
+        queryGraph().recommendFriendsForAll(number, score, sink, pool);
+    }
+
     /**
      * For a given network, return a list of friend nodes that includes only the
      * most (N) influential based on centrality type. If N=1, this will return the
@@ -222,29 +388,31 @@ public class FriendGraphImpl implements FriendGraph {
      */
     @Override
     public List<FriendNode> returnTopCentralityFor(int number, String type) {
+        return returnTopCentralityFor(number, CentralityType.fromName(type));
+    }
 
-        number--; // start at 0
-        if (number >= this.numVertices || number < 0)
-            throw new IllegalArgumentException("Number must be less than num of vertices");
-
-        ArrayList<FriendNode> friendsResult = new ArrayList<FriendNode>();
-        HashMap<Double, ArrayList<FriendNode>> data = new HashMap<Double, ArrayList<FriendNode>>();
-
-        ArrayList<Double> sortedValues = sortFriendsBy(data, type);
-
-        int count = 0;
-        for (Double item : sortedValues) {
+    /**
+     * For a given network, return a list of friend nodes that includes only the
+     * most (N) influential based on centrality type. Friend nodes that share a
+     * centrality value are all returned, in the order of getFriends().
+     * 
+     * The N largest distinct values are kept in a bounded heap of primitive doubles
+     * (see TopKSelector), so only the friend nodes at or above the N-th value are
+     * sorted instead of the whole network.
+     * 
+     * @param number This is the number of top N influential nodes to return.
+     * @param type   This is the centrality type to rank by.
+     * @return List<FriendGraph> This is a list of friend nodes containing each
+     *         individual influential TOP N persons.
+     */
+    @Override
+    public List<FriendNode> returnTopCentralityFor(int number, CentralityType type) {
 
-            if (count > number)
-                break;
-            ArrayList<FriendNode> vertices = data.get(item);
-            for (FriendNode vertex : vertices) {
-                friendsResult.add(vertex);
-            }
-            count++;
-        }
+        if (number > this.numVertices || number < 1)
+            throw new IllegalArgumentException("Number must be less than num of vertices");
 
-        return friendsResult;
+        FriendNode[] vertices = this.friends.values().toArray(new FriendNode[0]);
+        return TopKSelector.select(vertices, type, number);
     }
 
     /**
@@ -254,104 +422,183 @@ public class FriendGraphImpl implements FriendGraph {
      * here as a length.
      * 
      * Measure for each friend node how far it is from the rest of the friend nodes.
-     * This is done by calling a helper method measureAllShortestPathLength() which
-     * retrieves all shortest path lengths. Their may be multiple shortest paths
-     * between two nodes which are not unique, but we only note the length of the
-     * shortest path which is always unique.
+     * This is done with a BFS from every friend node that retrieves all shortest
+     * path lengths. Their may be multiple shortest paths between two nodes which
+     * are not unique, but we only note the length of the shortest path which is
+     * always unique.
+     * 
+     * The BFS runs over a compressed copy of the graph, 64 friend nodes at a time
+     * (see MultiSourceBfs): each friend node's connections are read once per BFS
+     * level for the whole batch, with one bit per start node marking which
+     * searches reached a node. The arrays are allocated once for the whole sweep,
+     * so nothing is allocated per source.
      * 
      * Setting the closeness centrality value is performed as a reverse division to
      * provide a smaller average and higher centrality for closeness calculation
-     * (amount of paths/sum of all lengths).
+     * (amount of paths/sum of all lengths). The value is scaled by the share of the
+     * network a friend node reaches (Wasserman-Faust), so that in a network of
+     * separate groups a node of a small group does not rank above a node of a
+     * large one. For a connected network nothing changes.
      */
     @Override
     public void measureAndSetClosenessCentrality() {
+        CsrFriendGraph csr = analysisGraph();
+        setClosenessValues(csr, ClosenessCentrality.measure(csr));
+    }
 
-        // for each FriendNode, store the length of the shortest path to it from the
-        // startnode
-        HashMap<FriendNode, Integer> shortestPathLength = new HashMap<FriendNode, Integer>();
-
-        // initialize the HashMap
-        for (FriendNode n : this.friends.values()) {
-            shortestPathLength.put(n, -1);
-        }
+    /**
+     * Measure the closeness centrality as measureAndSetClosenessCentrality() does,
+     * with the work spread over the threads of the given executor. The network is
+     * split into its connected components first; the BFS searches of each
+     * component stay within it, and friend nodes without any friends are skipped.
+     * 
+     * @param executor The executor running the workers, for example a ForkJoinPool.
+     */
+    @Override
+    public void measureAndSetClosenessCentrality(ExecutorService executor) {
+        CsrFriendGraph csr = analysisGraph();
+        setClosenessValues(csr, ClosenessCentrality.measure(csr, executor));
+    }
 
-        for (FriendNode friend : this.friends.values()) {
+    /**
+     * Measure the closeness centrality as measureAndSetClosenessCentrality() does,
+     * but with the length of a path being the sum of its edge weights. Dijkstra's
+     * algorithm runs from every friend node over a compressed copy of the graph,
+     * with the weights in a float[] next to the connections and a primitive
+     * indexed heap as the queue (see DijkstraSearch). Without any weighted edge
+     * the values are the same as measureAndSetClosenessCentrality().
+     */
+    @Override
+    public void measureAndSetWeightedClosenessCentrality() {
+        CsrFriendGraph csr = analysisGraph();
+        setClosenessValues(csr, DijkstraSearch.closeness(csr));
+    }
 
-            shortestPathLength.put(friend, 0);
-            measureAllShortestPathLength(friend, shortestPathLength);
-            double allLength = 0;
-            for (int value : shortestPathLength.values()) {
-                if (value != -1) {
-                    allLength += value;
-                }
-            }
+    /**
+     * Measure the coreness of every friend node: the largest k such that the friend
+     * node stays in the network when friend nodes with fewer than k friends are
+     * removed again and again. Unlike degree, a hub with many friends that don't
+     * know each other gets a low coreness, while the members of a tightly knit
+     * group get a high one, which makes coreness a steadier influence signal.
+     * The direction of the friendships is ignored.
+     * 
+     * Without an executor the linear time bucket algorithm of Batagelj and
+     * Zaversnik runs over a compressed copy of the graph; with one, the friend
+     * nodes are peeled level by level with each level spread over its threads.
+     * See CoreDecomposition.
+     * 
+     * @param executor The executor peeling in parallel, or null for the
+     *                 sequential bucket algorithm.
+     * @return int The degeneracy of the network, the largest coreness.
+     */
+    @Override
+    public int measureAndSetCoreness(ExecutorService executor) {
+        CsrFriendGraph csr = CsrFriendGraph.from(this);
+        int degeneracy = csr.measureAndSetCoreness(executor);
+        for (int v = 0; v < csr.size(); v++) {
+            friends.get(csr.idOf(v)).setCoreness(csr.nodeAt(v).getCoreness());
+        }
+        return degeneracy;
+    }
 
-            // reverse division to provide a smaller average and higher centrality
-            // minus one from the size to not include the 0 value friendNode
-            double closenessValue = (shortestPathLength.size() - 1.0) / allLength;
-            friend.setClosenessCentrality(closenessValue);
+    /**
+     * Return the friend nodes in the order the bucket algorithm of
+     * measureAndSetCoreness() removes them, lowest coreness first. Every friend
+     * node has at most degeneracy friends later in this order, so listing the
+     * friends of each friend node that come after it bounds the work of triangle
+     * and clique searches.
+     * 
+     * @return int[] The friend ids in a degeneracy order.
+     */
+    @Override
+    public int[] degeneracyOrder() {
+        return CsrFriendGraph.from(this).degeneracyOrder();
+    }
 
-            // closenessVerboseOutput(shortestPathLength, friend, allLength,
-            // closenessValue);
-            // System.out.print("friend ID = "+ friend.getValue() + ", closeness = ");
-            // System.out.println(friend.getClosenessCentrality() + ", degree centrality = "
-            // + friend.getDegreeOfCentrality());
-        }
+    /**
+     * Find the groups of friend nodes that are connected to each other by
+     * friendships in either direction.
+     * 
+     * @return ConnectedComponents The connected components of the network.
+     */
+    @Override
+    public ConnectedComponents findConnectedComponents() {
+        return ConnectedComponents.find(CsrFriendGraph.from(this));
+    }
 
+    /**
+     * Find the communities of the network: groups of friend nodes with many
+     * friendships among each other and few to the rest. The direction of the
+     * friendships is ignored.
+     * 
+     * LABEL_PROPAGATION lets every friend node repeatedly join the community most
+     * common among its friends, with the friend nodes spread over the threads of
+     * the executor; it takes a few passes over the friendships. LOUVAIN moves
+     * friend nodes between communities as long as the modularity rises and then
+     * merges each community into a single node and starts over, which finds
+     * better communities at a higher cost. See Communities.
+     * 
+     * Betweenness is highest for the friend nodes that bridge these communities.
+     * 
+     * @param algorithm The community detector.
+     * @param executor  The executor running the workers, or null for the calling
+     *                  thread.
+     * @return Communities The community of every friend, the size of every
+     *         community and the modularity.
+     */
+    @Override
+    public Communities findCommunities(CommunityAlgorithm algorithm, ExecutorService executor) {
+        return algorithm.find(CsrFriendGraph.from(this), executor);
     }
 
-    @SuppressWarnings("rawtypes")
-    private void closenessVerboseOutput(HashMap<FriendNode, Integer> shortestPathLength, FriendNode friend,
-            double allLength, double value) {
-        System.out.println("\nThe friend ID " + friend.getValue() + " being sent into measureAllShortestPathLength");
-        System.out.println(
-                "shortestPathLength.size = " + (shortestPathLength.size() - 1.0) + ", allLength = " + allLength);
-        System.out.println("allLength/(shortestPathLength.size() = " + value);
-        Iterator<Entry<FriendNode, Integer>> it = shortestPathLength.entrySet().iterator();
-        while (it.hasNext()) {
-            Map.Entry pair = it.next();
-            FriendNode key = (FriendNode) pair.getKey();
-            System.out.println(key.getValue() + " = " + pair.getValue());
-        }
+    /**
+     * Count for every friend node how many pairs of its friends are friends of
+     * each other, ignoring the direction of the friendships. This is the check
+     * suggestFriendsOfFriends() makes for one person, done for the whole network
+     * at once: each friendship points from the friend node with fewer friends to
+     * the one with more, and the triangles are found by intersecting these short
+     * sorted lists, with the friend nodes spread over the threads of the executor.
+     * See TriangleCounts.
+     * 
+     * @param executor The executor running the workers, or null for the calling
+     *                 thread.
+     * @return TriangleCounts The triangles and local clustering coefficient of
+     *         every friend, and the transitivity of the network.
+     */
+    @Override
+    public TriangleCounts countTriangles(ExecutorService executor) {
+        return CsrFriendGraph.from(this).countTriangles(executor);
     }
 
     /**
-     * For a given friend node, find all shortest path lengths to each node in the
-     * network. This performs a BFS search.
+     * Estimate the closeness centrality of every friend node from only a few BFS
+     * searches, following "Fast Approximation of Centrality" by Eppstein and Wang.
+     * A number of pivots are chosen at random and the distances found by their
+     * searches are scaled up to estimate each node's sum of all lengths, which is
+     * then used in the same reverse division as measureAndSetClosenessCentrality().
+     * This costs pivots/vertices of the exact measure.
      * 
-     * @param friendStartNode    The friend node to start BFS search for all
-     *                           shortest paths to each node in network.
-     * @param shortestPathLength Stores the paths found and its lengths for each
-     *                           friend node.
+     * @param pivots Number of BFS sources to sample. With pivots equal to or greater
+     *               than the number of vertices the exact values are measured.
      */
-    private void measureAllShortestPathLength(FriendNode friendStartNode,
-            HashMap<FriendNode, Integer> shortestPathLength) {
-
-        HashSet<FriendNode> visited = new HashSet<FriendNode>();
-        Queue<FriendNode> toExplore = new LinkedList<FriendNode>();
-        // System.out.println("Start node = " + friendStartNode.getValue());
-        // add start node to the queue and begin BFS type search
-        toExplore.add(friendStartNode);
-        while (!toExplore.isEmpty()) {
-            // while the queue isn't empty remove the first node
-            FriendNode curr = toExplore.remove();
-            int currDistance = shortestPathLength.get(curr);
-
-            // otherwise look at all its unvisited neighbors and add to the
-            // visited set and enqueue
-            for (FriendNode nieghbor : curr.getEdges()) {
-                if (visited.contains(nieghbor)) {
-                    continue;
-                }
+    @Override
+    public void measureAndSetApproximateClosenessCentrality(int pivots) {
+        CsrFriendGraph csr = CsrFriendGraph.from(this);
+        setClosenessValues(csr, ApproximateCloseness.measure(csr, pivots, new Random()));
+    }
 
-                toExplore.add(nieghbor);
-                visited.add(nieghbor);
-                // System.out.println("putting = " + nieghbor.getValue());
-                shortestPathLength.put(nieghbor, currDistance + 1);
-            }
-            visited.add(curr);
+    /*
+     * Compressed copy for the BFS from every friend node, laid out in BFS order so
+     * that friends sit next to each other in memory.
+     */
+    private CsrFriendGraph analysisGraph() {
+        return CsrFriendGraph.from(this).relabel(VertexOrder.BFS);
+    }
+
+    private void setClosenessValues(CsrFriendGraph csr, double[] closeness) {
+        for (int v = 0; v < csr.size(); v++) {
+            friends.get(csr.idOf(v)).setClosenessCentrality(closeness[v]);
         }
-        // System.out.println();
     }
 
     /**
@@ -367,8 +614,9 @@ public class FriendGraphImpl implements FriendGraph {
      * a dependency accumulation technique which accesses the nodes in reverse order
      * of the BFS traversal.
      * 
-     * This method handles a unweighted graph and performs a basic BFS traversal as
-     * such.
+     * The BFS runs over a compressed copy of the graph (see CsrFriendGraph and
+     * BrandesBetweenness) with primitive arrays instead of hash lookups, and the
+     * values are then stored back into each friend node.
      * 
      * Followed the pseudocode from the following document
      * http://algo.uni-konstanz.de/publications/b-fabc-01.pdf, "A Faster Algorithm
@@ -377,133 +625,163 @@ public class FriendGraphImpl implements FriendGraph {
      */
     @Override
     public void measureAndSetBetweennessCentrality() {
+        CsrFriendGraph csr = analysisGraph();
+        setBetweennessValues(csr, BrandesBetweenness.measure(csr));
+    }
 
-        for (FriendNode friendStartNode : this.friends.values()) {
-
-            Stack<FriendNode> stack = new Stack<FriendNode>();
-
-            HashMap<FriendNode, LinkedList<FriendNode>> predecessors = new HashMap<FriendNode, LinkedList<FriendNode>>();
-            HashMap<FriendNode, Integer> shortestPathCount = new HashMap<FriendNode, Integer>();
-            HashMap<FriendNode, Integer> shortestPathDistance = new HashMap<FriendNode, Integer>();
-
-            for (FriendNode friend : this.friends.values()) {
-                shortestPathCount.put(friend, 0);
-                shortestPathDistance.put(friend, -1);
-
-                LinkedList<FriendNode> list = new LinkedList<FriendNode>();
-                predecessors.put(friend, list);
-            }
-
-            shortestPathCount.put(friendStartNode, 1);
-            shortestPathDistance.put(friendStartNode, 0);
-
-            Queue<FriendNode> queue = new LinkedList<FriendNode>();
-            queue.add(friendStartNode);
-
-            // perform a bfs type search
-            while (!queue.isEmpty()) {
-                FriendNode currFriendNode = queue.remove();
-                stack.push(currFriendNode);
-
-                for (FriendNode neighbor : currFriendNode.getEdges()) {
+    /**
+     * Same as measureAndSetBetweennessCentrality() but the BFS sources are split
+     * into blocks that the threads of the given executor process in parallel.
+     * Every worker has its own scratch arrays and partial sums, which are merged in
+     * block order so the values are identical to the sequential run.
+     * 
+     * @param executor The executor running the workers, for example a ForkJoinPool.
+     */
+    @Override
+    public void measureAndSetBetweennessCentrality(ExecutorService executor) {
+        CsrFriendGraph csr = analysisGraph();
+        setBetweennessValues(csr, BrandesBetweenness.measure(csr, executor));
+    }
 
-                    if (shortestPathDistance.get(neighbor) < 0) {
-                        queue.add(neighbor);
-                        shortestPathDistance.put(neighbor, shortestPathDistance.get(currFriendNode) + 1);
-                    }
+    /**
+     * Measure the betweenness centrality as measureAndSetBetweennessCentrality()
+     * does, but over the shortest paths by the sum of their edge weights. Brandes'
+     * dependency accumulation runs in reverse order of Dijkstra's search instead of
+     * the BFS; a friend node follows another on a shortest path when the distance
+     * of the first plus the edge weight equals the distance of the second.
+     */
+    @Override
+    public void measureAndSetWeightedBetweennessCentrality() {
+        CsrFriendGraph csr = analysisGraph();
+        setBetweennessValues(csr, DijkstraSearch.betweenness(csr));
+    }
 
-                    if (shortestPathDistance.get(neighbor) == (shortestPathDistance.get(currFriendNode) + 1)) {
-                        shortestPathCount.put(neighbor,
-                                shortestPathCount.get(neighbor) + shortestPathCount.get(currFriendNode));
-                        LinkedList<FriendNode> list = predecessors.get(neighbor);
-                        list.add(currFriendNode);
-                        predecessors.put(neighbor, list);
-                    }
-                }
-            }
+    /**
+     * Estimate the betweenness centrality from a random sample of BFS sources
+     * instead of all of them. The dependencies of each sampled source are scaled
+     * by (number of vertices / samples), so the estimates are unbiased and cost a
+     * fraction samples/vertices of the exact measure. This is good enough to find
+     * the TOP N influential persons on networks where the exact measure is too
+     * slow.
+     * 
+     * @param samples Number of BFS sources to sample. With samples equal to or
+     *                greater than the number of vertices the exact values are
+     *                measured.
+     * @param delta   Allowed probability that any estimate is off by more than the
+     *                returned bound.
+     * @return double The absolute error bound that holds for every friend node with
+     *         probability at least 1 - delta.
+     */
+    @Override
+    public double measureAndSetApproximateBetweennessCentrality(int samples, double delta) {
+        CsrFriendGraph csr = CsrFriendGraph.from(this);
+        double bound = ApproximateBetweenness.errorBound(csr.size(), samples, delta);
+        setBetweennessValues(csr, ApproximateBetweenness.measure(csr, samples, new Random()));
+        return bound;
+    }
 
-            HashMap<FriendNode, Integer> dependency = new HashMap<FriendNode, Integer>();
-            for (FriendNode friend : this.friends.values()) {
-                dependency.put(friend, 0);
-            }
+    /**
+     * Estimate the betweenness centrality with enough sampled BFS sources that
+     * every estimate is within epsilon of the exact value with probability at
+     * least 1 - delta. Epsilon is a fraction of the largest possible betweenness
+     * value (n - 1)(n - 2).
+     * 
+     * @param epsilon Allowed error as a fraction of the largest betweenness.
+     * @param delta   Allowed probability of exceeding the error.
+     * @return double The absolute error bound that holds for every friend node with
+     *         probability at least 1 - delta.
+     */
+    @Override
+    public double measureAndSetApproximateBetweennessCentrality(double epsilon, double delta) {
+        return measureAndSetApproximateBetweennessCentrality(
+                ApproximateBetweenness.samplesFor(this.friends.size(), epsilon, delta), delta);
+    }
 
-            while (!stack.isEmpty()) {
-                FriendNode currFriendNode = stack.pop();
-                for (FriendNode friendNode : predecessors.get(currFriendNode)) {
-                    dependency.put(friendNode, dependency.get(friendNode) + (shortestPathCount.get(friendNode)
-                            / shortestPathCount.get(currFriendNode) * (1 + dependency.get(currFriendNode))));
-                    if (currFriendNode != friendStartNode) {
-                        currFriendNode.setBetweennessValue(
-                                currFriendNode.getBetweennessValue() + dependency.get(currFriendNode));
-                    }
-                }
-            }
+    /**
+     * Measure the PageRank of every friend node: the share of time a random walk
+     * over the friendships spends at the friend, where every step follows a random
+     * friendship with probability 0.85 and otherwise jumps to a random friend
+     * node. A person followed by influential persons ranks high.
+     * 
+     * The values are found by power iteration over a compressed copy of the graph:
+     * every iteration pulls the values of each friend node's incoming friendships
+     * into a new double[] vector, with the friend nodes split into blocks that the
+     * threads of the executor work on (see PowerIteration). The iteration starts
+     * from the PageRank values already set, so measuring again after a few
+     * changes takes only a few iterations.
+     * 
+     * @param executor The executor running the workers, or null for the calling
+     *                 thread.
+     * @return int The number of iterations until the values converged.
+     */
+    @Override
+    public int measureAndSetPageRank(ExecutorService executor) {
+        CsrFriendGraph csr = analysisGraph();
+        PowerIteration iteration = new PowerIteration(csr, executor);
+        setValues(csr, CentralityType.PAGERANK, iteration.pageRank(valuesOf(csr, CentralityType.PAGERANK)));
+        return iteration.iterations();
+    }
 
-        } // end main for loop
+    /**
+     * Measure the eigenvector centrality of every friend node: a friend node is as
+     * central as the sum of the centrality of the friend nodes pointing at it. The
+     * values are the principal eigenvector of the adjacency scaled to unit length,
+     * found by power iteration as in measureAndSetPageRank(). Without a cycle of
+     * friendships every value is 0; see PowerIteration.
+     * 
+     * @param executor The executor running the workers, or null for the calling
+     *                 thread.
+     * @return int The number of iterations until the values converged, or
+     *         PowerIteration.MAX_ITERATIONS when they did not.
+     */
+    @Override
+    public int measureAndSetEigenvectorCentrality(ExecutorService executor) {
+        CsrFriendGraph csr = analysisGraph();
+        PowerIteration iteration = new PowerIteration(csr, executor);
+        setValues(csr, CentralityType.EIGENVECTOR,
+                iteration.eigenvector(valuesOf(csr, CentralityType.EIGENVECTOR)));
+        return iteration.iterations();
     }
 
     /**
-     * For a given network, take all of its vertices (friends) and retrieve the type
-     * value for each vertex and store the type's value as a key within a hashmap
-     * variable called data. The value for the hashmap will contain the vertex ID
-     * (value) within a list. The hashmap data is used to create another list of key
-     * type values and sorts them in descending order. This sorted list is return to
-     * the calling method. The calling method will also have a reference to the data
-     * variable which is populated to be used further within the calling method.
-     * 
-     * @param data A Hashmap that contains type values of the vertices and a list of
-     *             vertices ID (values) for each type value.
-     * @return ArrayList<Double> This is a list of vertex size values sorted by
-     *         descending order.
+     * Measure the Katz centrality of every friend node: 1 plus the number of chains
+     * of friendships that end at the friend node, each chain of length k counted
+     * as alpha^k. Unlike eigenvector centrality every friend node gets some
+     * centrality, also outside the largest group of the network.
+     * 
+     * @param alpha    Attenuation of each friendship on a chain. The values only
+     *                 converge when alpha is less than 1 / (largest eigenvalue of the
+     *                 adjacency); 1 / (largest degree + 1) is always small enough.
+     * @param executor The executor running the workers, or null for the calling
+     *                 thread.
+     * @return int The number of iterations until the values converged.
      */
-    private ArrayList<Double> sortFriendsBy(HashMap<Double, ArrayList<FriendNode>> data, String type) {
-
-        // store key value pair within a hashmap to help handle duplicate type values
-        // the key is a FriendNode number of edges and the value is a list of those
-        // FriendNodes
-        for (FriendNode friend : this.friends.values()) {
-            double value = 0.0;
-            switch (type) {
-                case "degree": {
-                    value = friend.getDegreeOfCentrality();
-                    break;
-                }
-                case "closeness": {
-                    value = friend.getClosenessCentrality();
-                    break;
-                }
-                case "betweenness": {
-                    value = friend.getBetweennessValue();
-                    break;
-                }
-                default:
-                    throw new IllegalArgumentException("Invalid type");
-            }
+    @Override
+    public int measureAndSetKatzCentrality(double alpha, ExecutorService executor) {
+        CsrFriendGraph csr = analysisGraph();
+        PowerIteration iteration = new PowerIteration(csr, executor);
+        setValues(csr, CentralityType.KATZ, iteration.katz(alpha, valuesOf(csr, CentralityType.KATZ)));
+        return iteration.iterations();
+    }
 
-            if (!data.containsKey(value)) {
-                ArrayList<FriendNode> vertices = new ArrayList<FriendNode>();
-                vertices.add(friend);
-                data.put(value, vertices);
-            } else {
-                ArrayList<FriendNode> vertices = data.get(value);
-                vertices.add(friend);
-                data.put(value, vertices);
-            }
+    private double[] valuesOf(CsrFriendGraph csr, CentralityType type) {
+        double[] values = new double[csr.size()];
+        for (int v = 0; v < csr.size(); v++) {
+            values[v] = type.scoreOf(friends.get(csr.idOf(v)));
         }
+        return values;
+    }
 
-        // get sorted order of values from data hashmap
-        Set<Double> values = data.keySet();
-        ArrayList<Double> sortedValues = new ArrayList<Double>(values);
-
-        // sort values in descending order
-        Collections.sort(sortedValues, new Comparator<Double>() {
-            @Override
-            public int compare(Double o1, Double o2) {
-                return o2.compareTo(o1);
-            }
-        });
+    private void setValues(CsrFriendGraph csr, CentralityType type, double[] values) {
+        for (int v = 0; v < csr.size(); v++) {
+            type.store(friends.get(csr.idOf(v)), values[v]);
+        }
+    }
 
-        return sortedValues;
+    private void setBetweennessValues(CsrFriendGraph csr, double[] betweenness) {
+        for (int v = 0; v < csr.size(); v++) {
+            friends.get(csr.idOf(v)).setBetweennessValue(betweenness[v]);
+        }
     }
 
     /*
@@ -0,0 +1,264 @@
+package graph;
+
+/*
+ * A versioned binary snapshot of a friend graph and its measured centralities,
+ * so a service can start answering queries without loading an edge list and
+ * measuring centrality again.
+ *
+ * Layout, all values little endian:
+ *
+ *   header   int magic ("FGSN"), int version, int flags, int vertices,
+ *            long edges, long reserved                          (32 bytes)
+ *   ids        int[vertices]      original friend id per dense index, ascending
+ *                                 unless the graph was relabeled
+ *   offsets    int[vertices + 1]  CSR row starts
+ *   neighbors  int[edges]         CSR rows of dense indices
+ *   weights    float[edges]       edge lengths, when flags has WEIGHTS
+ *   padding to a multiple of 8 bytes
+ *   closeness    double[vertices] when flags has CLOSENESS
+ *   betweenness  double[vertices] when flags has BETWEENNESS
+ *
+ * A snapshot is written with a FileChannel in large buffered blocks. Reading
+ * memory maps the file and copies each section with one bulk IntBuffer or
+ * DoubleBuffer transfer, which is a plain memory copy with no parsing, hashing
+ * or per edge object. Version 1 files, written before edge weights, have no
+ * WEIGHTS flag and are still read. The arrays stay on the heap because the analysis kernels
+ * run over int[] rows.
+ */
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public final class FriendGraphSnapshot {
+
+    static final int MAGIC = 0x4E534746; // "FGSN" in little endian
+    static final int VERSION = 2;
+
+    static final int CLOSENESS = 1;
+    static final int BETWEENNESS = 1 << 1;
+    static final int WEIGHTS = 1 << 2;
+
+    private static final int HEADER_SIZE = 32;
+    // largest region mapped at once while reading
+    private static final long MAX_MAP_SIZE = 1L << 30;
+    private static final int WRITE_BUFFER_SIZE = 1 << 20;
+
+    private FriendGraphSnapshot() {
+    }
+
+    /**
+     * Write the graph and its closeness and betweenness values to a snapshot file.
+     * A centrality column is only written when some friend node has a non zero
+     * value for it.
+     *
+     * @param graph The graph to write.
+     * @param path  The snapshot file, replaced if it exists.
+     * @throws IOException If the file cannot be written.
+     */
+    public static void write(FriendGraph graph, Path path) throws IOException {
+
+        CsrFriendGraph csr = graph instanceof CsrFriendGraph ? (CsrFriendGraph) graph : CsrFriendGraph.from(graph);
+        int n = csr.size();
+        double[] closeness = new double[n];
+        double[] betweenness = new double[n];
+        int flags = 0;
+        for (int v = 0; v < n; v++) {
+            closeness[v] = csr.nodeAt(v).getClosenessCentrality();
+            betweenness[v] = csr.nodeAt(v).getBetweennessValue();
+            if (closeness[v] != 0)
+                flags |= CLOSENESS;
+            if (betweenness[v] != 0)
+                flags |= BETWEENNESS;
+        }
+        if (csr.isWeighted())
+            flags |= WEIGHTS;
+        int[] ids = new int[n];
+        for (int v = 0; v < n; v++) {
+            ids[v] = csr.idOf(v);
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(flags).putInt(n);
+            buffer.putLong(csr.neighbors().length).putLong(0);
+
+            writeInts(channel, buffer, ids);
+            writeInts(channel, buffer, csr.offsets());
+            writeInts(channel, buffer, csr.neighbors());
+            long length = HEADER_SIZE + 4L * (2L * n + 1 + csr.neighbors().length);
+            if ((flags & WEIGHTS) != 0) {
+                writeFloats(channel, buffer, csr.weights());
+                length += 4L * csr.weights().length;
+            }
+            if (buffer.remaining() < 8)
+                flush(channel, buffer);
+            for (long pad = (8 - length % 8) % 8; pad > 0; pad--) {
+                buffer.put((byte) 0);
+            }
+            if ((flags & CLOSENESS) != 0)
+                writeDoubles(channel, buffer, closeness);
+            if ((flags & BETWEENNESS) != 0)
+                writeDoubles(channel, buffer, betweenness);
+            flush(channel, buffer);
+        }
+    }
+
+    /**
+     * Load a snapshot file written by write().
+     *
+     * @param path The snapshot file.
+     * @return CsrFriendGraph The graph with the stored centrality values set.
+     * @throws IOException If the file cannot be read or is not a valid snapshot.
+     */
+    public static CsrFriendGraph read(Path path) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE)
+                throw new IOException("Not a friend graph snapshot: " + path);
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt() != MAGIC)
+                throw new IOException("Not a friend graph snapshot: " + path);
+            int version = header.getInt();
+            if (version > VERSION)
+                throw new IOException("Unsupported snapshot version " + version + ": " + path);
+            int flags = header.getInt();
+            int n = header.getInt();
+            long m = header.getLong();
+            if (n < 0 || m < 0 || m > Integer.MAX_VALUE)
+                throw new IOException("Corrupt snapshot header: " + path);
+
+            long position = HEADER_SIZE;
+            long expected = position + 4L * (2L * n + 1 + m);
+            if ((flags & WEIGHTS) != 0)
+                expected += 4L * m;
+            expected += (8 - expected % 8) % 8;
+            if ((flags & CLOSENESS) != 0)
+                expected += 8L * n;
+            if ((flags & BETWEENNESS) != 0)
+                expected += 8L * n;
+            if (channel.size() < expected)
+                throw new IOException("Truncated snapshot: " + path);
+
+            int[] ids = new int[n];
+            int[] offsets = new int[n + 1];
+            int[] neighbors = new int[(int) m];
+            position = readInts(channel, position, ids);
+            position = readInts(channel, position, offsets);
+            position = readInts(channel, position, neighbors);
+            float[] weights = null;
+            if ((flags & WEIGHTS) != 0) {
+                weights = new float[(int) m];
+                position = readFloats(channel, position, weights);
+            }
+            position += (8 - position % 8) % 8;
+
+            CsrFriendGraph csr = new CsrFriendGraph(ids, offsets, neighbors, weights);
+            if ((flags & CLOSENESS) != 0) {
+                double[] closeness = new double[n];
+                position = readDoubles(channel, position, closeness);
+                for (int v = 0; v < n; v++) {
+                    csr.nodeAt(v).setClosenessCentrality(closeness[v]);
+                }
+            }
+            if ((flags & BETWEENNESS) != 0) {
+                double[] betweenness = new double[n];
+                position = readDoubles(channel, position, betweenness);
+                for (int v = 0; v < n; v++) {
+                    csr.nodeAt(v).setBetweennessValue(betweenness[v]);
+                }
+            }
+            return csr;
+        }
+    }
+
+    private static void writeInts(FileChannel channel, ByteBuffer buffer, int[] values) throws IOException {
+        int written = 0;
+        while (written < values.length) {
+            if (buffer.remaining() < 4)
+                flush(channel, buffer);
+            int count = Math.min(values.length - written, buffer.remaining() / 4);
+            buffer.asIntBuffer().put(values, written, count);
+            buffer.position(buffer.position() + 4 * count);
+            written += count;
+        }
+    }
+
+    private static void writeFloats(FileChannel channel, ByteBuffer buffer, float[] values) throws IOException {
+        int written = 0;
+        while (written < values.length) {
+            if (buffer.remaining() < 4)
+                flush(channel, buffer);
+            int count = Math.min(values.length - written, buffer.remaining() / 4);
+            buffer.asFloatBuffer().put(values, written, count);
+            buffer.position(buffer.position() + 4 * count);
+            written += count;
+        }
+    }
+
+    private static void writeDoubles(FileChannel channel, ByteBuffer buffer, double[] values) throws IOException {
+        int written = 0;
+        while (written < values.length) {
+            if (buffer.remaining() < 8)
+                flush(channel, buffer);
+            int count = Math.min(values.length - written, buffer.remaining() / 8);
+            buffer.asDoubleBuffer().put(values, written, count);
+            buffer.position(buffer.position() + 8 * count);
+            written += count;
+        }
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /*
+     * Copies ints from the mapped file into values, mapping at most MAX_MAP_SIZE
+     * bytes at a time, and returns the position after them.
+     */
+    private static long readInts(FileChannel channel, long position, int[] values) throws IOException {
+        int read = 0;
+        while (read < values.length) {
+            int count = (int) Math.min(values.length - read, MAX_MAP_SIZE / 4);
+            MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, position, 4L * count);
+            region.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(values, read, count);
+            position += 4L * count;
+            read += count;
+        }
+        return position;
+    }
+
+    private static long readFloats(FileChannel channel, long position, float[] values) throws IOException {
+        int read = 0;
+        while (read < values.length) {
+            int count = (int) Math.min(values.length - read, MAX_MAP_SIZE / 4);
+            MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, position, 4L * count);
+            region.order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(values, read, count);
+            position += 4L * count;
+            read += count;
+        }
+        return position;
+    }
+
+    private static long readDoubles(FileChannel channel, long position, double[] values) throws IOException {
+        int read = 0;
+        while (read < values.length) {
+            int count = (int) Math.min(values.length - read, MAX_MAP_SIZE / 8);
+            MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, position, 8L * count);
+            region.order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer().get(values, read, count);
+            position += 8L * count;
+            read += count;
+        }
+        return position;
+    }
+
+}
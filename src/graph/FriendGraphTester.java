@@ -2,9 +2,21 @@ package graph;
 
 import static org.junit.Assert.*;
 
+import java.lang.ref.WeakReference;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -169,4 +181,1144 @@ public class FriendGraphTester {
         assertEquals(valueFor18, 65);
     }
 
+    @Test
+    public void testCsrGraph() {
+
+        FriendGraph csr = CsrFriendGraph.from(graph1);
+        assertEquals(graph1.exportGraph(), csr.exportGraph());
+
+        csr.measureAndSetClosenessCentrality();
+        double closeness = csr.returnTopCentralityFor(1, "closeness").get(0).getClosenessCentrality();
+        assertEquals(Double.toString(closeness), "0.7142857142857143");
+
+        csr.measureAndSetBetweennessCentrality();
+        List<FriendNode> friendList = csr.returnTopCentralityFor(1, "betweenness");
+        assertEquals(friendList.get(0).getValue(), 30);
+        assertEquals((int) friendList.get(0).getBetweennessValue(), 12);
+
+        CsrFriendGraph built = new CsrFriendGraph.Builder().addEdge(25, 23).addEdge(25, 65).addEdge(25, 18)
+                .addEdge(23, 18).addEdge(18, 23).addEdge(25, 65).build();
+        assertEquals(4, built.getFriends().size());
+        assertEquals(3, built.getFriends().get(25).getDegreeOfCentrality());
+
+        HashMap<Integer, ArrayList<Integer>> suggestions = built.suggestFriendsOfFriends(built.getFriends().get(25));
+        assertEquals((int) suggestions.get(65).get(0), 18);
+        assertEquals((int) suggestions.get(18).get(0), 65);
+    }
+
+    @Test
+    public void testParallelBetweenness() {
+
+        FriendGraph graph = new FriendGraphImpl();
+        Random random = new Random(42);
+        for (int i = 0; i < 1500; i++) {
+            int from = random.nextInt(300);
+            int to = random.nextInt(300);
+            graph.addEdge(from, to);
+            graph.addEdge(to, from);
+        }
+
+        graph.measureAndSetBetweennessCentrality();
+        HashMap<Integer, Double> sequential = new HashMap<Integer, Double>();
+        for (FriendNode friend : graph.getFriends().values()) {
+            sequential.put(friend.getValue(), friend.getBetweennessValue());
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            graph.measureAndSetBetweennessCentrality(pool);
+        } finally {
+            pool.shutdown();
+        }
+        for (FriendNode friend : graph.getFriends().values()) {
+            assertEquals(sequential.get(friend.getValue()), Double.valueOf(friend.getBetweennessValue()));
+        }
+    }
+
+    @Test
+    public void testClosenessPerSource() {
+
+        // two separate groups, distances must not leak from one BFS source to the next
+        FriendGraph graph = new FriendGraphImpl();
+        graph.addEdge(1, 2);
+        graph.addEdge(2, 1);
+        graph.addEdge(3, 4);
+        graph.addEdge(4, 3);
+        graph.addEdge(4, 5);
+        graph.addEdge(5, 4);
+        graph.measureAndSetClosenessCentrality();
+
+        // Wasserman-Faust: (reached - 1)^2 / ((n - 1) * sum of all lengths)
+        assertEquals(0.25, graph.getFriends().get(1).getClosenessCentrality(), 1e-12);
+        assertEquals(1.0 / 3.0, graph.getFriends().get(3).getClosenessCentrality(), 1e-12);
+        assertEquals(0.5, graph.getFriends().get(4).getClosenessCentrality(), 1e-12);
+    }
+
+    @Test
+    public void testApproximateBetweenness() {
+
+        // with as many samples as vertices the exact values are measured
+        double bound = graph1.measureAndSetApproximateBetweennessCentrality(6, 0.1);
+        assertEquals(0.0, bound, 0.0);
+        assertEquals(12, (int) graph1.returnTopCentralityFor(1, "betweenness").get(0).getBetweennessValue());
+
+        bound = graph1.measureAndSetApproximateBetweennessCentrality(3, 0.1);
+        assertTrue(bound > 0);
+        for (FriendNode friend : graph1.getFriends().values()) {
+            assertTrue(friend.getBetweennessValue() >= 0);
+        }
+    }
+
+    @Test
+    public void testApproximateCloseness() {
+
+        // with a pivot per vertex the exact values are measured
+        graph1.measureAndSetApproximateClosenessCentrality(6);
+        double valueD = graph1.returnTopCentralityFor(1, "closeness").get(0).getClosenessCentrality();
+        assertEquals(Double.toString(valueD), "0.7142857142857143");
+
+        graph1.measureAndSetApproximateClosenessCentrality(3);
+        for (FriendNode friend : graph1.getFriends().values()) {
+            assertTrue(friend.getClosenessCentrality() > 0);
+        }
+    }
+
+    @Test
+    public void testIncrementalCentrality() {
+
+        FriendGraph incremental = new FriendGraphImpl();
+        FriendGraph full = new FriendGraphImpl();
+        for (Map.Entry<Integer, HashSet<Integer>> entry : graph2.exportGraph().entrySet()) {
+            incremental.addVertex(entry.getKey());
+            for (int to : entry.getValue()) {
+                incremental.addEdge(entry.getKey(), to);
+            }
+        }
+        incremental.measureAndSetClosenessCentrality();
+        incremental.measureAndSetBetweennessCentrality();
+
+        int[][] newEdges = { { 65, 18 }, { 50, 32 }, { 44, 90 }, { 90, 25 }, { 65, 18 } };
+        for (int[] edge : newEdges) {
+            incremental.addEdgeAndUpdateCentrality(edge[0], edge[1]);
+        }
+
+        for (Map.Entry<Integer, HashSet<Integer>> entry : incremental.exportGraph().entrySet()) {
+            full.addVertex(entry.getKey());
+            for (int to : entry.getValue()) {
+                full.addEdge(entry.getKey(), to);
+            }
+        }
+        full.measureAndSetClosenessCentrality();
+        full.measureAndSetBetweennessCentrality();
+
+        for (FriendNode friend : full.getFriends().values()) {
+            FriendNode other = incremental.getFriends().get(friend.getValue());
+            assertEquals(friend.getBetweennessValue(), other.getBetweennessValue(), 1e-9);
+            assertEquals(friend.getClosenessCentrality(), other.getClosenessCentrality(), 1e-9);
+        }
+
+        // several edges and a new friend inserted at once
+        FriendGraph batch = new FriendGraphImpl();
+        CsrFriendGraph random = GraphGenerator.erdosRenyi(400, 2, 3);
+        for (Map.Entry<Integer, HashSet<Integer>> entry : random.exportGraph().entrySet()) {
+            batch.addVertex(entry.getKey());
+            for (int to : entry.getValue()) {
+                batch.addEdge(entry.getKey(), to);
+            }
+        }
+        CsrFriendGraph before = CsrFriendGraph.from(batch);
+        double[] closeness = ClosenessCentrality.measure(before);
+        double[] betweenness = BrandesBetweenness.measure(before);
+        // 1000 is a new friend
+        int[][] batchEdges = { { 3, 250 }, { 250, 3 }, { 17, 1000 }, { 1000, 99 }, { 120, 121 } };
+        for (int[] edge : batchEdges) {
+            batch.addEdge(edge[0], edge[1]);
+        }
+        CsrFriendGraph after = CsrFriendGraph.from(batch);
+        double[][] values = IncrementalCentrality.update(before, closeness, betweenness, after);
+        double[] expectedCloseness = ClosenessCentrality.measure(after);
+        double[] expectedBetweenness = BrandesBetweenness.measure(after);
+        assertEquals(401, after.size());
+        for (int v = 0; v < after.size(); v++) {
+            assertEquals(expectedCloseness[v], values[0][v], 1e-9);
+            assertEquals(expectedBetweenness[v], values[1][v], 1e-9);
+        }
+    }
+
+    @Test
+    public void testTopCentralitySelection() {
+
+        graph1.measureAndSetBetweennessCentrality();
+        assertEquals(graph1.returnTopCentralityFor(2, "degree"), graph1.returnTopCentralityFor(2, CentralityType.DEGREE));
+
+        // ties keep the order of getFriends()
+        List<FriendNode> friendList = graph1.returnTopCentralityFor(1, CentralityType.DEGREE);
+        assertEquals(3, friendList.size());
+        List<Integer> order = new ArrayList<Integer>();
+        for (FriendNode friend : graph1.getFriends().values()) {
+            if (friend.getDegreeOfCentrality() == 3)
+                order.add(friend.getValue());
+        }
+        for (int i = 0; i < order.size(); i++) {
+            assertEquals(order.get(i).intValue(), friendList.get(i).getValue());
+        }
+
+        int[] positions = TopKSelector.selectTopLevels(new double[] { 1.0, 5.0, 3.0, 5.0, 2.0, 3.0 }, 2);
+        assertArrayEquals(new int[] { 1, 3, 2, 5 }, positions);
+
+        // ascending scores replace the smallest kept score every time; each score appears twice
+        double[] ascending = new double[400000];
+        for (int v = 0; v < ascending.length; v++) {
+            ascending[v] = v / 2;
+        }
+        positions = TopKSelector.selectTopLevels(ascending, 150000);
+        assertEquals(300000, positions.length);
+        assertEquals(ascending.length - 2, positions[0]);
+        assertEquals(100001, positions[positions.length - 1]);
+    }
+
+    @Test
+    public void testEdgeListLoader() throws Exception {
+
+        Path file = Files.createTempFile("edges", ".txt");
+        try {
+            Files.write(file, Arrays.asList("# FromNodeId\tToNodeId", "10\t20", "20 30", "30,40", "30 50", "40 50",
+                    "40 60 0.5", "", "50 60", "50 60"));
+            CsrFriendGraph loaded = EdgeListLoader.load(file, true, 4);
+            assertEquals(graph1.exportGraph(), loaded.exportGraph());
+
+            loaded.measureAndSetBetweennessCentrality();
+            assertEquals(12, (int) loaded.returnTopCentralityFor(1, CentralityType.BETWEENNESS).get(0)
+                    .getBetweennessValue());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testSnapshot() throws Exception {
+
+        graph2.measureAndSetClosenessCentrality();
+        graph2.measureAndSetBetweennessCentrality();
+
+        Path file = Files.createTempFile("graph", ".snapshot");
+        try {
+            FriendGraphSnapshot.write(graph2, file);
+            CsrFriendGraph loaded = FriendGraphSnapshot.read(file);
+            assertEquals(graph2.exportGraph(), loaded.exportGraph());
+
+            for (FriendNode friend : graph2.getFriends().values()) {
+                FriendNode other = loaded.getFriends().get(friend.getValue());
+                assertEquals(friend.getClosenessCentrality(), other.getClosenessCentrality(), 0.0);
+                assertEquals(friend.getBetweennessValue(), other.getBetweennessValue(), 0.0);
+            }
+            assertEquals(graph2.suggestFriendsOfFriends(graph2.getFriends().get(25)),
+                    loaded.suggestFriendsOfFriends(loaded.getFriends().get(25)));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testRecommendFriends() {
+
+        // 10 shares friend 20 with 30; 30 shares 40 and 50 with 60
+        List<Recommendation> recommendations = graph1.recommendFriends(graph1.getFriends().get(10), 5,
+                RecommendationScore.COMMON_NEIGHBORS);
+        assertEquals(1, recommendations.size());
+        assertEquals(30, recommendations.get(0).getValue());
+        assertEquals(1, recommendations.get(0).getCommonFriends());
+
+        recommendations = graph1.recommendFriends(graph1.getFriends().get(20), 5, RecommendationScore.COMMON_NEIGHBORS);
+        assertEquals(2, recommendations.size());
+        assertEquals(40, recommendations.get(0).getValue());
+        assertEquals(50, recommendations.get(1).getValue());
+
+        recommendations = graph1.recommendFriends(graph1.getFriends().get(60), 1, RecommendationScore.JACCARD);
+        assertEquals(30, recommendations.get(0).getValue());
+        assertEquals(2, recommendations.get(0).getCommonFriends());
+        assertEquals(2.0 / 3.0, recommendations.get(0).getScore(), 1e-12);
+
+        recommendations = graph1.recommendFriends(graph1.getFriends().get(60), 1, RecommendationScore.ADAMIC_ADAR);
+        assertEquals(2 / Math.log(3), recommendations.get(0).getScore(), 1e-12);
+    }
+
+    @Test
+    public void testRecommendFriendsForAll() throws Exception {
+
+        final Map<Integer, Integer> best = new ConcurrentHashMap<Integer, Integer>();
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            graph1.recommendFriendsForAll(1, RecommendationScore.COMMON_NEIGHBORS, new RecommendationSink() {
+                @Override
+                public void accept(int person, int[] candidates, double[] scores, int count) {
+                    if (count > 0)
+                        best.put(person, candidates[0]);
+                }
+            }, pool);
+        } finally {
+            pool.shutdown();
+        }
+
+        for (FriendNode friend : graph1.getFriends().values()) {
+            List<Recommendation> single = graph1.recommendFriends(friend, 1, RecommendationScore.COMMON_NEIGHBORS);
+            if (single.isEmpty()) {
+                assertFalse(best.containsKey(friend.getValue()));
+            } else {
+                assertEquals(single.get(0).getValue(), best.get(friend.getValue()).intValue());
+            }
+        }
+
+        Path file = Files.createTempFile("recommendations", ".txt");
+        try {
+            RecommendationFileSink sink = new RecommendationFileSink(file);
+            try {
+                graph1.recommendFriendsForAll(2, RecommendationScore.COMMON_NEIGHBORS, sink, ForkJoinPool.commonPool());
+            } finally {
+                sink.close();
+            }
+            assertEquals(best.size(), Files.readAllLines(file).size());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testRecommendationsReleaseGraphs() {
+
+        // the per thread scratch state must not keep the graphs it searched alive
+        List<WeakReference<CsrFriendGraph>> queried = new ArrayList<WeakReference<CsrFriendGraph>>();
+        for (int i = 0; i < 20; i++) {
+            CsrFriendGraph graph = GraphGenerator.erdosRenyi(5000 + 1000 * (i % 3), 8, i);
+            assertFalse(graph.recommendFriends(graph.nodeAt(0), 5, RecommendationScore.COMMON_NEIGHBORS).isEmpty());
+            queried.add(new WeakReference<CsrFriendGraph>(graph));
+        }
+        assertTrue(collected(queried));
+
+        // neither does a batch job on a long lived pool
+        List<WeakReference<CsrFriendGraph>> batched = new ArrayList<WeakReference<CsrFriendGraph>>();
+        for (int i = 0; i < 10; i++) {
+            CsrFriendGraph graph = GraphGenerator.erdosRenyi(5000, 8, i);
+            graph.recommendFriendsForAll(5, RecommendationScore.COMMON_NEIGHBORS, new RecommendationSink() {
+                @Override
+                public void accept(int person, int[] candidates, double[] scores, int count) {
+                }
+            }, ForkJoinPool.commonPool());
+            batched.add(new WeakReference<CsrFriendGraph>(graph));
+        }
+        assertTrue(collected(batched));
+
+        // stamps left by a larger graph do not leak into the next query
+        List<Recommendation> recommendations = graph1.recommendFriends(graph1.getFriends().get(20), 5,
+                RecommendationScore.COMMON_NEIGHBORS);
+        assertEquals(2, recommendations.size());
+        assertEquals(40, recommendations.get(0).getValue());
+    }
+
+    /* Runs the garbage collector until every reference is cleared, giving up after a while. */
+    private static <T> boolean collected(List<WeakReference<T>> references) {
+        for (int attempt = 0; attempt < 50; attempt++) {
+            boolean cleared = true;
+            for (WeakReference<T> reference : references) {
+                cleared &= reference.get() == null;
+            }
+            if (cleared)
+                return true;
+            System.gc();
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return false;
+    }
+
+    @Test
+    public void testGraphGenerator() {
+
+        CsrFriendGraph[] graphs = { GraphGenerator.erdosRenyi(2000, 8, 1),
+                GraphGenerator.barabasiAlbert(2000, 4, 1), GraphGenerator.powerLaw(2000, 8, 2.5, 1) };
+        for (CsrFriendGraph graph : graphs) {
+            assertEquals(2000, graph.size());
+            for (int v = 0; v < graph.size(); v++) {
+                for (int i = graph.offsets()[v]; i < graph.offsets()[v + 1]; i++) {
+                    int friend = graph.neighbors()[i];
+                    assertTrue(friend != v);
+                    assertTrue(graph.hasEdge(friend, v));
+                }
+            }
+            double averageDegree = (double) graph.neighbors().length / graph.size();
+            assertTrue(averageDegree > 6 && averageDegree <= 8);
+        }
+
+        // same seed, same graph
+        assertTrue(Arrays.equals(graphs[2].neighbors(), GraphGenerator.powerLaw(2000, 8, 2.5, 1).neighbors()));
+
+        // preferential attachment and power-law graphs have far larger hubs
+        assertTrue(maxDegree(graphs[1]) > 3 * maxDegree(graphs[0]));
+        assertTrue(maxDegree(graphs[2]) > 3 * maxDegree(graphs[0]));
+    }
+
+    private static int maxDegree(CsrFriendGraph graph) {
+        int max = 0;
+        for (int v = 0; v < graph.size(); v++) {
+            max = Math.max(max, graph.offsets()[v + 1] - graph.offsets()[v]);
+        }
+        return max;
+    }
+
+    @Test
+    public void testConcurrentFriendGraph() throws Exception {
+
+        final CsrFriendGraph source = GraphGenerator.erdosRenyi(3000, 6, 7);
+        final ConcurrentFriendGraph graph = new ConcurrentFriendGraph();
+        final int writers = 4;
+
+        Thread[] threads = new Thread[writers];
+        for (int t = 0; t < writers; t++) {
+            final int first = t;
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    for (int v = first; v < source.size(); v += writers) {
+                        graph.addVertex(source.idOf(v));
+                        for (int i = source.offsets()[v]; i < source.offsets()[v + 1]; i++) {
+                            graph.addEdge(source.idOf(v), source.idOf(source.neighbors()[i]));
+                        }
+                    }
+                }
+            };
+            threads[t].start();
+        }
+
+        // every snapshot taken while writing holds all edges of the one before
+        CsrFriendGraph previous = graph.snapshot();
+        boolean writing = true;
+        while (writing) {
+            writing = false;
+            for (Thread thread : threads) {
+                writing |= thread.isAlive();
+            }
+            CsrFriendGraph next = graph.snapshot();
+            assertTrue(next.neighbors().length >= previous.neighbors().length);
+            for (int v = 0; v < previous.size(); v++) {
+                int w = next.indexOf(previous.idOf(v));
+                assertTrue(w >= 0);
+                for (int i = previous.offsets()[v]; i < previous.offsets()[v + 1]; i++) {
+                    assertTrue(next.hasEdge(w, next.indexOf(previous.idOf(previous.neighbors()[i]))));
+                }
+            }
+            previous = next;
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(source.exportGraph(), graph.exportGraph());
+        assertTrue(graph.snapshot() == graph.snapshot());
+
+        // measured values survive later writes
+        graph.measureAndSetBetweennessCentrality();
+        double betweenness = graph.getFriends().get(0).getBetweennessValue();
+        graph.addEdge(source.size(), 0);
+        assertEquals(betweenness, graph.getFriends().get(0).getBetweennessValue(), 0.0);
+        assertEquals(source.size() + 1, graph.getFriends().size());
+
+        // a snapshot taken while a measure runs still gets its values
+        final CsrFriendGraph measured = graph.snapshot();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>()) {
+            private boolean written;
+
+            @Override
+            protected void beforeExecute(Thread thread, Runnable task) {
+                if (!written) {
+                    written = true;
+                    graph.addEdge(source.size() + 1, 0);
+                    assertTrue(graph.snapshot() != measured);
+                }
+            }
+        };
+        graph.measureAndSetClosenessCentrality(executor);
+        executor.shutdown();
+        assertEquals(source.size() + 2, graph.getFriends().size());
+        for (int v = 0; v < measured.size(); v++) {
+            assertEquals(measured.nodeAt(v).getClosenessCentrality(),
+                    graph.getFriends().get(measured.idOf(v)).getClosenessCentrality(), 0.0);
+        }
+        assertTrue(graph.getFriends().get(0).getClosenessCentrality() > 0);
+    }
+
+    @Test
+    public void testConcurrentIncrementalCentrality() {
+
+        ConcurrentFriendGraph concurrent = new ConcurrentFriendGraph();
+        FriendGraph full = new FriendGraphImpl();
+        for (Map.Entry<Integer, HashSet<Integer>> entry : graph2.exportGraph().entrySet()) {
+            concurrent.addVertex(entry.getKey());
+            for (int to : entry.getValue()) {
+                concurrent.addEdge(entry.getKey(), to);
+            }
+        }
+        concurrent.measureAndSetClosenessCentrality();
+        concurrent.measureAndSetBetweennessCentrality();
+
+        int[][] newEdges = { { 65, 18 }, { 50, 32 }, { 44, 90 }, { 90, 25 }, { 65, 18 } };
+        // snapshots taken between some of the insertions update from each other
+        for (int e = 0; e < newEdges.length; e++) {
+            concurrent.addEdgeAndUpdateCentrality(newEdges[e][0], newEdges[e][1]);
+            if (e % 2 == 0)
+                concurrent.snapshot();
+        }
+
+        for (Map.Entry<Integer, HashSet<Integer>> entry : concurrent.exportGraph().entrySet()) {
+            full.addVertex(entry.getKey());
+            for (int to : entry.getValue()) {
+                full.addEdge(entry.getKey(), to);
+            }
+        }
+        full.measureAndSetClosenessCentrality();
+        full.measureAndSetBetweennessCentrality();
+
+        for (FriendNode friend : full.getFriends().values()) {
+            FriendNode other = concurrent.getFriends().get(friend.getValue());
+            assertEquals(friend.getBetweennessValue(), other.getBetweennessValue(), 1e-9);
+            assertEquals(friend.getClosenessCentrality(), other.getClosenessCentrality(), 1e-9);
+        }
+    }
+
+    @Test
+    public void testConnectedComponents() {
+
+        FriendGraph graph = new FriendGraphImpl();
+        graph.addEdge(5, 1);
+        graph.addEdge(1, 2);
+        graph.addEdge(3, 4);
+        graph.addEdge(4, 3);
+        graph.addEdge(4, 6);
+        graph.addVertex(9);
+
+        ConnectedComponents components = graph.findConnectedComponents();
+        assertEquals(3, components.count());
+        assertTrue(Arrays.equals(new int[] { 1, 2, 5 }, components.members(components.componentOf(5))));
+        assertTrue(Arrays.equals(new int[] { 3, 4, 6 }, components.members(components.componentOf(6))));
+        assertEquals(1, components.size(components.componentOf(9)));
+        assertEquals(0, components.largest());
+
+        // the parallel search finds the same numbering on a larger graph
+        CsrFriendGraph csr = GraphGenerator.erdosRenyi(5000, 1.5, 3);
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            ConnectedComponents sequential = ConnectedComponents.find(csr);
+            ConnectedComponents parallel = ConnectedComponents.find(csr, pool);
+            assertTrue(sequential.count() > 1);
+            assertEquals(sequential.count(), parallel.count());
+            for (int v = 0; v < csr.size(); v++) {
+                assertEquals(sequential.componentOfVertex(v), parallel.componentOfVertex(v));
+            }
+
+            // closeness per component matches the sequential sweep
+            double[] closeness = ClosenessCentrality.measure(csr);
+            double[] perComponent = ClosenessCentrality.measure(csr, pool);
+            assertTrue(Arrays.equals(closeness, perComponent));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testDirectionOptimizingBfs() {
+
+        CsrFriendGraph[] graphs = { GraphGenerator.powerLaw(20000, 12, 2.5, 5), GraphGenerator.erdosRenyi(3000, 1.2, 5),
+                CsrFriendGraph.from(graph1) };
+        for (CsrFriendGraph graph : graphs) {
+            BreadthFirstSearch topDown = TraversalKernel.TOP_DOWN.newSearch(graph);
+            BreadthFirstSearch optimizing = TraversalKernel.DIRECTION_OPTIMIZING.newSearch(graph);
+            for (int source = 0; source < graph.size(); source += 97) {
+                assertEquals(topDown.run(source), optimizing.run(source));
+                assertEquals(topDown.distanceSum(), optimizing.distanceSum());
+                for (int v = 0; v < graph.size(); v++) {
+                    assertEquals(topDown.distance(v), optimizing.distance(v));
+                }
+            }
+        }
+
+        // on a low diameter graph the bottom-up steps skip most edges
+        CsrFriendGraph graph = graphs[0];
+        BreadthFirstSearch topDown = TraversalKernel.TOP_DOWN.newSearch(graph);
+        BreadthFirstSearch optimizing = TraversalKernel.DIRECTION_OPTIMIZING.newSearch(graph);
+        topDown.run(0);
+        optimizing.run(0);
+        assertTrue(optimizing.edgesInspected() * 3 < topDown.edgesInspected());
+
+        assertTrue(Arrays.equals(ClosenessCentrality.measure(graphs[1], TraversalKernel.TOP_DOWN),
+                ClosenessCentrality.measure(graphs[1], TraversalKernel.DIRECTION_OPTIMIZING)));
+    }
+
+    @Test
+    public void testShortestPaths() {
+
+        // two chains of length 3 from 1 to 6, a one way edge back, and an island
+        FriendGraph graph = new FriendGraphImpl();
+        graph.addEdge(1, 2);
+        graph.addEdge(1, 3);
+        graph.addEdge(2, 4);
+        graph.addEdge(3, 4);
+        graph.addEdge(4, 6);
+        graph.addEdge(6, 1);
+        graph.addEdge(1, 5);
+        graph.addEdge(5, 7);
+        graph.addEdge(7, 8);
+        graph.addEdge(8, 6);
+        graph.addVertex(9);
+
+        assertEquals(0, graph.distance(1, 1));
+        assertEquals(3, graph.distance(1, 6));
+        assertEquals(1, graph.distance(6, 1));
+        assertEquals(-1, graph.distance(1, 9));
+
+        List<List<Integer>> paths = graph.shortestPaths(1, 6, 5);
+        assertEquals(2, paths.size());
+        assertTrue(paths.contains(Arrays.asList(1, 2, 4, 6)));
+        assertTrue(paths.contains(Arrays.asList(1, 3, 4, 6)));
+        assertEquals(1, graph.shortestPaths(1, 6, 1).size());
+        assertTrue(graph.shortestPaths(9, 1, 3).isEmpty());
+
+        // the cached copy follows changes to the graph
+        graph.addEdge(1, 6);
+        assertEquals(1, graph.distance(1, 6));
+
+        // distances agree with a full BFS on a random graph
+        CsrFriendGraph csr = GraphGenerator.powerLaw(5000, 4, 2.5, 11);
+        BfsEngine bfs = new BfsEngine(csr);
+        Random random = new Random(11);
+        for (int query = 0; query < 200; query++) {
+            int from = random.nextInt(csr.size());
+            int to = random.nextInt(csr.size());
+            bfs.run(from);
+            assertEquals(bfs.distance(to), csr.distance(csr.idOf(from), csr.idOf(to)));
+            List<List<Integer>> chains = csr.shortestPaths(csr.idOf(from), csr.idOf(to), 3);
+            assertEquals(chains.size(), new HashSet<List<Integer>>(chains).size());
+            for (List<Integer> path : chains) {
+                assertEquals(bfs.distance(to) + 1, path.size());
+                for (int k = 1; k < path.size(); k++) {
+                    assertTrue(csr.hasEdge(csr.indexOf(path.get(k - 1)), csr.indexOf(path.get(k))));
+                }
+            }
+        }
+
+        // the per thread search state does not keep the graphs it searched, or
+        // their rows, alive
+        List<WeakReference<Object>> searched = new ArrayList<WeakReference<Object>>();
+        for (int i = 0; i < 20; i++) {
+            CsrFriendGraph fresh = GraphGenerator.erdosRenyi(5000 + 1000 * (i % 3), 8, i);
+            assertTrue(fresh.distance(0, 1) > 0);
+            assertFalse(fresh.shortestPaths(0, 1, 2).isEmpty());
+            searched.add(new WeakReference<Object>(fresh));
+            searched.add(new WeakReference<Object>(fresh.neighbors()));
+        }
+        assertTrue(collected(searched));
+
+        // and labels left by a larger graph do not leak into the next query
+        assertEquals(4, graph.distance(8, 4));
+        paths = graph.shortestPaths(8, 4, 5);
+        assertEquals(2, paths.size());
+        assertTrue(paths.contains(Arrays.asList(8, 6, 1, 2, 4)));
+        assertTrue(paths.contains(Arrays.asList(8, 6, 1, 3, 4)));
+    }
+
+    @Test
+    public void testDistanceOracle() throws Exception {
+
+        CsrFriendGraph csr = GraphGenerator.barabasiAlbert(3000, 3, 13);
+        DistanceOracle oracle = DistanceOracle.build(csr, 8);
+        assertEquals(8, oracle.landmarks().length);
+        assertEquals(6000, oracle.bytesPerLandmark());
+
+        Random random = new Random(13);
+        for (int query = 0; query < 300; query++) {
+            int from = csr.idOf(random.nextInt(csr.size()));
+            int to = csr.idOf(random.nextInt(csr.size()));
+            int distance = csr.distance(from, to);
+            assertTrue(oracle.lowerBound(from, to) <= distance);
+            assertTrue(oracle.upperBound(from, to) >= distance);
+        }
+
+        // exact from a landmark
+        int landmark = oracle.landmarks()[0];
+        assertEquals(csr.distance(landmark, 7), oracle.lowerBound(landmark, 7));
+        assertEquals(csr.distance(landmark, 7), oracle.upperBound(landmark, 7));
+
+        // one way edges: 3 reaches nobody
+        FriendGraph graph = new FriendGraphImpl();
+        graph.addEdge(1, 2);
+        graph.addEdge(2, 3);
+        graph.addEdge(2, 4);
+        graph.addEdge(4, 2);
+        DistanceOracle small = DistanceOracle.build(graph, 1);
+        assertEquals(2, small.landmarks()[0]);
+        assertEquals(2, small.upperBound(1, 3));
+        assertEquals(Integer.MAX_VALUE, small.lowerBound(3, 1));
+        assertEquals(-1, small.upperBound(3, 4));
+
+        Path file = Files.createTempFile("oracle", ".bin");
+        try {
+            oracle.write(file);
+            DistanceOracle read = DistanceOracle.read(file);
+            assertTrue(Arrays.equals(oracle.landmarks(), read.landmarks()));
+            for (int query = 0; query < 100; query++) {
+                int from = csr.idOf(random.nextInt(csr.size()));
+                int to = csr.idOf(random.nextInt(csr.size()));
+                assertEquals(oracle.lowerBound(from, to), read.lowerBound(from, to));
+                assertEquals(oracle.upperBound(from, to), read.upperBound(from, to));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testMultiSourceCloseness() {
+
+        // directed edges, several components and more sources than one batch
+        CsrFriendGraph[] graphs = { GraphGenerator.erdosRenyi(1000, 1.5, 17), GraphGenerator.powerLaw(3000, 6, 2.2, 17),
+                CsrFriendGraph.from(graph1), CsrFriendGraph.from(graph2) };
+        for (CsrFriendGraph graph : graphs) {
+            assertTrue(Arrays.equals(ClosenessCentrality.measure(graph, TraversalKernel.TOP_DOWN),
+                    ClosenessCentrality.measure(graph)));
+        }
+
+        CsrFriendGraph graph = graphs[1];
+        int[] sources = { 5, 17, 2999, 0 };
+        MultiSourceBfs multi = new MultiSourceBfs(graph);
+        BfsEngine single = new BfsEngine(graph);
+        multi.run(sources, 1, 3);
+        for (int i = 0; i < 3; i++) {
+            single.run(sources[1 + i]);
+            assertEquals(single.reached(), multi.reached(i));
+            assertEquals(single.distanceSum(), multi.distanceSum(i));
+        }
+    }
+
+    @Test
+    public void testRelabel() {
+
+        CsrFriendGraph csr = CsrFriendGraph.from(graph2);
+        csr.measureAndSetBetweennessCentrality();
+        for (VertexOrder order : VertexOrder.values()) {
+            CsrFriendGraph relabeled = csr.relabel(order);
+            assertEquals(csr.exportGraph(), relabeled.exportGraph());
+            for (FriendNode friend : csr.getFriends().values()) {
+                FriendNode other = relabeled.getFriends().get(friend.getValue());
+                assertEquals(friend.getValue(), other.getValue());
+                assertEquals(friend.getBetweennessValue(), other.getBetweennessValue(), 0.0);
+            }
+        }
+
+        // hubs first, and results still come back as friend ids
+        CsrFriendGraph degree = csr.relabel(VertexOrder.DEGREE);
+        for (int v = 1; v < degree.size(); v++) {
+            assertTrue(degree.nodeAt(v - 1).getSize() >= degree.nodeAt(v).getSize());
+        }
+        assertTrue(!degree.hasSortedIds());
+        assertEquals(csr.returnTopCentralityFor(1, CentralityType.DEGREE).get(0).getValue(),
+                degree.returnTopCentralityFor(1, CentralityType.DEGREE).get(0).getValue());
+        assertEquals(csr.distance(32, 65), degree.distance(32, 65));
+        assertEquals(-1, degree.indexOf(12345));
+
+        // centrality is the same on any layout
+        CsrFriendGraph bfs = CsrFriendGraph.from(graph2).relabel(VertexOrder.BFS);
+        bfs.measureAndSetBetweennessCentrality();
+        for (FriendNode friend : csr.getFriends().values()) {
+            assertEquals(friend.getBetweennessValue(), bfs.getFriends().get(friend.getValue()).getBetweennessValue(),
+                    1e-9);
+        }
+    }
+
+    @Test
+    public void testWeightedCentrality() throws Exception {
+
+        // the direct edge 1-3 is longer than the way through 2
+        FriendGraph graph = new FriendGraphImpl();
+        ConcurrentFriendGraph concurrent = new ConcurrentFriendGraph();
+        CsrFriendGraph.Builder builder = new CsrFriendGraph.Builder();
+        int[][] edges = { { 1, 2, 1 }, { 2, 3, 1 }, { 1, 3, 5 }, { 3, 4, 1 } };
+        for (int[] edge : edges) {
+            graph.addEdge(edge[0], edge[1], edge[2]);
+            graph.addEdge(edge[1], edge[0], edge[2]);
+            concurrent.addEdge(edge[0], edge[1], edge[2]);
+            concurrent.addEdge(edge[1], edge[0], edge[2]);
+            builder.addEdge(edge[0], edge[1], edge[2]).addEdge(edge[1], edge[0], edge[2]);
+        }
+        // a duplicate keeps the shortest edge
+        graph.addEdge(1, 3, 7);
+        concurrent.addEdge(1, 3, 7);
+        builder.addEdge(1, 3, 7);
+        FriendNode one = graph.getFriends().get(1);
+        assertEquals(5, one.getWeight(graph.getFriends().get(3)), 0);
+        assertEquals(1, one.getWeight(graph.getFriends().get(2)), 0);
+
+        FriendGraph[] graphs = { graph, CsrFriendGraph.from(graph), builder.build(), concurrent };
+        for (FriendGraph g : graphs) {
+            g.measureAndSetWeightedBetweennessCentrality();
+            g.measureAndSetWeightedClosenessCentrality();
+            Map<Integer, FriendNode> friends = g.getFriends();
+            assertEquals(5, friends.get(1).getWeight(friends.get(3)), 0);
+            assertEquals(0, friends.get(1).getBetweennessValue(), 1e-9);
+            assertEquals(4, friends.get(2).getBetweennessValue(), 1e-9);
+            assertEquals(4, friends.get(3).getBetweennessValue(), 1e-9);
+            assertEquals(0.5, friends.get(1).getClosenessCentrality(), 1e-9);
+        }
+        graph.measureAndSetBetweennessCentrality();
+        assertEquals(0, graph.getFriends().get(2).getBetweennessValue(), 1e-9);
+
+        // the weights survive a snapshot file
+        Path file = Files.createTempFile("weighted", ".fgsn");
+        try {
+            FriendGraphSnapshot.write(graph, file);
+            CsrFriendGraph read = FriendGraphSnapshot.read(file);
+            assertTrue(read.isWeighted());
+            assertEquals(5, read.getFriends().get(3).getWeight(read.getFriends().get(1)), 0);
+        } finally {
+            Files.delete(file);
+        }
+
+        // every backend keeps the shortest of repeated edges, length 1 for addEdge(from, to)
+        FriendGraph[] repeated = { new FriendGraphImpl(), new ConcurrentFriendGraph() };
+        CsrFriendGraph.Builder repeatedBuilder = new CsrFriendGraph.Builder();
+        for (FriendGraph g : repeated) {
+            g.addEdge(1, 2, 5);
+            g.addEdge(1, 2);
+            g.addEdge(1, 3, 0.5f);
+            g.addEdge(1, 3);
+            g.addEdge(1, 4, 4);
+            g.addEdge(1, 4, 3);
+            g.addEdge(1, 4, 6);
+        }
+        repeatedBuilder.addEdge(1, 2, 5).addEdge(1, 2).addEdge(1, 3, 0.5f).addEdge(1, 3);
+        repeatedBuilder.addEdge(1, 4, 4).addEdge(1, 4, 3).addEdge(1, 4, 6);
+        FriendGraph[] repeatedGraphs = { repeated[0], repeated[1], repeatedBuilder.build() };
+        for (FriendGraph g : repeatedGraphs) {
+            Map<Integer, FriendNode> friends = g.getFriends();
+            assertEquals(1, friends.get(1).getWeight(friends.get(2)), 0);
+            assertEquals(0.5, friends.get(1).getWeight(friends.get(3)), 0);
+            assertEquals(3, friends.get(1).getWeight(friends.get(4)), 0);
+        }
+
+        // Dijkstra over edges of length 1 matches the BFS kernels
+        CsrFriendGraph random = GraphGenerator.erdosRenyi(500, 3, 5);
+        float[] ones = new float[random.neighbors().length];
+        Arrays.fill(ones, 1);
+        int[] ids = new int[random.size()];
+        for (int v = 0; v < ids.length; v++) {
+            ids[v] = random.idOf(v);
+        }
+        CsrFriendGraph unit = new CsrFriendGraph(ids, random.offsets(), random.neighbors(), ones);
+        double[] expected = BrandesBetweenness.measure(random);
+        double[] actual = DijkstraSearch.betweenness(unit);
+        double[] expectedCloseness = ClosenessCentrality.measure(random);
+        double[] actualCloseness = DijkstraSearch.closeness(unit);
+        for (int v = 0; v < ids.length; v++) {
+            assertEquals(expected[v], actual[v], 1e-9);
+            assertEquals(expectedCloseness[v], actualCloseness[v], 1e-12);
+        }
+    }
+
+    @Test
+    public void testPowerIterationCentrality() {
+
+        // a path 1 - 2 - 3 and a directed triangle 4 -> 5 -> 6 -> 4
+        FriendGraph graph = new FriendGraphImpl();
+        graph.addEdge(1, 2);
+        graph.addEdge(2, 1);
+        graph.addEdge(2, 3);
+        graph.addEdge(3, 2);
+        graph.addEdge(4, 5);
+        graph.addEdge(5, 6);
+        graph.addEdge(6, 4);
+
+        graph.measureAndSetKatzCentrality(0.1, null);
+        Map<Integer, FriendNode> friends = graph.getFriends();
+        assertEquals(1.1 / 0.98, friends.get(1).getKatzCentrality(), 1e-8);
+        assertEquals(1 + 0.2 * 1.1 / 0.98, friends.get(2).getKatzCentrality(), 1e-8);
+        assertEquals(1 / 0.9, friends.get(4).getKatzCentrality(), 1e-8);
+
+        graph.measureAndSetPageRank(null);
+        double total = 0;
+        for (FriendNode friend : friends.values()) {
+            total += friend.getPageRank();
+        }
+        assertEquals(1, total, 1e-9);
+        assertEquals(friends.get(4).getPageRank(), friends.get(6).getPageRank(), 1e-9);
+        assertEquals(2, graph.returnTopCentralityFor(1, "pagerank").get(0).getValue());
+
+        // a second run starts from the values of the first
+        assertTrue(graph.measureAndSetPageRank(null) <= 2);
+
+        graph1.measureAndSetEigenvectorCentrality(null);
+        double squares = 0;
+        for (FriendNode friend : graph1.getFriends().values()) {
+            squares += friend.getEigenvectorCentrality() * friend.getEigenvectorCentrality();
+        }
+        assertEquals(1, squares, 1e-9);
+        // 40 and 50 share all their friends and lie at the center of the dense group
+        Map<Integer, FriendNode> nodes = graph1.getFriends();
+        assertEquals(nodes.get(40).getEigenvectorCentrality(), nodes.get(50).getEigenvectorCentrality(), 1e-9);
+        assertTrue(nodes.get(50).getEigenvectorCentrality() > nodes.get(30).getEigenvectorCentrality());
+        assertTrue(nodes.get(30).getEigenvectorCentrality() > nodes.get(20).getEigenvectorCentrality());
+
+        // a warm start still reaches friends added since the last run
+        FriendGraph[] warmGraphs = { new FriendGraphImpl(), new ConcurrentFriendGraph() };
+        for (FriendGraph warm : warmGraphs) {
+            warm.addEdge(1, 2);
+            warm.addEdge(2, 3);
+            warm.addEdge(3, 1);
+            warm.measureAndSetEigenvectorCentrality(null);
+            for (int a = 10; a < 15; a++) {
+                for (int b = 10; b < 15; b++) {
+                    if (a != b)
+                        warm.addEdge(a, b);
+                }
+            }
+            warm.measureAndSetEigenvectorCentrality(null);
+            for (int a = 10; a < 15; a++) {
+                assertEquals(1 / Math.sqrt(5), warm.getFriends().get(a).getEigenvectorCentrality(), 1e-6);
+            }
+            assertEquals(0, warm.getFriends().get(1).getEigenvectorCentrality(), 1e-6);
+        }
+
+        // a directed acyclic graph has no principal eigenvector
+        FriendGraph chain = new FriendGraphImpl();
+        for (int v = 0; v < 5; v++) {
+            chain.addEdge(v, v + 1);
+        }
+        FriendGraph star = new FriendGraphImpl();
+        for (int v = 2; v <= 4; v++) {
+            star.addEdge(1, v);
+        }
+        for (FriendGraph acyclic : new FriendGraph[] { chain, star, CsrFriendGraph.from(chain) }) {
+            assertEquals(0, acyclic.measureAndSetEigenvectorCentrality(null));
+            for (FriendNode friend : acyclic.getFriends().values()) {
+                assertEquals(0, friend.getEigenvectorCentrality(), 0);
+            }
+        }
+
+        // two directed triangles joined by 3 -> 4 share a defective eigenvalue
+        FriendGraph joined = new FriendGraphImpl();
+        for (int group = 1; group <= 4; group += 3) {
+            joined.addEdge(group, group + 1);
+            joined.addEdge(group + 1, group + 2);
+            joined.addEdge(group + 2, group);
+        }
+        joined.addEdge(3, 4);
+        assertEquals(PowerIteration.MAX_ITERATIONS, joined.measureAndSetEigenvectorCentrality(null));
+        squares = 0;
+        for (FriendNode friend : joined.getFriends().values()) {
+            squares += friend.getEigenvectorCentrality() * friend.getEigenvectorCentrality();
+        }
+        assertEquals(1, squares, 1e-9);
+        Map<Integer, FriendNode> ends = joined.getFriends();
+        assertTrue(ends.get(5).getEigenvectorCentrality() > 10 * ends.get(2).getEigenvectorCentrality());
+
+        // blocks spread over workers give exactly the sequential values
+        CsrFriendGraph large = GraphGenerator.powerLaw(20000, 8, 2.3, 9);
+        CsrFriendGraph parallel = GraphGenerator.powerLaw(20000, 8, 2.3, 9);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            large.measureAndSetPageRank(null);
+            large.measureAndSetEigenvectorCentrality(null);
+            parallel.measureAndSetPageRank(pool);
+            parallel.measureAndSetEigenvectorCentrality(pool);
+        } finally {
+            pool.shutdown();
+        }
+        for (int v = 0; v < large.size(); v++) {
+            assertEquals(large.nodeAt(v).getPageRank(), parallel.nodeAt(v).getPageRank(), 0);
+            assertEquals(large.nodeAt(v).getEigenvectorCentrality(), parallel.nodeAt(v).getEigenvectorCentrality(), 0);
+        }
+    }
+
+    @Test
+    public void testCommunities() {
+
+        // two groups of five friends joined by the friendship 4 - 5
+        FriendGraph graph = new FriendGraphImpl();
+        for (int group = 0; group < 10; group += 5) {
+            for (int a = group; a < group + 5; a++) {
+                for (int b = a + 1; b < group + 5; b++) {
+                    graph.addEdge(a, b);
+                    graph.addEdge(b, a);
+                }
+            }
+        }
+        graph.addEdge(4, 5);
+
+        for (CommunityAlgorithm algorithm : CommunityAlgorithm.values()) {
+            Communities communities = graph.findCommunities(algorithm, null);
+            assertEquals(2, communities.count());
+            assertEquals(5, communities.size(0));
+            assertTrue(Arrays.equals(new int[] { 5, 6, 7, 8, 9 }, communities.members(communities.communityOf(9))));
+            assertEquals(2 * (20 / 42.0 - 0.25), communities.modularity(), 1e-12);
+        }
+
+        // the parallel rounds give the sequential labels
+        CsrFriendGraph large = GraphGenerator.powerLaw(20000, 8, 2.3, 4);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        Communities parallel;
+        try {
+            parallel = large.findCommunities(CommunityAlgorithm.LABEL_PROPAGATION, pool);
+        } finally {
+            pool.shutdown();
+        }
+        Communities sequential = large.findCommunities(CommunityAlgorithm.LABEL_PROPAGATION, null);
+        assertTrue(Arrays.equals(sequential.assignment(), parallel.assignment()));
+
+        Communities louvain = large.findCommunities(CommunityAlgorithm.LOUVAIN, null);
+        int total = 0;
+        for (int c = 0; c < louvain.count(); c++) {
+            total += louvain.size(c);
+        }
+        assertEquals(large.size(), total);
+        assertTrue(louvain.modularity() > sequential.modularity());
+    }
+
+    @Test
+    public void testCoreness() {
+
+        // 10 - 20 hang off the group 30, 40, 50, 60 where only 40 and 50 have three friends
+        assertEquals(2, graph1.measureAndSetCoreness(null));
+        Map<Integer, FriendNode> friends = graph1.getFriends();
+        assertEquals(1, friends.get(10).getCoreness());
+        assertEquals(1, friends.get(20).getCoreness());
+        assertEquals(2, friends.get(30).getCoreness());
+        assertEquals(2, friends.get(60).getCoreness());
+        assertEquals(4, graph1.returnTopCentralityFor(1, CentralityType.CORENESS).size());
+
+        // each friend has at most degeneracy friends later in the order
+        CsrFriendGraph large = GraphGenerator.powerLaw(20000, 8, 2.3, 6);
+        int degeneracy = large.measureAndSetCoreness(null);
+        int[] order = large.degeneracyOrder();
+        Map<Integer, Integer> position = new HashMap<Integer, Integer>();
+        for (int k = 0; k < order.length; k++) {
+            position.put(order[k], k);
+        }
+        for (FriendNode friend : large.getFriends().values()) {
+            int later = 0;
+            for (FriendNode other : friend.getEdges()) {
+                if (position.get(other.getValue()) > position.get(friend.getValue()))
+                    later++;
+            }
+            assertTrue(later <= degeneracy);
+        }
+
+        // peeling level by level in parallel finds the same coreness
+        CsrFriendGraph parallel = GraphGenerator.powerLaw(20000, 8, 2.3, 6);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            assertEquals(degeneracy, parallel.measureAndSetCoreness(pool));
+        } finally {
+            pool.shutdown();
+        }
+        for (int v = 0; v < large.size(); v++) {
+            assertEquals(large.nodeAt(v).getCoreness(), parallel.nodeAt(v).getCoreness());
+        }
+    }
+
+    @Test
+    public void testTriangles() {
+
+        // 30, 40, 50 and 40, 50, 60 are the only triangles
+        TriangleCounts counts = graph1.countTriangles(null);
+        assertEquals(2, counts.total());
+        assertEquals(0, counts.trianglesOf(20));
+        assertEquals(1, counts.trianglesOf(30));
+        assertEquals(2, counts.trianglesOf(40));
+        assertEquals(1.0 / 3, counts.clusteringOf(30), 1e-12);
+        assertEquals(1.0, counts.clusteringOf(60), 1e-12);
+        assertEquals(0.0, counts.clusteringOf(10), 1e-12);
+        assertEquals(6.0 / 11, counts.transitivity(), 1e-12);
+
+        // every pair of friends of a friend that are friends themselves, counted directly
+        CsrFriendGraph large = GraphGenerator.powerLaw(20000, 8, 2.3, 6);
+        CsrFriendGraph undirected = large.undirected();
+        int[] offsets = undirected.offsets();
+        int[] neighbors = undirected.neighbors();
+        boolean[] friend = new boolean[undirected.size()];
+        long[] expected = new long[undirected.size()];
+        long total = 0;
+        for (int v = 0; v < undirected.size(); v++) {
+            for (int i = offsets[v]; i < offsets[v + 1]; i++) {
+                friend[neighbors[i]] = true;
+            }
+            for (int i = offsets[v]; i < offsets[v + 1]; i++) {
+                int w = neighbors[i];
+                for (int j = offsets[w]; j < offsets[w + 1]; j++) {
+                    if (friend[neighbors[j]])
+                        expected[v]++;
+                }
+            }
+            for (int i = offsets[v]; i < offsets[v + 1]; i++) {
+                friend[neighbors[i]] = false;
+            }
+            expected[v] /= 2;
+            total += expected[v];
+        }
+        TriangleCounts sequential = large.countTriangles(null);
+        assertEquals(total / 3, sequential.total());
+        assertTrue(sequential.total() > 0);
+        for (int v = 0; v < undirected.size(); v++) {
+            assertEquals(expected[v], sequential.trianglesOf(undirected.idOf(v)));
+        }
+
+        // the workers find the same counts
+        TriangleCounts parallel;
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            parallel = large.countTriangles(pool);
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(sequential.total(), parallel.total());
+        assertArrayEquals(sequential.counts(), parallel.counts());
+        assertEquals(sequential.transitivity(), parallel.transitivity(), 0);
+    }
+
+    @Test
+    public void testSubgraphViews() {
+
+        // 30, 40, 50 and 60 with the friendships among them, not the parent's 20
+        FriendGraph ego = graph1.egoNetwork(40, 1);
+        assertEquals(4, ego.getFriends().size());
+        assertEquals(new HashSet<Integer>(Arrays.asList(40, 50)), ego.exportGraph().get(30));
+        assertEquals(2, ego.getFriends().get(30).getDegreeOfCentrality());
+        assertEquals(2, ego.countTriangles(null).total());
+        assertEquals(1, graph1.egoNetwork(40, 0).getFriends().size());
+        assertEquals(6, graph1.egoNetwork(40, 3).getFriends().size());
+
+        // values measured on a view stay in the view
+        ego.measureAndSetBetweennessCentrality();
+        assertTrue(ego.getFriends().get(40).getBetweennessValue() > 0);
+        assertEquals(0, graph1.getFriends().get(40).getBetweennessValue(), 0);
+
+        // friendships added to the parent among the members show through
+        graph1.addEdge(30, 60);
+        assertTrue(ego.exportGraph().get(30).contains(60));
+
+        FriendGraph path = graph1.subgraph(new int[] { 30, 10, 20, 20 });
+        assertEquals(3, path.getFriends().size());
+        assertEquals(2, path.distance(10, 30));
+
+        // the ego network of a hub holds all of its triangles
+        CsrFriendGraph large = GraphGenerator.powerLaw(20000, 8, 2.3, 6).undirected();
+        TriangleCounts counts = large.countTriangles(null);
+        for (FriendNode center : large.returnTopCentralityFor(3, CentralityType.DEGREE)) {
+            FriendGraph hub = large.egoNetwork(center.getValue(), 1);
+            assertEquals(center.getSize() + 1, hub.getFriends().size());
+            assertEquals(center.getSize(), hub.getFriends().get(center.getValue()).getSize());
+            assertEquals(counts.trianglesOf(center.getValue()), hub.countTriangles(null).trianglesOf(center.getValue()));
+        }
+    }
+
 }
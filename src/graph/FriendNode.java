@@ -1,6 +1,8 @@
 package graph;
 
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 public class FriendNode implements Comparable<FriendNode> {
@@ -9,6 +11,12 @@ public class FriendNode implements Comparable<FriendNode> {
     private Set<FriendNode> edges;
     private double closenessCentrality;
     private double betweennessValue;
+    private double pageRank;
+    private double eigenvectorCentrality;
+    private double katzCentrality;
+    private int coreness;
+    // length of the weighted edges, created when the first one is added
+    private Map<FriendNode, Float> weights;
 
     public FriendNode(int value) {
         if (value < 0)
@@ -18,6 +26,18 @@ public class FriendNode implements Comparable<FriendNode> {
         this.setBetweennessValue(0);
     }
 
+    /*
+     * Creates a node whose edges are provided by the owning graph, for example a
+     * read-only view over a compressed adjacency array.
+     */
+    FriendNode(int value, Set<FriendNode> edges) {
+        if (value < 0)
+            throw new IllegalArgumentException("Number must be 0 or greater.");
+        this.value = value;
+        this.edges = edges;
+        this.setBetweennessValue(0);
+    }
+
     public boolean addEdge(FriendNode node) {
         // add a friend
         if (!edges.contains(node)) {
@@ -28,6 +48,51 @@ public class FriendNode implements Comparable<FriendNode> {
         return false;
     }
 
+    /**
+     * Return the length of the edge to the given friend. Edges added without a
+     * weight have length 1.
+     *
+     * @param node One of the friends of this node.
+     * @return float The length of the edge.
+     */
+    public float getWeight(FriendNode node) {
+        if (!edges.contains(node))
+            throw new IllegalArgumentException("Not a friend of " + value);
+        if (weights == null)
+            return 1;
+        Float weight = weights.get(node);
+        return weight == null ? 1 : weight;
+    }
+
+    /*
+     * Sets the length of the edge to the given friend. The map is only created for
+     * a length other than 1, so unweighted nodes carry no extra state.
+     */
+    void setWeight(FriendNode node, float weight) {
+        checkWeight(weight);
+        if (weights == null) {
+            if (weight == 1)
+                return;
+            weights = new HashMap<FriendNode, Float>();
+        }
+        weights.put(node, weight);
+    }
+
+    /*
+     * True when some edge of this node may have a length other than 1.
+     */
+    boolean hasWeights() {
+        return weights != null;
+    }
+
+    /*
+     * Edge lengths must be positive and finite for the shortest path searches.
+     */
+    static void checkWeight(float weight) {
+        if (!(weight > 0) || Float.isInfinite(weight))
+            throw new IllegalArgumentException("Weight must be a positive number.");
+    }
+
     public int getValue() {
         return value;
     }
@@ -77,4 +142,48 @@ public class FriendNode implements Comparable<FriendNode> {
         this.betweennessValue = betweennessValue;
     }
 
+    public double getPageRank() {
+        return pageRank;
+    }
+
+    public void setPageRank(double pageRank) {
+        this.pageRank = pageRank;
+    }
+
+    public double getEigenvectorCentrality() {
+        return eigenvectorCentrality;
+    }
+
+    public void setEigenvectorCentrality(double eigenvectorCentrality) {
+        this.eigenvectorCentrality = eigenvectorCentrality;
+    }
+
+    public double getKatzCentrality() {
+        return katzCentrality;
+    }
+
+    public void setKatzCentrality(double katzCentrality) {
+        this.katzCentrality = katzCentrality;
+    }
+
+    public int getCoreness() {
+        return coreness;
+    }
+
+    public void setCoreness(int coreness) {
+        this.coreness = coreness;
+    }
+
+    /*
+     * Copies every measured centrality value of the other node into this one.
+     */
+    void copyCentralities(FriendNode other) {
+        this.closenessCentrality = other.closenessCentrality;
+        this.betweennessValue = other.betweennessValue;
+        this.pageRank = other.pageRank;
+        this.eigenvectorCentrality = other.eigenvectorCentrality;
+        this.katzCentrality = other.katzCentrality;
+        this.coreness = other.coreness;
+    }
+
 }
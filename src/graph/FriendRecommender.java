@@ -0,0 +1,202 @@
+package graph;
+
+/*
+ * Ranks the people at distance two from a person ("people you may know") over
+ * the sorted rows of a CsrFriendGraph.
+ *
+ * For every friend f of the person, every friend w of f that is neither the
+ * person nor already a friend is a candidate, and the shared friend f is added
+ * to w's counters. The counters live in arrays indexed by dense vertex and are
+ * reset lazily with an epoch stamp, so a query costs the sum of the degrees of
+ * the person's friends and allocates nothing. The best candidates are kept in
+ * a bounded min-heap of size N.
+ *
+ * One instance holds the scratch state of one thread and is reused across
+ * queries; forThread() returns the calling thread's instance. The graph is
+ * passed to every query and never kept, so the scratch state does not keep a
+ * graph alive once it is no longer used, and the arrays only grow when a larger
+ * graph is queried. The results of the last query are read with
+ * resultVertex(), resultScore() and resultCommonFriends().
+ */
+import java.util.Arrays;
+
+final class FriendRecommender {
+
+    // scratch state of each thread, shared by every graph the thread queries
+    private static final ThreadLocal<FriendRecommender> THREAD_SCRATCH = new ThreadLocal<FriendRecommender>() {
+        @Override
+        protected FriendRecommender initialValue() {
+            return new FriendRecommender();
+        }
+    };
+
+    private int[] stamp = new int[0];
+    private int[] friendStamp = new int[0];
+    private int[] common = new int[0];
+    private double[] score = new double[0];
+    private int[] touched = new int[0];
+    private int epoch;
+
+    private int[] heap = new int[16];
+    private int resultCount;
+    private int[] resultVertex = new int[16];
+
+    /* The scratch state of the calling thread. */
+    static FriendRecommender forThread() {
+        return THREAD_SCRATCH.get();
+    }
+
+    /*
+     * Grows the per vertex arrays to the given number of vertices. New arrays
+     * start unstamped, and the epoch only ever rises, so the stamps left by
+     * another graph are never mistaken for the current query's.
+     */
+    private void ensureCapacity(int n) {
+        if (stamp.length >= n)
+            return;
+        stamp = new int[n];
+        friendStamp = new int[n];
+        common = new int[n];
+        score = new double[n];
+        touched = new int[n];
+    }
+
+    /**
+     * Find the best scored friends of friends of a person.
+     *
+     * @param graph  The graph to search.
+     * @param person Dense index of the person.
+     * @param number Largest number of candidates to return.
+     * @param type   How candidates are scored.
+     * @return int The number of candidates found, at most number.
+     */
+    int recommend(CsrFriendGraph graph, int person, int number, RecommendationScore type) {
+
+        if (number < 1)
+            throw new IllegalArgumentException("Number must be 1 or greater");
+
+        int[] offsets = graph.offsets();
+        int[] neighbors = graph.neighbors();
+        ensureCapacity(graph.size());
+
+        if (++epoch == Integer.MAX_VALUE) {
+            Arrays.fill(stamp, 0);
+            Arrays.fill(friendStamp, 0);
+            epoch = 1;
+        }
+
+        friendStamp[person] = epoch;
+        for (int i = offsets[person]; i < offsets[person + 1]; i++) {
+            friendStamp[neighbors[i]] = epoch;
+        }
+
+        // count the shared friends of every candidate at distance two
+        int numTouched = 0;
+        for (int i = offsets[person]; i < offsets[person + 1]; i++) {
+            int friend = neighbors[i];
+            int degree = offsets[friend + 1] - offsets[friend];
+            double weight = type == RecommendationScore.ADAMIC_ADAR ? 1.0 / Math.log(Math.max(2, degree)) : 1.0;
+            for (int j = offsets[friend]; j < offsets[friend + 1]; j++) {
+                int candidate = neighbors[j];
+                if (friendStamp[candidate] == epoch)
+                    continue;
+                if (stamp[candidate] != epoch) {
+                    stamp[candidate] = epoch;
+                    common[candidate] = 0;
+                    score[candidate] = 0;
+                    touched[numTouched++] = candidate;
+                }
+                common[candidate]++;
+                score[candidate] += weight;
+            }
+        }
+
+        if (type == RecommendationScore.JACCARD) {
+            int personDegree = offsets[person + 1] - offsets[person];
+            for (int k = 0; k < numTouched; k++) {
+                int candidate = touched[k];
+                int union = personDegree + offsets[candidate + 1] - offsets[candidate] - common[candidate];
+                score[candidate] = (double) common[candidate] / union;
+            }
+        }
+
+        // keep the best candidates in a bounded min-heap
+        if (heap.length < number) {
+            heap = new int[number];
+            resultVertex = new int[number];
+        }
+        int size = 0;
+        for (int k = 0; k < numTouched; k++) {
+            int candidate = touched[k];
+            if (size < number) {
+                heap[size] = candidate;
+                siftUp(size++);
+            } else if (better(candidate, heap[0])) {
+                heap[0] = candidate;
+                siftDown(size, 0);
+            }
+        }
+
+        // pop the heap from the worst to the best candidate
+        resultCount = size;
+        while (size > 0) {
+            resultVertex[size - 1] = heap[0];
+            heap[0] = heap[--size];
+            siftDown(size, 0);
+        }
+        return resultCount;
+    }
+
+    /* Dense index of the k-th best candidate of the last query. */
+    int resultVertex(int k) {
+        return resultVertex[k];
+    }
+
+    double resultScore(int k) {
+        return score[resultVertex[k]];
+    }
+
+    int resultCommonFriends(int k) {
+        return common[resultVertex[k]];
+    }
+
+    /*
+     * Higher score first, then lower dense index so ties are deterministic.
+     */
+    private boolean better(int a, int b) {
+        if (score[a] != score[b])
+            return score[a] > score[b];
+        return a < b;
+    }
+
+    private void siftUp(int index) {
+        int value = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (!better(heap[parent], value))
+                break;
+            heap[index] = heap[parent];
+            index = parent;
+        }
+        heap[index] = value;
+    }
+
+    private void siftDown(int size, int index) {
+        if (size == 0)
+            return;
+        int value = heap[index];
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size)
+                break;
+            if (child + 1 < size && better(heap[child], heap[child + 1]))
+                child++;
+            if (!better(value, heap[child]))
+                break;
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = value;
+    }
+
+}
@@ -0,0 +1,173 @@
+package graph;
+
+/*
+ * Generates synthetic friend graphs for benchmarks and tests, so performance can
+ * be measured at sizes far beyond the hand built graphs.
+ *
+ * Every generator returns an undirected graph (each friendship is added in both
+ * directions) over the friend ids 0 to n - 1 as a CsrFriendGraph. Self loops are
+ * skipped and repeated friendships are merged, so the average degree can come
+ * out slightly below the requested one. The same seed always gives the same
+ * graph.
+ *
+ * erdosRenyi()      - uniform random friendships, a narrow degree distribution.
+ * barabasiAlbert()  - preferential attachment, a power-law tail with exponent 3.
+ * powerLaw()        - Chung-Lu graph with expected degrees drawn from a
+ *                     power-law of the given exponent, like real social networks.
+ */
+import java.util.Arrays;
+import java.util.Random;
+
+public final class GraphGenerator {
+
+    private GraphGenerator() {
+    }
+
+    /**
+     * Generate an Erdos-Renyi graph with n * averageDegree / 2 friendships between
+     * uniformly chosen persons.
+     *
+     * @param n             Number of persons.
+     * @param averageDegree Expected number of friends per person.
+     * @param seed          Seed of the random generator.
+     * @return CsrFriendGraph The generated graph.
+     */
+    public static CsrFriendGraph erdosRenyi(int n, double averageDegree, long seed) {
+
+        checkArguments(n, averageDegree);
+        Random random = new Random(seed);
+        int friendships = numFriendships(n, averageDegree);
+        int[] sources = new int[2 * friendships];
+        int[] targets = new int[2 * friendships];
+        int numEdges = 0;
+        for (int k = 0; k < friendships; k++) {
+            int from = random.nextInt(n);
+            int to = random.nextInt(n);
+            if (from != to) {
+                numEdges = addFriendship(sources, targets, numEdges, from, to);
+            }
+        }
+        return build(n, sources, targets, numEdges);
+    }
+
+    /**
+     * Generate a Barabasi-Albert graph. Each new person befriends the given number
+     * of existing persons, chosen with a probability proportional to their degree.
+     *
+     * @param n       Number of persons.
+     * @param friends Number of friendships made by each new person.
+     * @param seed    Seed of the random generator.
+     * @return CsrFriendGraph The generated graph.
+     */
+    public static CsrFriendGraph barabasiAlbert(int n, int friends, long seed) {
+
+        checkArguments(n, friends);
+        if (friends < 1 || friends >= n)
+            throw new IllegalArgumentException("Friends must be between 1 and n - 1");
+        Random random = new Random(seed);
+        long maxFriendships = (long) friends * (friends + 1) / 2 + (long) (n - friends - 1) * friends;
+        if (maxFriendships > Integer.MAX_VALUE / 2)
+            throw new IllegalArgumentException("Graph is too large");
+        int[] sources = new int[2 * (int) maxFriendships];
+        int[] targets = new int[2 * (int) maxFriendships];
+        int numEdges = 0;
+
+        // start from a clique of friends + 1 persons
+        for (int from = 0; from <= friends; from++) {
+            for (int to = from + 1; to <= friends; to++) {
+                numEdges = addFriendship(sources, targets, numEdges, from, to);
+            }
+        }
+
+        // every edge endpoint is in sources once per degree, so a uniform pick among
+        // the edges made so far is a pick proportional to degree
+        for (int person = friends + 1; person < n; person++) {
+            int existing = numEdges;
+            for (int k = 0; k < friends; k++) {
+                numEdges = addFriendship(sources, targets, numEdges, person, sources[random.nextInt(existing)]);
+            }
+        }
+        return build(n, sources, targets, numEdges);
+    }
+
+    /**
+     * Generate a Chung-Lu graph whose expected degrees follow a power-law with the
+     * given exponent, scaled to the given average degree. Both ends of each
+     * friendship are chosen with a probability proportional to their expected
+     * degree.
+     *
+     * @param n             Number of persons.
+     * @param averageDegree Expected number of friends per person.
+     * @param exponent      Power-law exponent of the degree distribution, above 2.
+     * @param seed          Seed of the random generator.
+     * @return CsrFriendGraph The generated graph.
+     */
+    public static CsrFriendGraph powerLaw(int n, double averageDegree, double exponent, long seed) {
+
+        checkArguments(n, averageDegree);
+        if (exponent <= 2)
+            throw new IllegalArgumentException("Exponent must be greater than 2");
+        Random random = new Random(seed);
+
+        // cumulative expected degree, person i has weight (i + 1) ^ (-1 / (exponent - 1))
+        double[] cumulative = new double[n];
+        double total = 0;
+        for (int i = 0; i < n; i++) {
+            total += Math.pow(i + 1, -1.0 / (exponent - 1));
+            cumulative[i] = total;
+        }
+
+        int friendships = numFriendships(n, averageDegree);
+        int[] sources = new int[2 * friendships];
+        int[] targets = new int[2 * friendships];
+        int numEdges = 0;
+        for (int k = 0; k < friendships; k++) {
+            int from = pick(cumulative, random.nextDouble() * total);
+            int to = pick(cumulative, random.nextDouble() * total);
+            if (from != to) {
+                numEdges = addFriendship(sources, targets, numEdges, from, to);
+            }
+        }
+        return build(n, sources, targets, numEdges);
+    }
+
+    private static void checkArguments(int n, double averageDegree) {
+        if (n < 1)
+            throw new IllegalArgumentException("N must be 1 or greater");
+        if (averageDegree < 0)
+            throw new IllegalArgumentException("Degree must be 0 or greater");
+    }
+
+    private static int numFriendships(int n, double averageDegree) {
+        double friendships = n * averageDegree / 2;
+        if (friendships > Integer.MAX_VALUE / 2)
+            throw new IllegalArgumentException("Graph is too large");
+        return (int) friendships;
+    }
+
+    private static int addFriendship(int[] sources, int[] targets, int numEdges, int from, int to) {
+        sources[numEdges] = from;
+        targets[numEdges++] = to;
+        sources[numEdges] = to;
+        targets[numEdges++] = from;
+        return numEdges;
+    }
+
+    /*
+     * Returns the first person whose cumulative weight is above the value.
+     */
+    private static int pick(double[] cumulative, double value) {
+        int index = Arrays.binarySearch(cumulative, value);
+        index = index < 0 ? -index - 1 : index + 1;
+        return Math.min(index, cumulative.length - 1);
+    }
+
+    private static CsrFriendGraph build(int n, int[] sources, int[] targets, int numEdges) {
+        int[] vertices = new int[n];
+        for (int i = 0; i < n; i++) {
+            vertices[i] = i;
+        }
+        return CsrFriendGraph.fromEdges(vertices, n, sources, targets, numEdges);
+    }
+
+}
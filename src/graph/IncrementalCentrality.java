@@ -0,0 +1,125 @@
+package graph;
+
+/*
+ * Closeness and betweenness centrality brought up to date after edges are
+ * inserted, following the incremental Brandes approach.
+ *
+ * A new edge from -> to only changes the shortest paths of a BFS source s that
+ * reaches from and for which to is unreachable or not closer than from, i.e.
+ * d(s, to) > d(s, from). These sources are found with two BFS searches over the
+ * reversed edges of the graph before the insertion, from "from" and from "to".
+ * An edge that leaves a source unaffected leaves its distances unchanged as
+ * well, so when several edges are inserted at once each is tested against the
+ * distances before any of them, and a source unaffected by every edge on its own
+ * is unaffected by all of them together. A new vertex is always affected.
+ *
+ * For each affected source its old dependencies are subtracted from the
+ * betweenness values, and its new dependencies and its closeness are measured on
+ * the graph after the insertion. Every other source keeps its contribution; only
+ * its closeness is rescaled to the new number of vertices.
+ *
+ * Every inserted edge costs two searches, so once the new edges reach half the
+ * old vertices the values are measured from scratch instead.
+ */
+import java.util.Arrays;
+
+final class IncrementalCentrality {
+
+    private IncrementalCentrality() {
+    }
+
+    /**
+     * Update the closeness and betweenness measured on a graph to a later graph
+     * that holds every vertex and edge of it plus inserted ones.
+     *
+     * @param before      The graph the values were measured on.
+     * @param closeness   Closeness per dense index of before.
+     * @param betweenness Betweenness per dense index of before.
+     * @param after       The graph with the inserted vertices and edges.
+     * @return double[][] The closeness and the betweenness per dense index of
+     *         after.
+     */
+    static double[][] update(CsrFriendGraph before, double[] closeness, double[] betweenness, CsrFriendGraph after) {
+
+        int oldSize = before.size();
+        int n = after.size();
+        int[] oldIndex = new int[n];
+        for (int v = 0; v < n; v++) {
+            oldIndex[v] = before.indexOf(after.idOf(v));
+        }
+
+        // the inserted edges out of old vertices; an edge out of a new vertex is
+        // only reached through an edge into one, which is tested instead
+        int[] offsets = after.offsets();
+        int[] neighbors = after.neighbors();
+        int[] froms = new int[16];
+        int[] tos = new int[16];
+        int numEdges = 0;
+        for (int v = 0; v < n; v++) {
+            int from = oldIndex[v];
+            if (from < 0)
+                continue;
+            for (int i = offsets[v]; i < offsets[v + 1]; i++) {
+                int to = oldIndex[neighbors[i]];
+                if (to < 0 || !before.hasEdge(from, to)) {
+                    if (numEdges == froms.length) {
+                        froms = Arrays.copyOf(froms, 2 * numEdges);
+                        tos = Arrays.copyOf(tos, 2 * numEdges);
+                    }
+                    froms[numEdges] = from;
+                    tos[numEdges++] = to;
+                }
+            }
+        }
+        if (2 * numEdges >= oldSize)
+            return new double[][] { ClosenessCentrality.measure(after), BrandesBetweenness.measure(after) };
+
+        // find the affected sources on the graph before the insertion
+        boolean[] affected = new boolean[oldSize];
+        int[] distanceToFrom = new int[oldSize];
+        BreadthFirstSearch reverse = TraversalKernel.DIRECTION_OPTIMIZING.newSearch(before.transpose());
+        for (int e = 0; e < numEdges; e++) {
+            reverse.run(froms[e]);
+            for (int s = 0; s < oldSize; s++) {
+                distanceToFrom[s] = reverse.distance(s);
+            }
+            // a new vertex is unreachable from every old source
+            if (tos[e] >= 0)
+                reverse.run(tos[e]);
+            for (int s = 0; s < oldSize; s++) {
+                int distanceToTo = tos[e] < 0 ? -1 : reverse.distance(s);
+                if (distanceToFrom[s] >= 0 && (distanceToTo < 0 || distanceToTo > distanceToFrom[s]))
+                    affected[s] = true;
+            }
+        }
+
+        double[] oldBetweenness = Arrays.copyOf(betweenness, oldSize);
+        BrandesBetweenness brandes = new BrandesBetweenness(before);
+        for (int s = 0; s < oldSize; s++) {
+            if (affected[s])
+                brandes.accumulate(s, oldBetweenness, -1.0);
+        }
+
+        double[] newCloseness = new double[n];
+        double[] newBetweenness = new double[n];
+        for (int v = 0; v < n; v++) {
+            if (oldIndex[v] >= 0)
+                newBetweenness[v] = oldBetweenness[oldIndex[v]];
+        }
+        brandes = new BrandesBetweenness(after);
+        BreadthFirstSearch bfs = TraversalKernel.DIRECTION_OPTIMIZING.newSearch(after);
+        for (int v = 0; v < n; v++) {
+            int old = oldIndex[v];
+            if (old >= 0 && !affected[old]) {
+                // same reach and lengths, only the graph has grown
+                newCloseness[v] = ClosenessCentrality.rescale(closeness[old], oldSize, n);
+                continue;
+            }
+            brandes.accumulate(v, newBetweenness, 1.0);
+            bfs.run(v);
+            newCloseness[v] = ClosenessCentrality.closeness(bfs.reached(), bfs.distanceSum(), n);
+        }
+        return new double[][] { newCloseness, newBetweenness };
+    }
+
+}
@@ -0,0 +1,108 @@
+package graph;
+
+/*
+ * A binary min-heap of dense vertex indices keyed by a double, for Dijkstra's
+ * algorithm.
+ *
+ * The heap is a plain int[] of vertices and the position of every vertex in it
+ * is kept in a second int[], so the key of a queued vertex can be lowered in
+ * place instead of queueing a second entry. Nothing is boxed and nothing is
+ * allocated after construction. Equal keys are ordered by vertex index, so the
+ * order vertices are removed in does not depend on the order they were added.
+ */
+import java.util.Arrays;
+
+final class IndexedMinHeap {
+
+    private final int[] heap;
+    // position of each vertex in heap, -1 when it is not queued
+    private final int[] position;
+    private final double[] key;
+    private int size;
+
+    IndexedMinHeap(int capacity) {
+        this.heap = new int[capacity];
+        this.position = new int[capacity];
+        this.key = new double[capacity];
+        Arrays.fill(position, -1);
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Queue the vertex with the given key, or lower its key if it is already
+     * queued with a larger one.
+     *
+     * @param vertex Dense index of the vertex.
+     * @param value  The key of the vertex.
+     */
+    void push(int vertex, double value) {
+        int index = position[vertex];
+        if (index < 0) {
+            index = size++;
+            heap[index] = vertex;
+            position[vertex] = index;
+        } else if (value >= key[vertex]) {
+            return;
+        }
+        key[vertex] = value;
+        siftUp(index);
+    }
+
+    /**
+     * Remove the vertex with the smallest key.
+     *
+     * @return int Dense index of the removed vertex.
+     */
+    int pop() {
+        int top = heap[0];
+        position[top] = -1;
+        if (--size > 0) {
+            heap[0] = heap[size];
+            position[heap[0]] = 0;
+            siftDown(0);
+        }
+        return top;
+    }
+
+    private boolean less(int a, int b) {
+        if (key[a] != key[b])
+            return key[a] < key[b];
+        return a < b;
+    }
+
+    private void siftUp(int index) {
+        int vertex = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (!less(vertex, heap[parent]))
+                break;
+            heap[index] = heap[parent];
+            position[heap[index]] = index;
+            index = parent;
+        }
+        heap[index] = vertex;
+        position[vertex] = index;
+    }
+
+    private void siftDown(int index) {
+        int vertex = heap[index];
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size)
+                break;
+            if (child + 1 < size && less(heap[child + 1], heap[child]))
+                child++;
+            if (!less(heap[child], vertex))
+                break;
+            heap[index] = heap[child];
+            position[heap[index]] = index;
+            index = child;
+        }
+        heap[index] = vertex;
+        position[vertex] = index;
+    }
+
+}
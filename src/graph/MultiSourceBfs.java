@@ -0,0 +1,135 @@
+package graph;
+
+/*
+ * Multi-source breadth first search, following "The More the Merrier: Efficient
+ * Multi-Source Graph Traversal" by Then et al.
+ *
+ * Up to 64 BFS searches run at once. Every vertex holds three bitsets in longs,
+ * one bit per search: seen, the searches whose frontier holds the vertex, and
+ * the searches reaching it in the next level. A level streams the adjacency of
+ * the frontier vertices once and ORs each frontier bitset into the next bitsets
+ * of the neighbors, so a row that several searches share at the same level is
+ * read once for all of them instead of once per search.
+ *
+ * The frontier and the vertices reached in the next level are kept in lists,
+ * so a level costs only the rows of its frontier and the bitsets are cleared
+ * through the vertices that were set; a batch in a small component does not
+ * scan the whole graph. Only the distance sums and reached counts per search
+ * are kept, which is what closeness needs.
+ */
+
+final class MultiSourceBfs {
+
+    static final int SOURCES_PER_BATCH = 64;
+
+    private final int[] offsets;
+    private final int[] neighbors;
+
+    // one bit per search of the batch
+    private final long[] seen;
+    private final long[] visit;
+    private final long[] next;
+
+    private int[] frontier;
+    private int[] nextFrontier;
+    private final int[] touched;
+    private final int[] seenVertices;
+
+    private final int[] reached = new int[SOURCES_PER_BATCH];
+    private final long[] distanceSum = new long[SOURCES_PER_BATCH];
+
+    MultiSourceBfs(CsrFriendGraph graph) {
+        int n = graph.size();
+        this.offsets = graph.offsets();
+        this.neighbors = graph.neighbors();
+        this.seen = new long[n];
+        this.visit = new long[n];
+        this.next = new long[n];
+        this.frontier = new int[n];
+        this.nextFrontier = new int[n];
+        this.touched = new int[n];
+        this.seenVertices = new int[n];
+    }
+
+    /**
+     * Run one BFS from each of count sources at once.
+     *
+     * @param sources Dense indices of the sources, distinct within the batch.
+     * @param first   Position of the first source in sources.
+     * @param count   Number of sources, at most SOURCES_PER_BATCH.
+     */
+    void run(int[] sources, int first, int count) {
+
+        if (count < 1 || count > SOURCES_PER_BATCH)
+            throw new IllegalArgumentException("Count must be between 1 and " + SOURCES_PER_BATCH);
+
+        int frontierSize = 0;
+        int numSeen = 0;
+        for (int i = 0; i < count; i++) {
+            int source = sources[first + i];
+            seen[source] = 1L << i;
+            visit[source] = 1L << i;
+            frontier[frontierSize++] = source;
+            seenVertices[numSeen++] = source;
+            reached[i] = 1;
+            distanceSum[i] = 0;
+        }
+
+        for (int level = 1; frontierSize > 0; level++) {
+            // push every frontier bitset to the neighbors
+            int numTouched = 0;
+            for (int k = 0; k < frontierSize; k++) {
+                int v = frontier[k];
+                long bits = visit[v];
+                visit[v] = 0;
+                for (int i = offsets[v]; i < offsets[v + 1]; i++) {
+                    int w = neighbors[i];
+                    if (next[w] == 0)
+                        touched[numTouched++] = w;
+                    next[w] |= bits;
+                }
+            }
+
+            // keep only the searches that reach a vertex for the first time
+            int nextSize = 0;
+            for (int k = 0; k < numTouched; k++) {
+                int w = touched[k];
+                long discovered = next[w] & ~seen[w];
+                next[w] = 0;
+                if (discovered == 0)
+                    continue;
+                if (seen[w] == 0)
+                    seenVertices[numSeen++] = w;
+                seen[w] |= discovered;
+                visit[w] = discovered;
+                nextFrontier[nextSize++] = w;
+                while (discovered != 0) {
+                    int search = Long.numberOfTrailingZeros(discovered);
+                    discovered &= discovered - 1;
+                    reached[search]++;
+                    distanceSum[search] += level;
+                }
+            }
+
+            int[] swap = frontier;
+            frontier = nextFrontier;
+            nextFrontier = swap;
+            frontierSize = nextSize;
+        }
+
+        for (int k = 0; k < numSeen; k++) {
+            seen[seenVertices[k]] = 0;
+        }
+    }
+
+    /* Number of vertices reached by the i-th search of the last batch, including its source. */
+    int reached(int i) {
+        return reached[i];
+    }
+
+    /* Sum of the distances from the source of the i-th search of the last batch. */
+    long distanceSum(int i) {
+        return distanceSum[i];
+    }
+
+}
@@ -0,0 +1,36 @@
+package graph;
+
+/*
+ * A person suggested as a new friend, with the score it was ranked by and the
+ * number of friends it shares with the person it was suggested to.
+ */
+public final class Recommendation {
+
+    private final int value;
+    private final double score;
+    private final int commonFriends;
+
+    public Recommendation(int value, double score, int commonFriends) {
+        this.value = value;
+        this.score = score;
+        this.commonFriends = commonFriends;
+    }
+
+    public int getValue() {
+        return value;
+    }
+
+    public double getScore() {
+        return score;
+    }
+
+    public int getCommonFriends() {
+        return commonFriends;
+    }
+
+    @Override
+    public String toString() {
+        return value + " (score " + score + ", common friends " + commonFriends + ")";
+    }
+
+}
@@ -0,0 +1,66 @@
+package graph;
+
+/*
+ * A RecommendationSink that streams every person's recommendations to a text
+ * file, one line per person:
+ *
+ *   person<TAB>candidate:score<TAB>candidate:score...
+ *
+ * Each thread formats its line into its own StringBuilder and only the write of
+ * the finished line is synchronized. Persons without recommendations are
+ * skipped. Lines are written in the order the workers finish.
+ */
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class RecommendationFileSink implements RecommendationSink, Closeable {
+
+    private final BufferedWriter writer;
+
+    private final ThreadLocal<StringBuilder> lines = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder();
+        }
+    };
+
+    public RecommendationFileSink(Path path) throws IOException {
+        this.writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void accept(int person, int[] candidates, double[] scores, int count) {
+
+        if (count == 0)
+            return;
+
+        StringBuilder line = lines.get();
+        line.setLength(0);
+        line.append(person);
+        for (int k = 0; k < count; k++) {
+            line.append('\t').append(candidates[k]).append(':').append(scores[k]);
+        }
+        line.append('\n');
+
+        synchronized (writer) {
+            try {
+                writer.append(line);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (writer) {
+            writer.close();
+        }
+    }
+
+}
@@ -0,0 +1,16 @@
+package graph;
+
+/*
+ * The ways a friend of friend candidate can be scored for a person.
+ *
+ * COMMON_NEIGHBORS - number of friends the person and the candidate share.
+ * ADAMIC_ADAR      - sum of 1 / log(degree) over the shared friends, so friends
+ *                    with few connections count more than hubs.
+ * JACCARD          - shared friends divided by the size of the union of both
+ *                    friend lists.
+ */
+public enum RecommendationScore {
+
+    COMMON_NEIGHBORS, ADAMIC_ADAR, JACCARD
+
+}
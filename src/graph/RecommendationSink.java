@@ -0,0 +1,17 @@
+package graph;
+
+/*
+ * Receives the ranked friend recommendations of one person during a batch job
+ * over all persons. It is called from several threads at once, and the arrays
+ * are reused by the calling thread after accept() returns, so copy what needs
+ * to be kept.
+ */
+public interface RecommendationSink {
+
+    /*
+     * The first count entries of candidates and scores are the recommended
+     * friend ids and their scores, best first.
+     */
+    public void accept(int person, int[] candidates, double[] scores, int count);
+
+}
@@ -0,0 +1,283 @@
+package graph;
+
+/*
+ * Point to point shortest friend chains with a bidirectional BFS over a
+ * CsrFriendGraph.
+ *
+ * A forward search from the first friend follows the edges, a backward search
+ * from the last friend follows the reversed edges (the rows of the transpose).
+ * Each step expands one whole level of the side whose frontier is smaller, so
+ * both searches stay near the two friends instead of covering the graph. When a
+ * level reaches a vertex labeled by the other side, the level is finished and
+ * the shortest distance is the best of all the edges that joined the two sides
+ * in it; every shortest chain crosses exactly one of these edges.
+ *
+ * The chains are rebuilt from the joining edges by following the distance
+ * labels back to the first friend and on to the last friend. The labels live in
+ * arrays that are reset lazily with an epoch stamp, so a query allocates only
+ * its result.
+ *
+ * One instance holds the scratch state of one thread for all of its queries;
+ * forThread() returns the calling thread's instance. As in FriendRecommender the
+ * graph is passed to every query and dropped when it returns, so the scratch
+ * state never keeps a graph alive, and the arrays only grow when a larger graph
+ * is queried.
+ */
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+final class ShortestPathSearch {
+
+    // scratch state of each thread, shared by every graph the thread queries
+    private static final ThreadLocal<ShortestPathSearch> THREAD_SCRATCH = new ThreadLocal<ShortestPathSearch>() {
+        @Override
+        protected ShortestPathSearch initialValue() {
+            return new ShortestPathSearch();
+        }
+    };
+
+    // rows of the graph being queried, set only during a query
+    private int[] offsets;
+    private int[] neighbors;
+    private int[] reverseOffsets;
+    private int[] reverseNeighbors;
+
+    // distance labels of the forward and the backward search, valid when stamped
+    private int[] forwardStamp = new int[0];
+    private int[] forwardDistance = new int[0];
+    private int[] backwardStamp = new int[0];
+    private int[] backwardDistance = new int[0];
+    private int epoch;
+
+    private int[] forwardQueue = new int[0];
+    private int[] backwardQueue = new int[0];
+
+    // edges joining the two searches on shortest chains, as pairs from -> to
+    private int[] joins = new int[16];
+    private int numJoins;
+
+    private ShortestPathSearch() {
+    }
+
+    /* The scratch state of the calling thread. */
+    static ShortestPathSearch forThread() {
+        return THREAD_SCRATCH.get();
+    }
+
+    /*
+     * Takes the rows of the graph for one query and grows the per vertex arrays
+     * to its size. New arrays start unstamped, and the epoch only ever rises, so
+     * the labels left by another graph are never mistaken for the current query's.
+     */
+    private void attach(CsrFriendGraph graph) {
+        CsrFriendGraph transpose = graph.transpose();
+        offsets = graph.offsets();
+        neighbors = graph.neighbors();
+        reverseOffsets = transpose.offsets();
+        reverseNeighbors = transpose.neighbors();
+        int n = graph.size();
+        if (forwardStamp.length >= n)
+            return;
+        forwardStamp = new int[n];
+        forwardDistance = new int[n];
+        backwardStamp = new int[n];
+        backwardDistance = new int[n];
+        forwardQueue = new int[n];
+        backwardQueue = new int[n];
+    }
+
+    private void detach() {
+        offsets = null;
+        neighbors = null;
+        reverseOffsets = null;
+        reverseNeighbors = null;
+    }
+
+    /**
+     * Find the length of the shortest chain from one vertex to another.
+     *
+     * @param graph The graph to search.
+     * @param from  Dense index of the first vertex.
+     * @param to    Dense index of the last vertex.
+     * @return int The number of edges on a shortest chain, or -1 if there is none.
+     */
+    int distance(CsrFriendGraph graph, int from, int to) {
+        attach(graph);
+        try {
+            return search(from, to);
+        } finally {
+            detach();
+        }
+    }
+
+    /*
+     * The bidirectional BFS behind distance() and paths(), leaving the labels and
+     * the joining edges of the query behind.
+     */
+    private int search(int from, int to) {
+
+        if (++epoch == Integer.MAX_VALUE) {
+            Arrays.fill(forwardStamp, 0);
+            Arrays.fill(backwardStamp, 0);
+            epoch = 1;
+        }
+        numJoins = 0;
+        if (from == to)
+            return 0;
+
+        forwardStamp[from] = epoch;
+        forwardDistance[from] = 0;
+        forwardQueue[0] = from;
+        backwardStamp[to] = epoch;
+        backwardDistance[to] = 0;
+        backwardQueue[0] = to;
+        int forwardHead = 0;
+        int forwardTail = 1;
+        int backwardHead = 0;
+        int backwardTail = 1;
+        int best = Integer.MAX_VALUE;
+
+        while (forwardHead < forwardTail && backwardHead < backwardTail) {
+            if (forwardTail - forwardHead <= backwardTail - backwardHead) {
+                int levelEnd = forwardTail;
+                for (; forwardHead < levelEnd; forwardHead++) {
+                    int curr = forwardQueue[forwardHead];
+                    int nextDistance = forwardDistance[curr] + 1;
+                    for (int i = offsets[curr]; i < offsets[curr + 1]; i++) {
+                        int next = neighbors[i];
+                        if (backwardStamp[next] == epoch)
+                            best = join(curr, next, nextDistance + backwardDistance[next], best);
+                        if (forwardStamp[next] != epoch) {
+                            forwardStamp[next] = epoch;
+                            forwardDistance[next] = nextDistance;
+                            forwardQueue[forwardTail++] = next;
+                        }
+                    }
+                }
+            } else {
+                int levelEnd = backwardTail;
+                for (; backwardHead < levelEnd; backwardHead++) {
+                    int curr = backwardQueue[backwardHead];
+                    int nextDistance = backwardDistance[curr] + 1;
+                    for (int i = reverseOffsets[curr]; i < reverseOffsets[curr + 1]; i++) {
+                        int previous = reverseNeighbors[i];
+                        if (forwardStamp[previous] == epoch)
+                            best = join(previous, curr, nextDistance + forwardDistance[previous], best);
+                        if (backwardStamp[previous] != epoch) {
+                            backwardStamp[previous] = epoch;
+                            backwardDistance[previous] = nextDistance;
+                            backwardQueue[backwardTail++] = previous;
+                        }
+                    }
+                }
+            }
+            if (best != Integer.MAX_VALUE)
+                return best;
+        }
+        return -1;
+    }
+
+    /*
+     * Records the edge from -> to if the chain through it is at least as short as
+     * the best found so far, and returns the new best length.
+     */
+    private int join(int from, int to, int length, int best) {
+        if (length > best)
+            return best;
+        if (length < best)
+            numJoins = 0;
+        if (2 * numJoins + 2 > joins.length)
+            joins = Arrays.copyOf(joins, 2 * joins.length);
+        joins[2 * numJoins] = from;
+        joins[2 * numJoins + 1] = to;
+        numJoins++;
+        return length;
+    }
+
+    /**
+     * Find up to the given number of shortest chains from one vertex to another.
+     *
+     * @param graph  The graph to search.
+     * @param from   Dense index of the first vertex.
+     * @param to     Dense index of the last vertex.
+     * @param number Largest number of chains to return.
+     * @return List<int[]> The chains as dense indices from first to last, empty if
+     *         there is none.
+     */
+    List<int[]> paths(CsrFriendGraph graph, int from, int to, int number) {
+
+        if (number < 1)
+            throw new IllegalArgumentException("Number must be 1 or greater");
+
+        attach(graph);
+        try {
+            return paths(from, to, number);
+        } finally {
+            detach();
+        }
+    }
+
+    private List<int[]> paths(int from, int to, int number) {
+
+        List<int[]> paths = new ArrayList<int[]>();
+        int length = search(from, to);
+        if (length < 0)
+            return paths;
+        if (length == 0) {
+            paths.add(new int[] { from });
+            return paths;
+        }
+
+        int[] path = new int[length + 1];
+        for (int j = 0; j < numJoins && paths.size() < number; j++) {
+            int head = joins[2 * j];
+            int tail = joins[2 * j + 1];
+            int position = forwardDistance[head];
+            path[position] = head;
+            path[position + 1] = tail;
+            prefixes(path, position, position + 1, paths, number);
+        }
+        return paths;
+    }
+
+    /*
+     * Fills path[0..position) with every chain of forward labels leading to
+     * path[position], then completes each with the suffixes after path[join].
+     */
+    private void prefixes(int[] path, int position, int join, List<int[]> paths, int number) {
+        if (position == 0) {
+            suffixes(path, join, paths, number);
+            return;
+        }
+        int curr = path[position];
+        for (int i = reverseOffsets[curr]; i < reverseOffsets[curr + 1] && paths.size() < number; i++) {
+            int previous = reverseNeighbors[i];
+            if (forwardStamp[previous] == epoch && forwardDistance[previous] == position - 1) {
+                path[position - 1] = previous;
+                prefixes(path, position - 1, join, paths, number);
+            }
+        }
+    }
+
+    /*
+     * Fills path after position with every chain of backward labels leading on
+     * from path[position] to the last vertex.
+     */
+    private void suffixes(int[] path, int position, List<int[]> paths, int number) {
+        if (position == path.length - 1) {
+            paths.add(path.clone());
+            return;
+        }
+        int curr = path[position];
+        int remaining = path.length - 2 - position;
+        for (int i = offsets[curr]; i < offsets[curr + 1] && paths.size() < number; i++) {
+            int next = neighbors[i];
+            if (backwardStamp[next] == epoch && backwardDistance[next] == remaining) {
+                path[position + 1] = next;
+                suffixes(path, position + 1, paths, number);
+            }
+        }
+    }
+
+}
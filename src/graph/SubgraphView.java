@@ -0,0 +1,582 @@
+package graph;
+
+/*
+ * A read-only FriendGraph over part of another graph: the friends of a given
+ * set, or the ego network of every friend within a number of friendships of one
+ * friend, together with all the friendships among them.
+ *
+ * Creating a view copies nothing. The vertex set is resolved the first time it
+ * is needed, as a sorted array of friend ids (a BFS over the parent for an ego
+ * network), and one FriendNode per member is created to hold the values measured
+ * on the view. The edges of such a node are a view over the edges of the
+ * parent's node that skips friends outside the set, so getFriends(),
+ * exportGraph(), adjacencyString() and degree centrality read the parent's
+ * adjacency directly. Once resolved the vertex set stays fixed; friendships the
+ * parent gains among the members show through.
+ *
+ * The analytics need the compressed arrays, so each measure builds a
+ * CsrFriendGraph of only the members and their friendships among each other,
+ * runs on it and copies the values back into the view's nodes. That costs the
+ * size of the subgraph, not of the parent. The values on the parent's nodes are
+ * never changed.
+ */
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+
+final class SubgraphView implements FriendGraph {
+
+    private final FriendGraph parent;
+    // the friend ids given for an induced view, null for an ego network
+    private final int[] given;
+    private final int center;
+    private final int radius;
+
+    // member friend ids in ascending order, resolved on first use
+    private volatile int[] ids;
+    private Node[] nodes;
+    private final Map<Integer, FriendNode> friends = new FriendMap();
+
+    private SubgraphView(FriendGraph parent, int[] given, int center, int radius) {
+        this.parent = parent;
+        this.given = given;
+        this.center = center;
+        this.radius = radius;
+    }
+
+    /**
+     * Create a view of the given friends and the friendships among them.
+     *
+     * @param parent  The graph to view.
+     * @param friends The friend ids to keep; duplicates are ignored.
+     * @return SubgraphView The induced subgraph.
+     */
+    static SubgraphView induced(FriendGraph parent, int[] friends) {
+        Map<Integer, FriendNode> source = parent.getFriends();
+        for (int friend : friends) {
+            if (!source.containsKey(friend))
+                throw new IllegalArgumentException("Person " + friend + " is not in this graph");
+        }
+        return new SubgraphView(parent, friends.clone(), -1, -1);
+    }
+
+    /**
+     * Create a view of every friend within radius friendships of the center, and
+     * the friendships among them. The friendships are followed in their
+     * direction.
+     *
+     * @param parent The graph to view.
+     * @param center The friend id at the middle of the ego network.
+     * @param radius Largest number of friendships from the center, 0 or greater.
+     * @return SubgraphView The ego network.
+     */
+    static SubgraphView egoNetwork(FriendGraph parent, int center, int radius) {
+        if (radius < 0)
+            throw new IllegalArgumentException("Radius must be 0 or greater.");
+        if (!parent.getFriends().containsKey(center))
+            throw new IllegalArgumentException("Person " + center + " is not in this graph");
+        return new SubgraphView(parent, null, center, radius);
+    }
+
+    /*
+     * Resolves the vertex set and creates the view's nodes, once.
+     */
+    private int[] ids() {
+        int[] result = ids;
+        if (result == null) {
+            synchronized (this) {
+                result = ids;
+                if (result == null) {
+                    result = given != null ? distinctSorted(given) : reach();
+                    Map<Integer, FriendNode> source = parent.getFriends();
+                    Node[] created = new Node[result.length];
+                    for (int k = 0; k < result.length; k++) {
+                        created[k] = new Node(source.get(result[k]));
+                    }
+                    nodes = created;
+                    ids = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static int[] distinctSorted(int[] values) {
+        int[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int count = 0;
+        for (int k = 0; k < sorted.length; k++) {
+            if (count == 0 || sorted[count - 1] != sorted[k])
+                sorted[count++] = sorted[k];
+        }
+        return Arrays.copyOf(sorted, count);
+    }
+
+    /*
+     * The friend ids within radius friendships of the center, by a BFS that stops
+     * at the last level.
+     */
+    private int[] reach() {
+        Map<Integer, FriendNode> source = parent.getFriends();
+        Set<Integer> seen = new HashSet<Integer>();
+        ArrayDeque<FriendNode> level = new ArrayDeque<FriendNode>();
+        seen.add(center);
+        level.add(source.get(center));
+        for (int depth = 0; depth < radius && !level.isEmpty(); depth++) {
+            ArrayDeque<FriendNode> next = new ArrayDeque<FriendNode>();
+            for (FriendNode node : level) {
+                for (FriendNode friend : node.getEdges()) {
+                    if (seen.add(friend.getValue()))
+                        next.add(friend);
+                }
+            }
+            level = next;
+        }
+        int[] result = new int[seen.size()];
+        int count = 0;
+        for (int id : seen) {
+            result[count++] = id;
+        }
+        Arrays.sort(result);
+        return result;
+    }
+
+    /*
+     * Position of the friend id in the vertex set, or -1 if it is not a member.
+     */
+    private int indexOf(int id) {
+        int index = Arrays.binarySearch(ids(), id);
+        return index < 0 ? -1 : index;
+    }
+
+    /*
+     * The view's node of the given person, who must be a member.
+     */
+    private Node nodeOf(FriendNode person) {
+        int k = indexOf(person.getValue());
+        if (k < 0)
+            throw new IllegalArgumentException("Person is not in this graph");
+        return nodes[k];
+    }
+
+    /*
+     * A compressed copy of the members and the friendships among them, carrying
+     * the values measured on the view so far.
+     */
+    private CsrFriendGraph compact() {
+        return CsrFriendGraph.from(this);
+    }
+
+    /*
+     * Copies the values measured on the compressed copy into the view's nodes. The
+     * copy has the members in the same ascending order.
+     */
+    private void copyBack(CsrFriendGraph csr) {
+        for (int k = 0; k < nodes.length; k++) {
+            nodes[k].copyCentralities(csr.nodeAt(k));
+        }
+    }
+
+    @Override
+    public Map<Integer, FriendNode> getFriends() {
+        return friends;
+    }
+
+    @Override
+    public void addVertex(int num) {
+        throw new UnsupportedOperationException("SubgraphView is read-only");
+    }
+
+    @Override
+    public void addEdge(int from, int to) {
+        throw new UnsupportedOperationException("SubgraphView is read-only");
+    }
+
+    @Override
+    public void addEdge(int from, int to, float weight) {
+        throw new UnsupportedOperationException("SubgraphView is read-only");
+    }
+
+    @Override
+    public void addEdgeAndUpdateCentrality(int from, int to) {
+        throw new UnsupportedOperationException("SubgraphView is read-only");
+    }
+
+    @Override
+    public HashMap<Integer, HashSet<Integer>> exportGraph() {
+        int[] members = ids();
+        HashMap<Integer, HashSet<Integer>> graph = new HashMap<Integer, HashSet<Integer>>();
+        for (int k = 0; k < members.length; k++) {
+            HashSet<Integer> values = new HashSet<Integer>();
+            for (FriendNode friend : nodes[k].getEdges()) {
+                values.add(friend.getValue());
+            }
+            graph.put(members[k], values);
+        }
+        return graph;
+    }
+
+    @Override
+    public String adjacencyString() {
+        int[] members = ids();
+        StringBuilder s = new StringBuilder();
+        int numEdges = 0;
+        for (int k = 0; k < members.length; k++) {
+            s.append("\n\t" + members[k] + ": ");
+            for (FriendNode friend : nodes[k].getEdges()) {
+                s.append(friend.getValue() + ", ");
+                numEdges++;
+            }
+        }
+        return "Adjacency list (size " + members.length + "+" + numEdges + " integers):" + s;
+    }
+
+    /**
+     * Return the ego networks of the most influential members by degree within
+     * this view, as views over this view.
+     *
+     * @param number This is the number of top N influential subgraphs to return.
+     * @return List<FriendGraph> The ego network of radius 1 of each influential
+     *         member.
+     */
+    @Override
+    public List<FriendGraph> exportTopDegreeGraphs(int number) {
+
+        number--;
+        if (number >= ids().length || number < 0)
+            throw new IllegalArgumentException("Number must be less than num of vertices");
+
+        List<FriendGraph> graphs = new LinkedList<FriendGraph>();
+        for (FriendNode vertex : TopKSelector.select(nodes, CentralityType.DEGREE, number + 1)) {
+            graphs.add(egoNetwork(vertex.getValue(), 1));
+        }
+        return graphs;
+    }
+
+    @Override
+    public FriendGraph subgraph(int[] friends) {
+        return induced(this, friends);
+    }
+
+    @Override
+    public FriendGraph egoNetwork(int friend, int radius) {
+        return egoNetwork(this, friend, radius);
+    }
+
+    @Override
+    public HashMap<Integer, ArrayList<Integer>> suggestFriendsOfFriends(FriendNode person) {
+        nodeOf(person);
+        CsrFriendGraph csr = compact();
+        return csr.suggestFriendsOfFriends(csr.getFriends().get(person.getValue()));
+    }
+
+    @Override
+    public List<Recommendation> recommendFriends(FriendNode person, int number, RecommendationScore score) {
+        nodeOf(person);
+        CsrFriendGraph csr = compact();
+        return csr.recommendFriends(csr.getFriends().get(person.getValue()), number, score);
+    }
+
+    @Override
+    public void recommendFriendsForAll(int number, RecommendationScore score, RecommendationSink sink,
+            ForkJoinPool pool) {
+        compact().recommendFriendsForAll(number, score, sink, pool);
+    }
+
+    @Override
+    public int distance(int from, int to) {
+        return compact().distance(from, to);
+    }
+
+    @Override
+    public List<List<Integer>> shortestPaths(int from, int to, int number) {
+        return compact().shortestPaths(from, to, number);
+    }
+
+    @Override
+    public void measureAndSetClosenessCentrality() {
+        CsrFriendGraph csr = compact();
+        csr.measureAndSetClosenessCentrality();
+        copyBack(csr);
+    }
+
+    @Override
+    public void measureAndSetClosenessCentrality(ExecutorService executor) {
+        CsrFriendGraph csr = compact();
+        csr.measureAndSetClosenessCentrality(executor);
+        copyBack(csr);
+    }
+
+    @Override
+    public void measureAndSetWeightedClosenessCentrality() {
+        CsrFriendGraph csr = compact();
+        csr.measureAndSetWeightedClosenessCentrality();
+        copyBack(csr);
+    }
+
+    @Override
+    public int measureAndSetCoreness(ExecutorService executor) {
+        CsrFriendGraph csr = compact();
+        int degeneracy = csr.measureAndSetCoreness(executor);
+        copyBack(csr);
+        return degeneracy;
+    }
+
+    @Override
+    public int[] degeneracyOrder() {
+        return compact().degeneracyOrder();
+    }
+
+    @Override
+    public ConnectedComponents findConnectedComponents() {
+        return compact().findConnectedComponents();
+    }
+
+    @Override
+    public Communities findCommunities(CommunityAlgorithm algorithm, ExecutorService executor) {
+        return compact().findCommunities(algorithm, executor);
+    }
+
+    @Override
+    public TriangleCounts countTriangles(ExecutorService executor) {
+        return compact().countTriangles(executor);
+    }
+
+    @Override
+    public void measureAndSetApproximateClosenessCentrality(int pivots) {
+        CsrFriendGraph csr = compact();
+        csr.measureAndSetApproximateClosenessCentrality(pivots);
+        copyBack(csr);
+    }
+
+    @Override
+    public void measureAndSetBetweennessCentrality() {
+        CsrFriendGraph csr = compact();
+        csr.measureAndSetBetweennessCentrality();
+        copyBack(csr);
+    }
+
+    @Override
+    public int measureAndSetPageRank(ExecutorService executor) {
+        CsrFriendGraph csr = compact();
+        int iterations = csr.measureAndSetPageRank(executor);
+        copyBack(csr);
+        return iterations;
+    }
+
+    @Override
+    public int measureAndSetEigenvectorCentrality(ExecutorService executor) {
+        CsrFriendGraph csr = compact();
+        int iterations = csr.measureAndSetEigenvectorCentrality(executor);
+        copyBack(csr);
+        return iterations;
+    }
+
+    @Override
+    public int measureAndSetKatzCentrality(double alpha, ExecutorService executor) {
+        CsrFriendGraph csr = compact();
+        int iterations = csr.measureAndSetKatzCentrality(alpha, executor);
+        copyBack(csr);
+        return iterations;
+    }
+
+    @Override
+    public void measureAndSetBetweennessCentrality(ExecutorService executor) {
+        CsrFriendGraph csr = compact();
+        csr.measureAndSetBetweennessCentrality(executor);
+        copyBack(csr);
+    }
+
+    @Override
+    public void measureAndSetWeightedBetweennessCentrality() {
+        CsrFriendGraph csr = compact();
+        csr.measureAndSetWeightedBetweennessCentrality();
+        copyBack(csr);
+    }
+
+    @Override
+    public double measureAndSetApproximateBetweennessCentrality(int samples, double delta) {
+        CsrFriendGraph csr = compact();
+        double bound = csr.measureAndSetApproximateBetweennessCentrality(samples, delta);
+        copyBack(csr);
+        return bound;
+    }
+
+    @Override
+    public double measureAndSetApproximateBetweennessCentrality(double epsilon, double delta) {
+        CsrFriendGraph csr = compact();
+        double bound = csr.measureAndSetApproximateBetweennessCentrality(epsilon, delta);
+        copyBack(csr);
+        return bound;
+    }
+
+    @Override
+    public List<FriendNode> returnTopCentralityFor(int number, String type) {
+        return returnTopCentralityFor(number, CentralityType.fromName(type));
+    }
+
+    @Override
+    public List<FriendNode> returnTopCentralityFor(int number, CentralityType type) {
+
+        if (number > ids().length || number < 1)
+            throw new IllegalArgumentException("Number must be less than num of vertices");
+
+        return TopKSelector.select(nodes, type, number);
+    }
+
+    /*
+     * Friend node of a member, whose edges are the parent node's edges to other
+     * members.
+     */
+    private class Node extends FriendNode {
+
+        private final FriendNode original;
+
+        Node(FriendNode original) {
+            super(original.getValue(), new MemberSet(original));
+            this.original = original;
+        }
+
+        @Override
+        public float getWeight(FriendNode node) {
+            if (!getEdges().contains(node))
+                throw new IllegalArgumentException("Not a friend of " + getValue());
+            return original.getWeight(((Node) node).original);
+        }
+
+        @Override
+        boolean hasWeights() {
+            return original.hasWeights();
+        }
+    }
+
+    /*
+     * Read-only view of the friends of one member that are members themselves,
+     * backed by the edges of the parent's node.
+     */
+    private class MemberSet extends AbstractSet<FriendNode> {
+
+        private final FriendNode original;
+
+        MemberSet(FriendNode original) {
+            this.original = original;
+        }
+
+        @Override
+        public int size() {
+            int size = 0;
+            for (FriendNode friend : original.getEdges()) {
+                if (indexOf(friend.getValue()) >= 0)
+                    size++;
+            }
+            return size;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof FriendNode))
+                return false;
+            int k = indexOf(((FriendNode) o).getValue());
+            return k >= 0 && nodes[k] == o && original.getEdges().contains(nodes[k].original);
+        }
+
+        @Override
+        public Iterator<FriendNode> iterator() {
+            final Iterator<FriendNode> edges = original.getEdges().iterator();
+            return new Iterator<FriendNode>() {
+                private FriendNode next = advance();
+
+                private FriendNode advance() {
+                    while (edges.hasNext()) {
+                        int k = indexOf(edges.next().getValue());
+                        if (k >= 0)
+                            return nodes[k];
+                    }
+                    return null;
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return next != null;
+                }
+
+                @Override
+                public FriendNode next() {
+                    if (next == null)
+                        throw new NoSuchElementException();
+                    FriendNode result = next;
+                    next = advance();
+                    return result;
+                }
+            };
+        }
+    }
+
+    /*
+     * Read-only map from member friend id to the view's FriendNode.
+     */
+    private class FriendMap extends AbstractMap<Integer, FriendNode> {
+
+        @Override
+        public int size() {
+            return ids().length;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public FriendNode get(Object key) {
+            if (!(key instanceof Integer))
+                return null;
+            int k = indexOf((Integer) key);
+            return k < 0 ? null : nodes[k];
+        }
+
+        @Override
+        public Set<Map.Entry<Integer, FriendNode>> entrySet() {
+            return new AbstractSet<Map.Entry<Integer, FriendNode>>() {
+                @Override
+                public int size() {
+                    return ids().length;
+                }
+
+                @Override
+                public Iterator<Map.Entry<Integer, FriendNode>> iterator() {
+                    final int[] members = ids();
+                    return new Iterator<Map.Entry<Integer, FriendNode>>() {
+                        private int k = 0;
+
+                        @Override
+                        public boolean hasNext() {
+                            return k < members.length;
+                        }
+
+                        @Override
+                        public Map.Entry<Integer, FriendNode> next() {
+                            if (!hasNext())
+                                throw new NoSuchElementException();
+                            FriendNode node = nodes[k];
+                            return new AbstractMap.SimpleImmutableEntry<Integer, FriendNode>(members[k++], node);
+                        }
+                    };
+                }
+            };
+        }
+    }
+
+}
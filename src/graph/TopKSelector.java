@@ -0,0 +1,218 @@
+package graph;
+
+/*
+ * Selects the vertices holding the N largest distinct scores without sorting
+ * every score.
+ *
+ * A bounded min-heap of at most N distinct scores is kept in a double[], with
+ * the same scores in a primitive open-addressing hash set. Each score is first
+ * compared to the smallest kept score, and only larger scores are looked up in
+ * the set and pushed into the heap, so a pass costs O(V log N) even when the
+ * scores arrive in ascending order. The smallest kept score is
+ * the threshold; the positions holding a score at or above it are collected and
+ * only those are sorted. No score is boxed.
+ *
+ * Ties are deterministic: vertices with the same score keep their order in the
+ * scores array.
+ */
+import java.util.ArrayList;
+import java.util.List;
+
+final class TopKSelector {
+
+    private TopKSelector() {
+    }
+
+    /**
+     * Return the friend nodes holding the given number of largest distinct scores
+     * of the centrality type, ordered by score descending.
+     *
+     * @param nodes  The friend nodes to rank.
+     * @param type   The centrality type to rank by.
+     * @param levels Number of distinct score values to return.
+     * @return List<FriendNode> The friend nodes of the top score values.
+     */
+    static List<FriendNode> select(FriendNode[] nodes, CentralityType type, int levels) {
+
+        double[] scores = new double[nodes.length];
+        for (int v = 0; v < nodes.length; v++) {
+            scores[v] = type.scoreOf(nodes[v]);
+        }
+
+        int[] positions = selectTopLevels(scores, levels);
+        List<FriendNode> result = new ArrayList<FriendNode>(positions.length);
+        for (int position : positions) {
+            result.add(nodes[position]);
+        }
+        return result;
+    }
+
+    /**
+     * Return the positions of the scores that belong to the given number of
+     * largest distinct values, ordered by score descending and then by position.
+     *
+     * @param scores The score of each position.
+     * @param levels Number of distinct score values to return.
+     * @return int[] The selected positions.
+     */
+    static int[] selectTopLevels(double[] scores, int levels) {
+
+        if (levels <= 0 || scores.length == 0)
+            return new int[0];
+
+        // bounded min-heap of the largest distinct scores seen so far
+        double[] heap = new double[Math.min(levels, scores.length)];
+        ScoreSet kept = new ScoreSet(heap.length);
+        int size = 0;
+        for (double score : scores) {
+            if (size == heap.length && score <= heap[0])
+                continue;
+            if (!kept.add(score))
+                continue;
+            if (size < heap.length) {
+                heap[size] = score;
+                siftUp(heap, size++);
+            } else {
+                kept.remove(heap[0]);
+                heap[0] = score;
+                siftDown(heap, size, 0);
+            }
+        }
+        double threshold = heap[0];
+
+        int count = 0;
+        for (double score : scores) {
+            if (score >= threshold)
+                count++;
+        }
+        int[] positions = new int[count];
+        count = 0;
+        for (int v = 0; v < scores.length; v++) {
+            if (scores[v] >= threshold)
+                positions[count++] = v;
+        }
+
+        sortByScore(positions, scores);
+        return positions;
+    }
+
+    /*
+     * Stable merge sort of the positions by descending score. The positions are
+     * collected in ascending order, so equal scores stay in position order.
+     */
+    static void sortByScore(int[] positions, double[] scores) {
+        if (positions.length < 2)
+            return;
+        int[] buffer = new int[positions.length];
+        for (int width = 1; width < positions.length; width *= 2) {
+            for (int low = 0; low < positions.length - width; low += 2 * width) {
+                int middle = low + width;
+                int high = Math.min(low + 2 * width, positions.length);
+                int i = low;
+                int j = middle;
+                int k = low;
+                while (i < middle && j < high) {
+                    buffer[k++] = scores[positions[j]] > scores[positions[i]] ? positions[j++] : positions[i++];
+                }
+                while (i < middle) {
+                    buffer[k++] = positions[i++];
+                }
+                while (j < high) {
+                    buffer[k++] = positions[j++];
+                }
+                System.arraycopy(buffer, low, positions, low, high - low);
+            }
+        }
+    }
+
+    private static void siftUp(double[] heap, int index) {
+        double value = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (heap[parent] <= value)
+                break;
+            heap[index] = heap[parent];
+            index = parent;
+        }
+        heap[index] = value;
+    }
+
+    private static void siftDown(double[] heap, int size, int index) {
+        double value = heap[index];
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size)
+                break;
+            if (child + 1 < size && heap[child + 1] < heap[child])
+                child++;
+            if (value <= heap[child])
+                break;
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = value;
+    }
+
+    /*
+     * Set of the scores in the heap, by the bits of each score in a linear probing
+     * table at most half full. 0.0 and -0.0 are kept as the same score, as the
+     * heap compares them equal. Removal shifts the following entries of the probe
+     * run back, so no tombstones build up as the heap's root is replaced.
+     */
+    private static final class ScoreSet {
+
+        private final long[] keys;
+        private final boolean[] used;
+        private final int mask;
+
+        ScoreSet(int capacity) {
+            int length = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1) * 2;
+            this.keys = new long[length];
+            this.used = new boolean[length];
+            this.mask = length - 1;
+        }
+
+        /* Adds the score, returning false if it is already in the set. */
+        boolean add(double score) {
+            long key = keyOf(score);
+            int i = slotOf(key);
+            while (used[i]) {
+                if (keys[i] == key)
+                    return false;
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            used[i] = true;
+            return true;
+        }
+
+        void remove(double score) {
+            long key = keyOf(score);
+            int i = slotOf(key);
+            while (used[i] && keys[i] != key) {
+                i = (i + 1) & mask;
+            }
+            if (!used[i])
+                return;
+            // move back every later entry of the run whose home slot is not after the gap
+            for (int j = (i + 1) & mask; used[j]; j = (j + 1) & mask) {
+                int home = slotOf(keys[j]);
+                if (((j - home) & mask) >= ((j - i) & mask)) {
+                    keys[i] = keys[j];
+                    i = j;
+                }
+            }
+            used[i] = false;
+        }
+
+        private static long keyOf(double score) {
+            return Double.doubleToLongBits(score == 0 ? 0.0 : score);
+        }
+
+        private int slotOf(long key) {
+            long hash = key * 0x9E3779B97F4A7C15L;
+            return (int) (hash ^ (hash >>> 32)) & mask;
+        }
+    }
+
+}
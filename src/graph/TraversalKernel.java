@@ -0,0 +1,26 @@
+package graph;
+
+/*
+ * The breadth first search used by the closeness measures and distance queries.
+ */
+enum TraversalKernel {
+
+    /* Queue based BFS that scans every edge of every frontier vertex. */
+    TOP_DOWN {
+        @Override
+        BreadthFirstSearch newSearch(CsrFriendGraph graph) {
+            return new BfsEngine(graph);
+        }
+    },
+    /* Switches to bottom-up steps over a bitmap frontier while the frontier is large. */
+    DIRECTION_OPTIMIZING {
+        @Override
+        BreadthFirstSearch newSearch(CsrFriendGraph graph) {
+            return new DirectionOptimizingBfs(graph);
+        }
+    };
+
+    /* A new search with its own scratch arrays for the given graph. */
+    abstract BreadthFirstSearch newSearch(CsrFriendGraph graph);
+
+}
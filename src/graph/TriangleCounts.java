@@ -0,0 +1,230 @@
+package graph;
+
+/*
+ * The triangles of the undirected version of a CsrFriendGraph: for every friend
+ * the number of pairs of its friends that are friends themselves, the local
+ * clustering coefficient that follows from it, and the global transitivity.
+ *
+ * Every undirected edge is oriented from the endpoint of lower degree to the
+ * one of higher degree (ties by dense index), so each triangle is found exactly
+ * once, at its lowest ranked corner, and no oriented row is longer than
+ * O(sqrt(E)). For a vertex u and each of its oriented friends v the common
+ * oriented friends of u and v close a triangle. Short rows are intersected by
+ * merging the two sorted rows; when u has many oriented friends they are marked
+ * in a stamp array once and every row of v is checked against the marks, which
+ * costs the length of that row alone.
+ *
+ * The vertices u are split into blocks that the workers of an executor claim;
+ * a block that needs a stamp array allocates its own, so none outlives the call.
+ * The triangles of each corner are added with an AtomicLongArray, so the counts
+ * are the same whatever the number of workers.
+ */
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public final class TriangleCounts {
+
+    // vertices handled by one parallel task
+    private static final int VERTICES_PER_BLOCK = 1024;
+    // oriented rows longer than this are intersected with a stamp array
+    static final int STAMP_THRESHOLD = 32;
+
+    private final CsrFriendGraph graph;
+    private final int[] degree;
+    private final long[] triangles;
+    private final long total;
+
+    private TriangleCounts(CsrFriendGraph graph, int[] degree, long[] triangles, long total) {
+        this.graph = graph;
+        this.degree = degree;
+        this.triangles = triangles;
+        this.total = total;
+    }
+
+    /**
+     * Count the triangles of every vertex.
+     *
+     * @param graph    The graph to count in, ignoring edge directions.
+     * @param executor The executor running the workers, or null for the calling
+     *                 thread.
+     * @return TriangleCounts The counts.
+     */
+    static TriangleCounts count(CsrFriendGraph graph, ExecutorService executor) {
+
+        CsrFriendGraph undirected = graph.undirected();
+        final int n = undirected.size();
+        int[] offsets = undirected.offsets();
+        int[] neighbors = undirected.neighbors();
+        int[] degree = new int[n];
+        for (int v = 0; v < n; v++) {
+            degree[v] = offsets[v + 1] - offsets[v];
+        }
+
+        // keep the edges towards higher ranked friends; the rows stay sorted
+        final int[] outOffsets = new int[n + 1];
+        for (int u = 0; u < n; u++) {
+            int count = 0;
+            for (int i = offsets[u]; i < offsets[u + 1]; i++) {
+                if (ranksBelow(degree, u, neighbors[i]))
+                    count++;
+            }
+            outOffsets[u + 1] = outOffsets[u] + count;
+        }
+        final int[] out = new int[outOffsets[n]];
+        for (int u = 0, position = 0; u < n; u++) {
+            for (int i = offsets[u]; i < offsets[u + 1]; i++) {
+                if (ranksBelow(degree, u, neighbors[i]))
+                    out[position++] = neighbors[i];
+            }
+        }
+
+        final AtomicLongArray corners = new AtomicLongArray(n);
+        double total = Workers.sumBlocks(executor, n, VERTICES_PER_BLOCK, new Workers.Block() {
+            @Override
+            public double run(int start, int end) {
+                long found = 0;
+                // allocated by the first long row of the block and dropped with it
+                int[] stamps = null;
+                for (int u = start; u < end; u++) {
+                    int rowStart = outOffsets[u];
+                    int rowEnd = outOffsets[u + 1];
+                    int[] stamp = null;
+                    if (rowEnd - rowStart > STAMP_THRESHOLD) {
+                        if (stamps == null)
+                            stamps = new int[n];
+                        stamp = stamps;
+                        // the stamp of u is u + 1, so no array reset is needed
+                        for (int i = rowStart; i < rowEnd; i++) {
+                            stamp[out[i]] = u + 1;
+                        }
+                    }
+                    long atU = 0;
+                    for (int i = rowStart; i < rowEnd; i++) {
+                        int v = out[i];
+                        long atV = 0;
+                        if (stamp != null) {
+                            for (int j = outOffsets[v]; j < outOffsets[v + 1]; j++) {
+                                if (stamp[out[j]] == u + 1) {
+                                    corners.incrementAndGet(out[j]);
+                                    atV++;
+                                }
+                            }
+                        } else {
+                            int a = rowStart;
+                            int b = outOffsets[v];
+                            int bEnd = outOffsets[v + 1];
+                            while (a < rowEnd && b < bEnd) {
+                                if (out[a] < out[b]) {
+                                    a++;
+                                } else if (out[a] > out[b]) {
+                                    b++;
+                                } else {
+                                    corners.incrementAndGet(out[a]);
+                                    atV++;
+                                    a++;
+                                    b++;
+                                }
+                            }
+                        }
+                        if (atV > 0)
+                            corners.addAndGet(v, atV);
+                        atU += atV;
+                    }
+                    if (atU > 0)
+                        corners.addAndGet(u, atU);
+                    found += atU;
+                }
+                return found;
+            }
+        });
+
+        long[] triangles = new long[n];
+        for (int v = 0; v < n; v++) {
+            triangles[v] = corners.get(v);
+        }
+        return new TriangleCounts(graph, degree, triangles, (long) total);
+    }
+
+    /* True when u ranks below v: lower degree, or the same degree and a lower index. */
+    private static boolean ranksBelow(int[] degree, int u, int v) {
+        return degree[u] < degree[v] || (degree[u] == degree[v] && u < v);
+    }
+
+    /**
+     * Return the number of triangles in the graph.
+     *
+     * @return long The number of triangles.
+     */
+    public long total() {
+        return total;
+    }
+
+    /**
+     * Return the number of triangles a friend is a corner of, the number of pairs
+     * of its friends that are friends of each other.
+     *
+     * @param friend The friend id.
+     * @return long The number of triangles.
+     */
+    public long trianglesOf(int friend) {
+        return triangles[vertexOf(friend)];
+    }
+
+    /**
+     * Return the local clustering coefficient of a friend: the share of pairs of
+     * its friends that are friends of each other.
+     *
+     * @param friend The friend id.
+     * @return double The clustering coefficient, 0 for fewer than two friends.
+     */
+    public double clusteringOf(int friend) {
+        return clustering(vertexOf(friend));
+    }
+
+    /**
+     * Return the mean of the local clustering coefficients of all friends.
+     *
+     * @return double The average clustering coefficient.
+     */
+    public double averageClustering() {
+        if (triangles.length == 0)
+            return 0;
+        double sum = 0;
+        for (int v = 0; v < triangles.length; v++) {
+            sum += clustering(v);
+        }
+        return sum / triangles.length;
+    }
+
+    /**
+     * Return the transitivity of the graph: three times the number of triangles
+     * divided by the number of paths of two friendships.
+     *
+     * @return double The global clustering coefficient.
+     */
+    public double transitivity() {
+        double paths = 0;
+        for (int d : degree) {
+            paths += d * (d - 1.0) / 2;
+        }
+        return paths == 0 ? 0 : 3.0 * total / paths;
+    }
+
+    /* Triangles of every dense index. */
+    long[] counts() {
+        return triangles;
+    }
+
+    private double clustering(int v) {
+        double pairs = degree[v] * (degree[v] - 1.0) / 2;
+        return pairs == 0 ? 0 : triangles[v] / pairs;
+    }
+
+    private int vertexOf(int friend) {
+        int v = graph.indexOf(friend);
+        if (v < 0)
+            throw new IllegalArgumentException("Person is not in this graph");
+        return v;
+    }
+
+}
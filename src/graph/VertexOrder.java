@@ -0,0 +1,125 @@
+package graph;
+
+/*
+ * Orders in which CsrFriendGraph.relabel() can lay out the vertices of a graph,
+ * so that the vertices a traversal touches together share cache lines.
+ */
+import java.util.Arrays;
+
+public enum VertexOrder {
+
+    /* The friend ids in ascending order, the layout of a new CsrFriendGraph. */
+    ID {
+        @Override
+        int[] permutation(CsrFriendGraph graph) {
+            int n = graph.size();
+            long[] keys = new long[n];
+            for (int v = 0; v < n; v++) {
+                keys[v] = ((long) graph.idOf(v) << 32) | v;
+            }
+            Arrays.sort(keys);
+            int[] order = new int[n];
+            for (int k = 0; k < n; k++) {
+                order[k] = (int) keys[k];
+            }
+            return order;
+        }
+    },
+    /*
+     * Highest degree first, so the hubs that most searches pass through are packed
+     * together at the front.
+     */
+    DEGREE {
+        @Override
+        int[] permutation(CsrFriendGraph graph) {
+            return byDegree(graph);
+        }
+    },
+    /*
+     * Breadth first order starting at the highest degree vertex not placed yet, so
+     * the friends of a vertex get nearby indices.
+     */
+    BFS {
+        @Override
+        int[] permutation(CsrFriendGraph graph) {
+
+            int n = graph.size();
+            int[] offsets = graph.offsets();
+            int[] neighbors = graph.neighbors();
+            int[] byDegree = byDegree(graph);
+            boolean[] placed = new boolean[n];
+            int[] order = new int[n];
+            int tail = 0;
+            for (int start : byDegree) {
+                if (placed[start])
+                    continue;
+                placed[start] = true;
+                order[tail++] = start;
+                for (int head = tail - 1; head < tail; head++) {
+                    int curr = order[head];
+                    for (int i = offsets[curr]; i < offsets[curr + 1]; i++) {
+                        int neighbor = neighbors[i];
+                        if (!placed[neighbor]) {
+                            placed[neighbor] = true;
+                            order[tail++] = neighbor;
+                        }
+                    }
+                }
+            }
+            return order;
+        }
+    },
+    /*
+     * A degeneracy order, lowest coreness first, so the tight core of the network
+     * sits together at the end.
+     */
+    DEGENERACY {
+        @Override
+        int[] permutation(CsrFriendGraph graph) {
+            int[] order = new int[graph.size()];
+            CoreDecomposition.coreness(graph, order);
+            return order;
+        }
+    },
+    /*
+     * The members of each community found by label propagation next to each
+     * other, so the friends inside a dense group share cache lines.
+     */
+    COMMUNITY {
+        @Override
+        int[] permutation(CsrFriendGraph graph) {
+            return Communities.labelPropagation(graph, null).vertices().clone();
+        }
+    };
+
+    /*
+     * Returns the old dense index of every new dense index.
+     */
+    abstract int[] permutation(CsrFriendGraph graph);
+
+    /*
+     * Counting sort of the vertices by descending degree, ties in index order.
+     */
+    private static int[] byDegree(CsrFriendGraph graph) {
+
+        int n = graph.size();
+        int[] offsets = graph.offsets();
+        int maxDegree = 0;
+        for (int v = 0; v < n; v++) {
+            maxDegree = Math.max(maxDegree, offsets[v + 1] - offsets[v]);
+        }
+        int[] start = new int[maxDegree + 2];
+        for (int v = 0; v < n; v++) {
+            start[maxDegree - (offsets[v + 1] - offsets[v]) + 1]++;
+        }
+        for (int d = 0; d <= maxDegree; d++) {
+            start[d + 1] += start[d];
+        }
+        int[] order = new int[n];
+        for (int v = 0; v < n; v++) {
+            order[start[maxDegree - (offsets[v + 1] - offsets[v])]++] = v;
+        }
+        return order;
+    }
+
+}
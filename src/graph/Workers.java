@@ -0,0 +1,101 @@
+package graph;
+
+/*
+ * Helpers for running the parallel analysis tasks on an executor.
+ */
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+final class Workers {
+
+    private Workers() {
+    }
+
+    /*
+     * Number of workers worth submitting to the executor: the parallelism of a
+     * ForkJoinPool, otherwise the number of processors.
+     */
+    static int parallelism(ExecutorService executor) {
+        if (executor instanceof ForkJoinPool)
+            return ((ForkJoinPool) executor).getParallelism();
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    /*
+     * Work on the vertices from start up to end, returning the block's part of a
+     * sum.
+     */
+    interface Block {
+        double run(int start, int end);
+    }
+
+    /*
+     * Runs the work over fixed blocks of blockSize vertices, claimed by the
+     * workers of the executor or run on the calling thread when the executor is
+     * null, and adds the results of the blocks in block order. The sum is
+     * therefore the same whatever the number of workers.
+     */
+    static double sumBlocks(ExecutorService executor, final int n, final int blockSize, final Block work) {
+
+        final int numBlocks = (n + blockSize - 1) / blockSize;
+        final double[] blockSums = new double[numBlocks];
+        if (executor == null || numBlocks < 2) {
+            for (int block = 0; block < numBlocks; block++) {
+                blockSums[block] = work.run(block * blockSize, Math.min(n, (block + 1) * blockSize));
+            }
+        } else {
+            final AtomicInteger nextBlock = new AtomicInteger();
+            Callable<Void> worker = new Callable<Void>() {
+                @Override
+                public Void call() {
+                    for (int block = nextBlock.getAndIncrement(); block < numBlocks; block = nextBlock
+                            .getAndIncrement()) {
+                        blockSums[block] = work.run(block * blockSize, Math.min(n, (block + 1) * blockSize));
+                    }
+                    return null;
+                }
+            };
+            List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+            for (int i = Math.min(numBlocks, parallelism(executor)); i > 0; i--) {
+                tasks.add(worker);
+            }
+            invokeAll(executor, tasks);
+        }
+
+        double total = 0;
+        for (double sum : blockSums) {
+            total += sum;
+        }
+        return total;
+    }
+
+    /*
+     * Runs all tasks on the executor and waits for them, rethrowing the first
+     * failure. The results are returned in the order of the tasks.
+     */
+    static <T> List<T> invokeAll(ExecutorService executor, List<? extends Callable<T>> tasks) {
+        try {
+            List<T> results = new ArrayList<T>();
+            for (Future<T> future : executor.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for workers", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error)
+                throw (Error) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+}